@@ -0,0 +1,152 @@
+package org.apiwiz.scriptingengine.benchmarks;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.apiwiz.scriptingengine.utils.ArchiveExtractor;
+import org.apiwiz.scriptingengine.utils.StagingArea;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Installing a large generated tarball durably. Every mode ends with the
+ * data of each extracted file and each directory flushed to disk; they only
+ * differ in how they get there:
+ *
+ * <ul>
+ *   <li>{@code tempFileFsyncEach}: the former path, writing the .tgz to disk,
+ *       reading it back and fsyncing each file as it is closed</li>
+ *   <li>{@code streamingFsyncEach}: the streaming {@link ArchiveExtractor},
+ *       then one fsync after another over the extracted files</li>
+ *   <li>{@code streamingSyncTree}: the streaming extractor with the
+ *       {@link ArchiveExtractor#syncTree} barrier the downloaders use</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class ArchiveExtractorBenchmark {
+
+    private static final int FILES = 4_000;
+    private static final int FILE_SIZE = 2_048;
+
+    @Param({"tempFileFsyncEach", "streamingFsyncEach", "streamingSyncTree"})
+    String method;
+
+    private Path dir;
+    private Path tarball;
+    private Path target;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("extractor-bench-");
+        tarball = dir.resolve("large.tgz");
+        writeTarball(tarball);
+    }
+
+    @Setup(Level.Invocation)
+    public void newTarget() {
+        target = dir.resolve("target");
+    }
+
+    @TearDown(Level.Invocation)
+    public void deleteTarget() throws IOException {
+        StagingArea.deleteRecursively(target);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        StagingArea.deleteRecursively(dir);
+    }
+
+    @Benchmark
+    public Path install() throws IOException {
+        if (method.equals("tempFileFsyncEach")) {
+            legacyInstall(tarball, target);
+            syncDirectories(target);
+            return target;
+        }
+        try (InputStream in = Files.newInputStream(tarball)) {
+            ArchiveExtractor.extractTarGz(in, target, "package/");
+        }
+        if (method.equals("streamingSyncTree")) {
+            ArchiveExtractor.syncTree(target);
+        } else {
+            try (Stream<Path> files = Files.walk(target)) {
+                for (Path file : files.filter(Files::isRegularFile).toList()) {
+                    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                        channel.force(true);
+                    }
+                }
+            }
+            syncDirectories(target);
+        }
+        return target;
+    }
+
+    /** Flushes every directory of the tree, deepest first, like {@link ArchiveExtractor#syncTree} does. */
+    private static void syncDirectories(Path root) throws IOException {
+        List<Path> dirs;
+        try (Stream<Path> walk = Files.walk(root)) {
+            dirs = walk.filter(Files::isDirectory).toList();
+        }
+        for (int i = dirs.size() - 1; i >= 0; i--) {
+            try (FileChannel channel = FileChannel.open(dirs.get(i), StandardOpenOption.READ)) {
+                channel.force(true);
+            }
+        }
+    }
+
+    /** The pre-streaming algorithm: download to a .tgz, then extract it with one fsync per file. */
+    private static void legacyInstall(Path tarball, Path targetDir) throws IOException {
+        Path downloaded = targetDir.resolveSibling(targetDir.getFileName() + ".tgz");
+        try (InputStream in = Files.newInputStream(tarball);
+             FileOutputStream fos = new FileOutputStream(downloaded.toFile())) {
+            in.transferTo(fos);
+        }
+        try (FileInputStream fis = new FileInputStream(downloaded.toFile());
+             GzipCompressorInputStream gcis = new GzipCompressorInputStream(fis);
+             TarArchiveInputStream tais = new TarArchiveInputStream(gcis)) {
+            TarArchiveEntry entry;
+            while ((entry = tais.getNextEntry()) != null) {
+                File out = new File(targetDir.toFile(), entry.getName().substring("package/".length()));
+                out.getParentFile().mkdirs();
+                try (FileOutputStream fos = new FileOutputStream(out)) {
+                    tais.transferTo(fos);
+                    fos.getFD().sync();
+                }
+            }
+        }
+        Files.delete(downloaded);
+    }
+
+    private static void writeTarball(Path target) throws IOException {
+        Random random = new Random(42);
+        byte[] content = new byte[FILE_SIZE];
+        try (TarArchiveOutputStream tar = new TarArchiveOutputStream(
+                new GzipCompressorOutputStream(new BufferedOutputStream(Files.newOutputStream(target))))) {
+            for (int i = 0; i < FILES; i++) {
+                random.nextBytes(content);
+                TarArchiveEntry entry = new TarArchiveEntry("package/lib/dir" + (i % 50) + "/file" + i + ".js");
+                entry.setSize(content.length);
+                tar.putArchiveEntry(entry);
+                tar.write(content);
+                tar.closeArchiveEntry();
+            }
+        }
+    }
+}
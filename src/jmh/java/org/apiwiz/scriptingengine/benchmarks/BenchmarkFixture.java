@@ -0,0 +1,80 @@
+package org.apiwiz.scriptingengine.benchmarks;
+
+import org.apiwiz.scriptingengine.config.ContextPoolProperties;
+import org.apiwiz.scriptingengine.config.ExecutionLimitProperties;
+import org.apiwiz.scriptingengine.config.ResultProperties;
+import org.apiwiz.scriptingengine.config.SourceCacheProperties;
+import org.apiwiz.scriptingengine.config.UploadProperties;
+import org.apiwiz.scriptingengine.engine.ContextPools;
+import org.apiwiz.scriptingengine.engine.PolyglotEngines;
+import org.apiwiz.scriptingengine.engine.SourceCache;
+import org.apiwiz.scriptingengine.executor.ExecutionLimits;
+import org.apiwiz.scriptingengine.executor.JsScriptExecutor;
+import org.apiwiz.scriptingengine.executor.PythonScriptExecutor;
+import org.apiwiz.scriptingengine.executor.ResultMarshaller;
+import org.apiwiz.scriptingengine.executor.ScriptExecutor;
+import org.apiwiz.scriptingengine.executor.UploadedScripts;
+import org.apiwiz.scriptingengine.models.ScriptLanguage;
+import org.apiwiz.scriptingengine.support.StubNpmRegistry;
+import org.apiwiz.scriptingengine.utils.NpmDependencyDownloader;
+import org.apiwiz.scriptingengine.utils.PyPIDependencyDownloader;
+import org.apiwiz.scriptingengine.utils.RegistryClient;
+import org.apiwiz.scriptingengine.utils.StagingArea;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * The executor stack wired by hand, without Spring: fresh engines and pools,
+ * a throwaway dependency folder and an in-memory npm registry, so every
+ * benchmark runs offline and starts from a known state.
+ */
+final class BenchmarkFixture implements AutoCloseable {
+
+    final Path root;
+    final StubNpmRegistry registry;
+    final RegistryClient registryClient;
+    final NpmDependencyDownloader npm;
+    final PolyglotEngines engines = new PolyglotEngines();
+    final ContextPools contextPools;
+    final SourceCache sourceCache = new SourceCache(new SourceCacheProperties(256));
+    final UploadedScripts uploads = new UploadedScripts(
+            new UploadProperties(DataSize.ofMegabytes(10), DataSize.ofMegabytes(1)));
+    final ExecutionLimits limits = new ExecutionLimits(
+            new ExecutionLimitProperties(Duration.ofMinutes(5), Duration.ofMinutes(5), 0));
+    final ResultMarshaller results = new ResultMarshaller(new ResultProperties(64, 1_000_000, 1 << 20));
+    private JsScriptExecutor js;
+    private PythonScriptExecutor python;
+
+    BenchmarkFixture() throws IOException {
+        root = Files.createTempDirectory("scripting-bench-");
+        registry = new StubNpmRegistry();
+        registryClient = new RegistryClient(root.resolve(".registry-cache"));
+        npm = npmDownloader(root.resolve("js"));
+        contextPools = new ContextPools(engines, new ContextPoolProperties(8, 4, 500, Duration.ofSeconds(10)));
+    }
+
+    NpmDependencyDownloader npmDownloader(Path moduleRoot) {
+        return new NpmDependencyDownloader(moduleRoot, registryClient, registry.url(), 8, 6);
+    }
+
+    synchronized ScriptExecutor executor(ScriptLanguage language) {
+        return switch (language) {
+            case JAVASCRIPT -> js != null ? js : (js = new JsScriptExecutor(contextPools, sourceCache, limits, uploads, results, npm));
+            case PYTHON -> python != null ? python : (python = new PythonScriptExecutor(contextPools, sourceCache, limits, uploads, results,
+                    new PyPIDependencyDownloader(root.resolve("python"), registryClient, registry.url())));
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        contextPools.close();
+        limits.close();
+        engines.close();
+        registry.close();
+        StagingArea.deleteRecursively(root);
+    }
+}
@@ -0,0 +1,50 @@
+package org.apiwiz.scriptingengine.benchmarks;
+
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Engine;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of building a context and evaluating a trivial expression, on a
+ * shared {@link Engine} (what the context pools do) versus a context that
+ * brings up its own engine.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Dpolyglot.engine.WarnInterpreterOnly=false")
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ContextCreationBenchmark {
+
+    @Param({"js", "python"})
+    String language;
+
+    private Engine engine;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        engine = Engine.newBuilder(language).allowExperimentalOptions(true).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        engine.close();
+    }
+
+    @Benchmark
+    public int sharedEngine() {
+        try (Context context = Context.newBuilder(language).engine(engine).build()) {
+            return context.eval(language, "1 + 1").asInt();
+        }
+    }
+
+    @Benchmark
+    public int ownEngine() {
+        try (Context context = Context.newBuilder(language).build()) {
+            return context.eval(language, "1 + 1").asInt();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package org.apiwiz.scriptingengine.benchmarks;
+
+import org.apiwiz.scriptingengine.support.StubNpmRegistry;
+import org.apiwiz.scriptingengine.utils.ArchiveExtractor;
+import org.apiwiz.scriptingengine.utils.StagingArea;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * npm installation served by the in-memory fixture registry.
+ *
+ * <ul>
+ *   <li>{@code extractTarball}: streaming extraction of one package tarball,
+ *       as done by {@code NpmDependencyDownloader.install}</li>
+ *   <li>{@code installGraph}: resolve, download, verify and publish a small
+ *       dependency graph into an empty node_modules</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class DependencyInstallBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Tarball {
+        /** Files of 8 KB each in the extracted tarball. */
+        @Param({"64", "512"})
+        int files;
+
+        byte[] bytes;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            Map<String, String> contents = new LinkedHashMap<>();
+            String body = "x".repeat(8 * 1024);
+            contents.put("package/package.json", "{\"name\":\"big\",\"version\":\"1.0.0\",\"main\":\"index.js\"}");
+            for (int i = 0; i < files; i++) contents.put("package/lib/file" + i + ".js", body);
+            bytes = StubNpmRegistry.tarball(contents);
+        }
+    }
+
+    private BenchmarkFixture fixture;
+    private Path target;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        fixture = new BenchmarkFixture();
+        fixture.registry
+                .publish("app", "1.0.0", "left", "right")
+                .publish("left", "1.0.0", "leaf")
+                .publish("right", "1.0.0", "leaf")
+                .publish("leaf", "1.0.0");
+    }
+
+    @Setup(Level.Invocation)
+    public void freshTarget() throws IOException {
+        target = Files.createTempDirectory(fixture.root, "run-");
+    }
+
+    @TearDown(Level.Invocation)
+    public void cleanTarget() throws IOException {
+        StagingArea.deleteRecursively(target);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        fixture.close();
+    }
+
+    @Benchmark
+    public long extractTarball(Tarball tarball) throws IOException {
+        return ArchiveExtractor.extractTarGz(new ByteArrayInputStream(tarball.bytes), target, "package/");
+    }
+
+    @Benchmark
+    public List<String> installGraph() throws IOException {
+        return fixture.npmDownloader(target).installDependencies(Set.of("app"));
+    }
+}
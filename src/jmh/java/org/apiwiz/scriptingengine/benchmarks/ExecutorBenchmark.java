@@ -0,0 +1,91 @@
+package org.apiwiz.scriptingengine.benchmarks;
+
+import org.apiwiz.scriptingengine.dto.ScriptResponse;
+import org.apiwiz.scriptingengine.executor.ScriptExecutor;
+import org.apiwiz.scriptingengine.models.ScriptLanguage;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code execute} on the JS and Python executors.
+ *
+ * <ul>
+ *   <li>{@code cold}: first execution after startup, which pays for the
+ *       engine, the first context and the first parse (single shot, fresh
+ *       fixture per iteration)</li>
+ *   <li>{@code warm}: steady state on a pooled context and a cached source</li>
+ * </ul>
+ */
+@Fork(value = 1, jvmArgsAppend = "-Dpolyglot.engine.WarnInterpreterOnly=false")
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ExecutorBenchmark {
+
+    static final String JS_SCRIPT = "let total = 0; for (let i = 0; i < 1000; i++) total += i * i; total";
+    static final String PYTHON_SCRIPT = "sum(i * i for i in range(1000))";
+
+    @State(Scope.Benchmark)
+    public static class Warm {
+        @Param({"js", "python"})
+        String language;
+
+        BenchmarkFixture fixture;
+        ScriptExecutor executor;
+        ScriptLanguage lang;
+        String script;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            fixture = new BenchmarkFixture();
+            lang = ScriptLanguage.fromString(language);
+            executor = fixture.executor(lang);
+            script = lang == ScriptLanguage.JAVASCRIPT ? JS_SCRIPT : PYTHON_SCRIPT;
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            fixture.close();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Cold {
+        @Param({"js", "python"})
+        String language;
+
+        BenchmarkFixture fixture;
+        ScriptExecutor executor;
+        ScriptLanguage lang;
+        String script;
+
+        @Setup(Level.Iteration)
+        public void setUp() throws IOException {
+            fixture = new BenchmarkFixture();
+            lang = ScriptLanguage.fromString(language);
+            executor = fixture.executor(lang);
+            script = lang == ScriptLanguage.JAVASCRIPT ? JS_SCRIPT : PYTHON_SCRIPT;
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown() throws IOException {
+            fixture.close();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 5)
+    public ScriptResponse cold(Cold state) {
+        return state.executor.execute(state.lang, state.script);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @Warmup(iterations = 5, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    public ScriptResponse warm(Warm state) {
+        return state.executor.execute(state.lang, state.script);
+    }
+}
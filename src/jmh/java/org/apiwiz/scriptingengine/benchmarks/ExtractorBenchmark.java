@@ -0,0 +1,56 @@
+package org.apiwiz.scriptingengine.benchmarks;
+
+import org.apiwiz.scriptingengine.utils.NpmDependencyExtractor;
+import org.apiwiz.scriptingengine.utils.PythonImportExtractor;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dependency extraction on large generated scripts: mostly ordinary code
+ * with an import every few dozen lines.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ExtractorBenchmark {
+
+    @Param({"1000", "50000"})
+    int lines;
+
+    private String jsScript;
+    private String pythonScript;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        StringBuilder js = new StringBuilder();
+        StringBuilder py = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            if (i % 40 == 0) {
+                js.append("import dep").append(i % 200).append(" from 'pkg-").append(i % 200).append("';\n");
+                js.append("const lib").append(i).append(" = require('@scope/lib-").append(i % 50).append("/sub');\n");
+                py.append("import mod").append(i % 200).append('\n');
+                py.append("from pkg").append(i % 50).append(".sub import thing\n");
+            } else {
+                js.append("function f").append(i).append("(a, b) { return a * b + '").append(i).append("'.length; }\n");
+                py.append("def f").append(i).append("(a, b):\n    return a * b + len('").append(i).append("')\n");
+            }
+        }
+        jsScript = js.toString();
+        pythonScript = py.toString();
+    }
+
+    @Benchmark
+    public Set<String> npmRequiredModules() {
+        return NpmDependencyExtractor.extractRequiredModules(jsScript);
+    }
+
+    @Benchmark
+    public Set<String> pythonImports() {
+        return PythonImportExtractor.extractImports(pythonScript);
+    }
+}
@@ -0,0 +1,149 @@
+package org.apiwiz.scriptingengine.benchmarks;
+
+import org.apiwiz.scriptingengine.engine.DependencyFileSystem;
+import org.apiwiz.scriptingengine.utils.NpmDependencyDownloader;
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Engine;
+import org.graalvm.polyglot.io.FileSystem;
+import org.graalvm.polyglot.io.IOAccess;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * First {@code require} of a heavy package in a new context: the original
+ * tree of CommonJS files versus the bundle pre-linked at install time.
+ *
+ * <p>The packages are installed once from the fixture registry with
+ * pre-linking on; the original files stay next to the bundle, so
+ * {@code tree} loads {@code <package>/index.js} and {@code bundle} loads
+ * the package itself. {@code cold} brings up a new engine for every import,
+ * {@code warm} shares one engine, like a pooled context does.
+ *
+ * <ul>
+ *   <li>{@code utility}: 300 small modules behind one index, sharing 20 internal helpers (lodash-style)</li>
+ *   <li>{@code nested}: 40 sub-packages with their own package.json, 6 files each</li>
+ *   <li>{@code chain}: 120 modules, each requiring the next</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Dpolyglot.engine.WarnInterpreterOnly=false")
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 30)
+public class PrelinkBenchmark {
+
+    @Param({"utility", "nested", "chain"})
+    String pkg;
+
+    @Param({"tree", "bundle"})
+    String layout;
+
+    @Param({"cold", "warm"})
+    String engineMode;
+
+    private BenchmarkFixture fixture;
+    private Path moduleRoot;
+    private IOAccess ioAccess;
+    private Engine sharedEngine;
+    private Engine engine;
+    private Context context;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        fixture = new BenchmarkFixture();
+        fixture.registry
+                .publish("utility", "1.0.0", utility())
+                .publish("nested", "1.0.0", nested())
+                .publish("chain", "1.0.0", chain());
+        moduleRoot = fixture.root.resolve("prelinked").toAbsolutePath();
+        new NpmDependencyDownloader(moduleRoot, fixture.registryClient, fixture.registry.url(), 8, 6, true)
+                .installDependencies(Set.of("utility", "nested", "chain"));
+        ioAccess = IOAccess.newBuilder()
+                .fileSystem(FileSystem.allowInternalResourceAccess(new DependencyFileSystem(moduleRoot)))
+                .build();
+        sharedEngine = Engine.newBuilder("js").allowExperimentalOptions(true).build();
+    }
+
+    @Setup(Level.Invocation)
+    public void newContext() {
+        engine = engineMode.equals("warm") ? sharedEngine : Engine.newBuilder("js").allowExperimentalOptions(true).build();
+        context = Context.newBuilder("js")
+                .engine(engine)
+                .allowIO(ioAccess)
+                .allowExperimentalOptions(true)
+                .option("js.commonjs-require", "true")
+                .option("js.commonjs-require-cwd", moduleRoot.toString())
+                .build();
+    }
+
+    @TearDown(Level.Invocation)
+    public void closeContext() {
+        context.close();
+        if (engine != sharedEngine) engine.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        sharedEngine.close();
+        fixture.close();
+    }
+
+    @Benchmark
+    public int firstRequire() {
+        String specifier = layout.equals("tree") ? pkg + "/index.js" : pkg;
+        return context.eval("js", "Object.keys(require('" + specifier + "')).length").asInt();
+    }
+
+    private static Map<String, String> utility() {
+        Map<String, String> files = new LinkedHashMap<>();
+        for (int h = 0; h < 20; h++) {
+            files.put("internal/_helper" + h + ".js", "module.exports = function helper" + h + "(x) {\n"
+                    + "  return typeof x === 'number' ? x + " + h + " : String(x).length;\n};\n");
+        }
+        StringBuilder index = new StringBuilder("'use strict';\n");
+        for (int i = 0; i < 300; i++) {
+            files.put("fn" + i + ".js", "const a = require('./internal/_helper" + (i % 20) + "');\n"
+                    + "const b = require('./internal/_helper" + ((i * 7) % 20) + "');\n"
+                    + "/** fn" + i + " */\nmodule.exports = function fn" + i + "(value) {\n"
+                    + "  return a(value) * b(value);\n};\n");
+            index.append("exports.fn").append(i).append(" = require('./fn").append(i).append("');\n");
+        }
+        files.put("index.js", index.toString());
+        return files;
+    }
+
+    private static Map<String, String> nested() {
+        Map<String, String> files = new LinkedHashMap<>();
+        StringBuilder index = new StringBuilder();
+        for (int p = 0; p < 40; p++) {
+            String dir = "packages/part" + p + "/";
+            files.put(dir + "package.json", "{\"main\": \"lib/entry\"}");
+            StringBuilder entry = new StringBuilder();
+            for (int f = 0; f < 5; f++) {
+                files.put(dir + "lib/util" + f + ".js", "module.exports = { id: " + (p * 10 + f) + " };\n");
+                entry.append("exports.util").append(f).append(" = require('./util").append(f).append("');\n");
+            }
+            files.put(dir + "lib/entry.js", entry.toString());
+            index.append("exports.part").append(p).append(" = require('./packages/part").append(p).append("');\n");
+        }
+        files.put("index.js", index.toString());
+        return files;
+    }
+
+    private static Map<String, String> chain() {
+        Map<String, String> files = new LinkedHashMap<>();
+        files.put("index.js", "module.exports = { depth: require('./chain/m0').depth };\n");
+        for (int i = 0; i < 120; i++) {
+            String next = i + 1 < 120 ? "require('./m" + (i + 1) + "').depth + 1" : "0";
+            files.put("chain/m" + i + ".js", "exports.depth = " + next + ";\n");
+        }
+        return files;
+    }
+}
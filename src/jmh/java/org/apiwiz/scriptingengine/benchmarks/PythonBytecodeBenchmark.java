@@ -0,0 +1,141 @@
+package org.apiwiz.scriptingengine.benchmarks;
+
+import org.apiwiz.scriptingengine.engine.DependencyFileSystem;
+import org.apiwiz.scriptingengine.engine.GraalPyBytecodeCompiler;
+import org.apiwiz.scriptingengine.models.ScriptLanguage;
+import org.apiwiz.scriptingengine.support.StubPyPIIndex;
+import org.apiwiz.scriptingengine.utils.PyPIDependencyDownloader;
+import org.apiwiz.scriptingengine.utils.PythonDistributions;
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.io.FileSystem;
+import org.graalvm.polyglot.io.IOAccess;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * First {@code import} of a heavy package in a new context: the installed
+ * sources only versus sources with bytecode caches compiled at install time.
+ *
+ * <p>Each layout is installed once from a fixture index into its own
+ * folder. Contexts share one engine, like a pooled context does; a cold
+ * GraalPy engine takes seconds to start and would hide the difference.
+ *
+ * <ul>
+ *   <li>{@code modules}: 60 sub-modules of 10 functions and 2 classes each behind one {@code __init__}</li>
+ *   <li>{@code large}: 4 modules of 150 functions and 30 classes each</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Dpolyglot.engine.WarnInterpreterOnly=false")
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 15)
+public class PythonBytecodeBenchmark {
+
+    @Param({"modules", "large"})
+    String pkg;
+
+    @Param({"source", "bytecode"})
+    String layout;
+
+    private BenchmarkFixture fixture;
+    private StubPyPIIndex index;
+    private GraalPyBytecodeCompiler compiler;
+    private Path root;
+    private IOAccess ioAccess;
+    private Context context;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        fixture = new BenchmarkFixture();
+        index = new StubPyPIIndex()
+                .publish("modules", "1.0", modules())
+                .publish("large", "1.0", large());
+        compiler = new GraalPyBytecodeCompiler(fixture.engines);
+        root = fixture.root.resolve(layout).toAbsolutePath();
+        new PyPIDependencyDownloader(root, fixture.registryClient, index.url(), new PythonDistributions(),
+                Duration.ofMinutes(10), layout.equals("bytecode") ? compiler : null)
+                .installDependencies(Set.of(pkg));
+        ioAccess = IOAccess.newBuilder()
+                .fileSystem(FileSystem.allowInternalResourceAccess(new DependencyFileSystem(root)))
+                .build();
+    }
+
+    @Setup(Level.Invocation)
+    public void newContext() {
+        context = Context.newBuilder(ScriptLanguage.PYTHON.getEngineName())
+                .engine(fixture.engines.get(ScriptLanguage.PYTHON))
+                .out(OutputStream.nullOutputStream())
+                .allowIO(ioAccess)
+                .option("python.PythonPath", root.toString())
+                .build();
+    }
+
+    @TearDown(Level.Invocation)
+    public void closeContext() {
+        context.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        compiler.close();
+        index.close();
+        fixture.close();
+    }
+
+    @Benchmark
+    public int firstImport() {
+        return context.eval("python", "len(dir(__import__('" + pkg + "')))").asInt();
+    }
+
+    private static Map<String, String> modules() {
+        Map<String, String> files = new LinkedHashMap<>();
+        StringBuilder init = new StringBuilder();
+        for (int m = 0; m < 60; m++) {
+            files.put("modules/part" + m + ".py", module(m, 10, 2));
+            init.append("from .part").append(m).append(" import *\n");
+        }
+        files.put("modules/__init__.py", init.toString());
+        return files;
+    }
+
+    private static Map<String, String> large() {
+        Map<String, String> files = new LinkedHashMap<>();
+        StringBuilder init = new StringBuilder();
+        for (int m = 0; m < 4; m++) {
+            files.put("large/part" + m + ".py", module(m, 150, 30));
+            init.append("from .part").append(m).append(" import *\n");
+        }
+        files.put("large/__init__.py", init.toString());
+        return files;
+    }
+
+    private static String module(int m, int functions, int classes) {
+        StringBuilder source = new StringBuilder("\"\"\"Generated module " + m + ".\"\"\"\nimport math\n\n");
+        for (int f = 0; f < functions; f++) {
+            String name = "fn_" + m + "_" + f;
+            source.append("def ").append(name).append("(value, *, scale=").append(f).append(", default=None):\n")
+                    .append("    \"\"\"").append(name).append("\"\"\"\n")
+                    .append("    if value is None:\n        return default\n")
+                    .append("    items = [math.sqrt(abs(v)) * scale for v in value] if isinstance(value, list) else [value]\n")
+                    .append("    return {'name': '").append(name).append("', 'total': sum(items), 'count': len(items)}\n\n");
+        }
+        for (int c = 0; c < classes; c++) {
+            source.append("class Model_").append(m).append('_').append(c).append(":\n")
+                    .append("    def __init__(self, **fields):\n        self.fields = dict(fields)\n\n")
+                    .append("    def get(self, key, default=None):\n        return self.fields.get(key, default)\n\n")
+                    .append("    def __repr__(self):\n        return f'Model_").append(m).append('_').append(c)
+                    .append("({self.fields!r})'\n\n");
+        }
+        return source.toString();
+    }
+}
@@ -0,0 +1,51 @@
+package org.apiwiz.scriptingengine.config;
+
+import org.apiwiz.scriptingengine.models.ScriptLanguage;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Per-language admission control in front of the executors.
+ *
+ * @param defaults  limits of languages without an entry in {@code languages}
+ * @param languages per-language overrides, e.g. {@code scripting.admission.languages.python.max-concurrency}
+ * @param adaptive  latency-driven adjustment of the concurrency limit
+ */
+@ConfigurationProperties("scripting.admission")
+public record AdmissionProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue Limits defaults,
+        Map<ScriptLanguage, Limits> languages,
+        @DefaultValue Adaptive adaptive) {
+
+    /**
+     * @param maxConcurrency executions running at once
+     * @param maxQueue       executions waiting for a slot; further requests are rejected
+     * @param queueTimeout   how long a queued execution waits before it is rejected
+     */
+    public record Limits(
+            @DefaultValue("8") int maxConcurrency,
+            @DefaultValue("32") int maxQueue,
+            @DefaultValue("2s") Duration queueTimeout) {
+    }
+
+    /**
+     * AIMD limit: grows by one after a limit's worth of executions finish
+     * under {@code latencyThreshold}, shrinks by {@code backoffRatio} when one
+     * exceeds it (at most once per threshold interval), never below
+     * {@code minLimit} or above {@code maxConcurrency}.
+     */
+    public record Adaptive(
+            @DefaultValue("false") boolean enabled,
+            @DefaultValue("1") int minLimit,
+            @DefaultValue("1s") Duration latencyThreshold,
+            @DefaultValue("0.9") double backoffRatio) {
+    }
+
+    public Limits limitsFor(ScriptLanguage language) {
+        return languages != null ? languages.getOrDefault(language, defaults) : defaults;
+    }
+}
@@ -0,0 +1,16 @@
+package org.apiwiz.scriptingengine.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Batch execution ({@code POST /api/scripts/execute-batch}).
+ *
+ * @param maxItems    scripts accepted in one batch
+ * @param parallelism items of one batch evaluated at the same time
+ */
+@ConfigurationProperties("scripting.batch")
+public record BatchProperties(
+        @DefaultValue("500") int maxItems,
+        @DefaultValue("8") int parallelism) {
+}
@@ -0,0 +1,32 @@
+package org.apiwiz.scriptingengine.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Sizing of the per-language GraalVM context pools.
+ * <p>
+ * A context is reused by unrelated scripts. Between two runs the executors
+ * delete the globals a script defined and retire the context when it changed
+ * the intrinsics they snapshot (JS globals and core prototypes; Python
+ * {@code builtins}, {@code sys}, {@code sys.modules} and the import paths).
+ * Anything else a script mutates, such as an attribute of an already imported
+ * Python module or an object cached inside a loaded npm package, survives into
+ * the next run on the same context. {@code maxUses} bounds how many runs can
+ * observe such a change, so keep it low when scripts of different tenants share
+ * a pool.
+ *
+ * @param maxSize        upper bound of contexts (idle + checked out) per language
+ * @param maxIdle        contexts kept warm once returned; extras are closed
+ * @param maxUses        executions served by one context before it is recycled
+ * @param acquireTimeout how long a request waits for a free context
+ */
+@ConfigurationProperties("scripting.context-pool")
+public record ContextPoolProperties(
+        @DefaultValue("8") int maxSize,
+        @DefaultValue("4") int maxIdle,
+        @DefaultValue("50") int maxUses,
+        @DefaultValue("10s") Duration acquireTimeout) {
+}
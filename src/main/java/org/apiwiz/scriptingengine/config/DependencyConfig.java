@@ -0,0 +1,48 @@
+package org.apiwiz.scriptingengine.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apiwiz.scriptingengine.engine.GraalPyBytecodeCompiler;
+import org.apiwiz.scriptingengine.utils.NpmDependencyDownloader;
+import org.apiwiz.scriptingengine.utils.PyPIDependencyDownloader;
+import org.apiwiz.scriptingengine.utils.PythonDistributions;
+import org.apiwiz.scriptingengine.utils.RegistryClient;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Paths;
+
+@Configuration
+public class DependencyConfig {
+
+    /** Parent of the per-language dependency roots; also holds the registry metadata cache. */
+    public static final String DEPS_ROOT = "deps";
+
+    @Bean
+    public RegistryClient registryClient(MeterRegistry meterRegistry) {
+        return new RegistryClient(Paths.get(DEPS_ROOT, ".registry-cache"), meterRegistry);
+    }
+
+    @Bean
+    public NpmDependencyDownloader npmDependencyDownloader(RegistryClient registryClient, NpmProperties properties) {
+        return new NpmDependencyDownloader(
+                Paths.get(NpmDependencyDownloader.DOWNLOAD_DIR),
+                registryClient,
+                properties.registryUrl(),
+                properties.concurrency(),
+                properties.perHostConcurrency(),
+                properties.prelink());
+    }
+
+    @Bean
+    public PyPIDependencyDownloader pyPIDependencyDownloader(RegistryClient registryClient,
+                                                             PyPIProperties properties,
+                                                             GraalPyBytecodeCompiler compiler) {
+        return new PyPIDependencyDownloader(
+                Paths.get(PyPIDependencyDownloader.DOWNLOAD_DIR),
+                registryClient,
+                properties.indexUrl(),
+                new PythonDistributions(properties.distributions()),
+                properties.notFoundTtl(),
+                properties.compileBytecode() ? compiler : null);
+    }
+}
@@ -0,0 +1,20 @@
+package org.apiwiz.scriptingengine.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Time and CPU budgets of a single execution.
+ *
+ * @param timeout        wall-clock budget of a script once it has been admitted
+ * @param maxTimeout     upper bound for the {@code timeoutMillis} a request may ask for
+ * @param statementLimit guest statements one execution may run; 0 disables the limit
+ */
+@ConfigurationProperties("scripting.limits")
+public record ExecutionLimitProperties(
+        @DefaultValue("30s") Duration timeout,
+        @DefaultValue("5m") Duration maxTimeout,
+        @DefaultValue("100000000") long statementLimit) {
+}
@@ -0,0 +1,18 @@
+package org.apiwiz.scriptingengine.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Asynchronous job store.
+ *
+ * @param maxJobs jobs retained at once, queued, running and finished together
+ * @param ttl     how long a finished job's result stays available
+ */
+@ConfigurationProperties("scripting.jobs")
+public record JobProperties(
+        @DefaultValue("1000") int maxJobs,
+        @DefaultValue("10m") Duration ttl) {
+}
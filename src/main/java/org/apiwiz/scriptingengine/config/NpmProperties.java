@@ -0,0 +1,19 @@
+package org.apiwiz.scriptingengine.config;
+
+import org.apiwiz.scriptingengine.utils.NpmDependencyDownloader;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * @param registryUrl        base URL of the npm registry; package names are appended
+ * @param concurrency        packages resolved/downloaded/extracted at the same time
+ * @param perHostConcurrency simultaneous HTTP requests to any single host
+ * @param prelink            bundle each CommonJS package into one file at install time
+ */
+@ConfigurationProperties("scripting.npm")
+public record NpmProperties(
+        @DefaultValue(NpmDependencyDownloader.NPM_REGISTRY) String registryUrl,
+        @DefaultValue("8") int concurrency,
+        @DefaultValue("6") int perHostConcurrency,
+        @DefaultValue("false") boolean prelink) {
+}
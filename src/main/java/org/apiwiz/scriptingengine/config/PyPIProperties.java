@@ -0,0 +1,21 @@
+package org.apiwiz.scriptingengine.config;
+
+import org.apiwiz.scriptingengine.utils.PyPIDependencyDownloader;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * @param indexUrl        base URL of the PyPI JSON API; {@code <name>/json} is appended
+ * @param distributions   import name → distribution name, on top of the bundled table
+ * @param notFoundTtl     how long a name PyPI does not know is skipped before it is looked up again
+ * @param compileBytecode compile installed sources to GraalPy bytecode caches at install time
+ */
+@ConfigurationProperties("scripting.pypi")
+public record PyPIProperties(@DefaultValue(PyPIDependencyDownloader.PYPI_URL) String indexUrl,
+                             Map<String, String> distributions,
+                             @DefaultValue("10m") Duration notFoundTtl,
+                             @DefaultValue("true") boolean compileBytecode) {
+}
@@ -0,0 +1,19 @@
+package org.apiwiz.scriptingengine.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.nio.file.Path;
+
+/**
+ * Registered scripts (POST /api/scripts).
+ *
+ * @param maxScripts compiled scripts held in memory; the least recently used make room for new ones
+ * @param directory  where registrations are stored so they survive restarts and eviction;
+ *                   unset keeps them in memory only
+ */
+@ConfigurationProperties("scripting.registry")
+public record RegistryProperties(
+        @DefaultValue("1000") int maxScripts,
+        Path directory) {
+}
@@ -0,0 +1,19 @@
+package org.apiwiz.scriptingengine.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Memoized responses of executions marked {@code cacheable}.
+ *
+ * @param maxSize approximate memory held by cached responses
+ * @param ttl     how long a response is served after the execution that produced it
+ */
+@ConfigurationProperties("scripting.result-cache")
+public record ResultCacheProperties(
+        @DefaultValue("64MB") DataSize maxSize,
+        @DefaultValue("5m") Duration ttl) {
+}
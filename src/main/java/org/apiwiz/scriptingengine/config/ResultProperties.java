@@ -0,0 +1,18 @@
+package org.apiwiz.scriptingengine.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Caps on the structured {@code result} marshalled from a script's value.
+ *
+ * @param maxDepth        nesting of arrays/objects; also stops cyclic structures
+ * @param maxValues       values written in total (every element, member and scalar counts)
+ * @param maxStringLength characters of a single string
+ */
+@ConfigurationProperties("scripting.result")
+public record ResultProperties(
+        @DefaultValue("64") int maxDepth,
+        @DefaultValue("1000000") int maxValues,
+        @DefaultValue("1048576") int maxStringLength) {
+}
@@ -0,0 +1,11 @@
+package org.apiwiz.scriptingengine.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * @param maxEntries number of distinct scripts whose {@code Source} is kept for reuse
+ */
+@ConfigurationProperties("scripting.source-cache")
+public record SourceCacheProperties(@DefaultValue("256") int maxEntries) {
+}
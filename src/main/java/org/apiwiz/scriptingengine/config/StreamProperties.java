@@ -0,0 +1,23 @@
+package org.apiwiz.scriptingengine.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Output streaming ({@code POST /api/scripts/execute-stream}).
+ *
+ * @param bufferChunks output chunks buffered per request while the client catches up
+ * @param chunkSize    bytes of output per chunk; a chunk is also sent at every line end
+ * @param offerTimeout how long a script's print may wait for buffer space before
+ *                     the chunk is dropped
+ * @param timeout      upper bound on the lifetime of one stream
+ */
+@ConfigurationProperties("scripting.stream")
+public record StreamProperties(
+        @DefaultValue("64") int bufferChunks,
+        @DefaultValue("8192") int chunkSize,
+        @DefaultValue("100ms") Duration offerTimeout,
+        @DefaultValue("5m") Duration timeout) {
+}
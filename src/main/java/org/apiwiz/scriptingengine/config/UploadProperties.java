@@ -0,0 +1,14 @@
+package org.apiwiz.scriptingengine.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Script uploads ({@code POST /api/scripts/execute-file}).
+ *
+ * @param maxSize largest accepted script; keep {@code spring.servlet.multipart.max-file-size} in line
+ */
+@ConfigurationProperties("scripting.upload")
+public record UploadProperties(@DefaultValue("10MB") DataSize maxSize) {
+}
@@ -0,0 +1,40 @@
+package org.apiwiz.scriptingengine.config;
+
+import org.apiwiz.scriptingengine.models.ScriptLanguage;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Work done at startup before the instance reports itself ready.
+ *
+ * @param contexts     contexts created up front in each language's pool (capped at max-idle)
+ * @param dependencies packages preinstalled per language, e.g.
+ *                     {@code scripting.warmup.dependencies.javascript=lodash,dayjs}
+ * @param scripts      representative scripts run until timings settle; languages
+ *                     without an entry use a built-in script
+ * @param maxRounds    upper bound of warm-up rounds per language
+ * @param tolerance    a round is settled when it is within this fraction of the previous one
+ * @param timeout      overall budget of the warm-up; readiness is reported once it is spent
+ */
+@ConfigurationProperties("scripting.warmup")
+public record WarmupProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("4") int contexts,
+        Map<ScriptLanguage, List<String>> dependencies,
+        Map<ScriptLanguage, List<String>> scripts,
+        @DefaultValue("20") int maxRounds,
+        @DefaultValue("0.1") double tolerance,
+        @DefaultValue("2m") Duration timeout) {
+
+    public List<String> dependenciesFor(ScriptLanguage language) {
+        return dependencies != null ? dependencies.getOrDefault(language, List.of()) : List.of();
+    }
+
+    public List<String> scriptsFor(ScriptLanguage language) {
+        return scripts != null ? scripts.getOrDefault(language, List.of()) : List.of();
+    }
+}
@@ -0,0 +1,45 @@
+package org.apiwiz.scriptingengine.controller;
+
+import org.apiwiz.scriptingengine.dto.UpgradeRequest;
+import org.apiwiz.scriptingengine.exception.ScriptExecutionException;
+import org.apiwiz.scriptingengine.service.ResultCache;
+import org.apiwiz.scriptingengine.utils.PyPIDependencyDownloader;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.util.LinkedHashSet;
+
+@RestController
+@RequestMapping("/api/dependencies")
+public class DependencyController {
+    private final PyPIDependencyDownloader pypiDownloader;
+    private final ResultCache resultCache;
+
+    public DependencyController(PyPIDependencyDownloader pypiDownloader, ResultCache resultCache) {
+        this.pypiDownloader = pypiDownloader;
+        this.resultCache = resultCache;
+    }
+
+    /**
+     * Replaces the installed Python distributions providing the given imports
+     * with their latest release. Cached results may have been computed with
+     * the old code, so the result cache is cleared.
+     */
+    @PostMapping("/python/upgrade")
+    public ResponseEntity<Void> upgradePython(@RequestBody UpgradeRequest request) {
+        if (request.modules() == null || request.modules().isEmpty()) {
+            throw new ScriptExecutionException("No modules to upgrade", null);
+        }
+        try {
+            pypiDownloader.upgradeDependencies(new LinkedHashSet<>(request.modules()));
+        } catch (IOException e) {
+            throw new ScriptExecutionException("Error upgrading Python dependencies: " + e.getMessage(), e);
+        }
+        resultCache.clear();
+        return ResponseEntity.noContent().build();
+    }
+}
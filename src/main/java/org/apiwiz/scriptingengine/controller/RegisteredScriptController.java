@@ -0,0 +1,44 @@
+package org.apiwiz.scriptingengine.controller;
+
+import org.apiwiz.scriptingengine.dto.InvokeRequest;
+import org.apiwiz.scriptingengine.dto.RegisterScriptRequest;
+import org.apiwiz.scriptingengine.dto.RegisteredScriptResponse;
+import org.apiwiz.scriptingengine.dto.ScriptResponse;
+import org.apiwiz.scriptingengine.service.ScriptRegistry;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.net.URI;
+
+@RestController
+@RequestMapping("/api/scripts")
+public class RegisteredScriptController {
+    private final ScriptRegistry registry;
+
+    public RegisteredScriptController(ScriptRegistry registry) {
+        this.registry = registry;
+    }
+
+    /** Installs the script's dependencies and compiles it; responds once it can be invoked. */
+    @PostMapping
+    public ResponseEntity<RegisteredScriptResponse> register(@RequestBody RegisterScriptRequest request) {
+        RegisteredScriptResponse script = registry.register(request.language(), request.script());
+        return ResponseEntity.created(URI.create("/api/scripts/" + script.id())).body(script);
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<RegisteredScriptResponse> get(@PathVariable String id) {
+        return ResponseEntity.ok(registry.get(id));
+    }
+
+    @PostMapping("/{id}/invoke")
+    public ResponseEntity<ScriptResponse> invoke(@PathVariable String id, @RequestBody InvokeRequest request) {
+        return ResponseEntity.ok(registry.invoke(id, request));
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> delete(@PathVariable String id) {
+        registry.delete(id);
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -1,25 +1,63 @@
 package org.apiwiz.scriptingengine.controller;
 
-import org.apiwiz.scriptingengine.models.ScriptLanguage;
+import org.apiwiz.scriptingengine.executor.ScriptExecution;
 import org.apiwiz.scriptingengine.service.ScriptService;
+import org.apiwiz.scriptingengine.service.ScriptStreamService;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.apiwiz.scriptingengine.dto.ScriptRequest;
 import org.apiwiz.scriptingengine.dto.ScriptResponse;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.StringJoiner;
 
 @RestController
 @RequestMapping("/api/scripts")
 public class ScriptController {
     private final ScriptService scriptService;
+    private final ScriptStreamService streamService;
 
-    public ScriptController(ScriptService scriptService) {
+    public ScriptController(ScriptService scriptService, ScriptStreamService streamService) {
         this.scriptService = scriptService;
+        this.streamService = streamService;
     }
 
+    /**
+     * Always reports per-phase durations in a {@code Server-Timing} header;
+     * {@code ?timings=true} also adds them to the response body.
+     */
     @PostMapping("/execute")
-    public ResponseEntity<ScriptResponse> execute(@RequestBody ScriptRequest request) {
-        return ResponseEntity.ok(scriptService.executeScript(request.language(), request.script()));
+    public ResponseEntity<ScriptResponse> execute(@RequestBody ScriptRequest request,
+                                                  @RequestParam(defaultValue = "false") boolean timings) {
+        ScriptExecution execution = new ScriptExecution()
+                .timeoutMillis(request.timeoutMillis())
+                .cacheable(request.cacheable());
+        ScriptResponse response = scriptService.executeScript(request.language(), request.script(), execution);
+        Map<String, Double> phases = new LinkedHashMap<>();
+        execution.phases().forEach((phase, nanos) -> phases.put(phase, nanos / 1_000_000.0));
+        return ResponseEntity.ok()
+                .header("Server-Timing", serverTiming(phases))
+                .body(timings ? response.withTimings(phases) : response);
+    }
+
+    @PostMapping("/execute-batch")
+    public ResponseEntity<List<ScriptResponse>> executeBatch(@RequestBody List<ScriptRequest> requests) {
+        return ResponseEntity.ok(scriptService.executeBatch(requests));
+    }
+
+    /**
+     * Streams stdout/stderr as {@code stdout}/{@code stderr} events while the
+     * script runs, followed by one {@code result} event.
+     */
+    @PostMapping(value = "/execute-stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter executeStream(@RequestBody ScriptRequest request) {
+        return streamService.stream(request.language(), request.script(), request.timeoutMillis());
     }
 
     @PostMapping("/execute-file")
@@ -28,4 +66,10 @@ public class ScriptController {
             @RequestParam("file") MultipartFile file) {
         return ResponseEntity.ok(scriptService.executeUploadedScriptFile(language, file));
     }
+
+    private static String serverTiming(Map<String, Double> phases) {
+        StringJoiner header = new StringJoiner(", ");
+        phases.forEach((phase, millis) -> header.add(phase + ";dur=" + String.format(Locale.ROOT, "%.3f", millis)));
+        return header.toString();
+    }
 }
@@ -0,0 +1,58 @@
+package org.apiwiz.scriptingengine.controller;
+
+import org.apiwiz.scriptingengine.dto.JobResponse;
+import org.apiwiz.scriptingengine.dto.ScriptRequest;
+import org.apiwiz.scriptingengine.dto.ScriptResponse;
+import org.apiwiz.scriptingengine.service.ScriptJobService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.net.URI;
+
+@RestController
+@RequestMapping("/api/scripts/jobs")
+public class ScriptJobController {
+    private final ScriptJobService jobService;
+
+    public ScriptJobController(ScriptJobService jobService) {
+        this.jobService = jobService;
+    }
+
+    @PostMapping
+    public ResponseEntity<JobResponse> submit(@RequestBody ScriptRequest request) {
+        JobResponse job = jobService.submit(request.language(), request.script(), request.timeoutMillis());
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/scripts/jobs/" + job.id()))
+                .body(job);
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<JobResponse> status(@PathVariable String id) {
+        return ResponseEntity.ok(jobService.get(id));
+    }
+
+    /**
+     * 200 with the script's response once it succeeded, 400 if it failed
+     * (422 with the limit as {@code error} if a limit stopped it, like
+     * {@code /execute}), 409 if it was cancelled, and 202 with the job status
+     * while it runs.
+     */
+    @GetMapping("/{id}/result")
+    public ResponseEntity<?> result(@PathVariable String id) {
+        JobResponse job = jobService.get(id);
+        return switch (job.status()) {
+            case QUEUED, RUNNING -> ResponseEntity.accepted().body(job);
+            case SUCCEEDED -> ResponseEntity.ok(job.result());
+            case CANCELLED -> ResponseEntity.status(HttpStatus.CONFLICT).body(new ScriptResponse(job.error(), false));
+            case FAILED -> job.limit() != null
+                    ? ResponseEntity.unprocessableEntity().body(new ScriptResponse(job.error(), false, job.limit()))
+                    : ResponseEntity.badRequest().body(new ScriptResponse(job.error(), false));
+        };
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<JobResponse> cancel(@PathVariable String id) {
+        return ResponseEntity.ok(jobService.cancel(id));
+    }
+}
@@ -0,0 +1,50 @@
+package org.apiwiz.scriptingengine.controller;
+
+import org.apiwiz.scriptingengine.engine.ContextPool;
+import org.apiwiz.scriptingengine.engine.ContextPools;
+import org.apiwiz.scriptingengine.engine.SourceCache;
+import org.apiwiz.scriptingengine.service.AdmissionControl;
+import org.apiwiz.scriptingengine.service.ResultCache;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/stats")
+public class StatsController {
+    private final ContextPools contextPools;
+    private final SourceCache sourceCache;
+    private final ResultCache resultCache;
+    private final AdmissionControl admissionControl;
+
+    public StatsController(ContextPools contextPools, SourceCache sourceCache, ResultCache resultCache,
+                           AdmissionControl admissionControl) {
+        this.contextPools = contextPools;
+        this.sourceCache = sourceCache;
+        this.resultCache = resultCache;
+        this.admissionControl = admissionControl;
+    }
+
+    @GetMapping("/context-pools")
+    public ResponseEntity<List<ContextPool.Stats>> contextPools() {
+        return ResponseEntity.ok(contextPools.stats());
+    }
+
+    @GetMapping("/source-cache")
+    public ResponseEntity<SourceCache.Stats> sourceCache() {
+        return ResponseEntity.ok(sourceCache.stats());
+    }
+
+    @GetMapping("/result-cache")
+    public ResponseEntity<ResultCache.Stats> resultCache() {
+        return ResponseEntity.ok(resultCache.stats());
+    }
+
+    @GetMapping("/admission")
+    public ResponseEntity<List<AdmissionControl.Stats>> admission() {
+        return ResponseEntity.ok(admissionControl.stats());
+    }
+}
@@ -0,0 +1,18 @@
+package org.apiwiz.scriptingengine.dto;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * @param args          bound as globals, one per member, or passed to {@code function} as its argument;
+ *                      must be an object unless a function is called
+ * @param function      name of a function the script defines (JavaScript: exports) to call instead
+ *                      of using the script's own value
+ * @param timeoutMillis optional wall-clock budget overriding {@code scripting.limits.timeout}
+ * @param cacheable     the script's response depends only on its arguments, so a cached one may be served
+ */
+public record InvokeRequest(JsonNode args, String function, Long timeoutMillis, Boolean cacheable) {
+
+    public InvokeRequest(JsonNode args, String function, Long timeoutMillis) {
+        this(args, function, timeoutMillis, null);
+    }
+}
@@ -0,0 +1,22 @@
+package org.apiwiz.scriptingengine.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import org.apiwiz.scriptingengine.models.JobStatus;
+
+import java.time.Instant;
+
+/**
+ * State of an asynchronous script job. {@code result} is set once the job
+ * succeeded, {@code error} once it failed or was cancelled; {@code limit}
+ * names the limit that stopped it ({@code timeout}, {@code statement_limit},
+ * {@code result_limit}), if one did.
+ */
+public record JobResponse(String id,
+                          String language,
+                          JobStatus status,
+                          Instant submittedAt,
+                          Instant startedAt,
+                          Instant finishedAt,
+                          ScriptResponse result,
+                          String error,
+                          @JsonInclude(JsonInclude.Include.NON_NULL) String limit) {}
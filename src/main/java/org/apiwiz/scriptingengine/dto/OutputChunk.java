@@ -0,0 +1,4 @@
+package org.apiwiz.scriptingengine.dto;
+
+/** A piece of stdout or stderr pushed while a streamed script runs. */
+public record OutputChunk(String text) {}
@@ -0,0 +1,4 @@
+package org.apiwiz.scriptingengine.dto;
+
+/** Sent before the result of a streamed script when output was dropped because the client did not keep up. */
+public record OutputTruncated(long droppedBytes) {}
@@ -0,0 +1,3 @@
+package org.apiwiz.scriptingengine.dto;
+
+public record RegisterScriptRequest(String language, String script) {}
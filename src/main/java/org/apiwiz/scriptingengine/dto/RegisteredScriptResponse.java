@@ -0,0 +1,5 @@
+package org.apiwiz.scriptingengine.dto;
+
+import java.time.Instant;
+
+public record RegisteredScriptResponse(String id, String language, Instant registeredAt) {}
@@ -1,4 +1,16 @@
 package org.apiwiz.scriptingengine.dto;
 
-public record ScriptRequest(String language, String script) {}
+/**
+ * @param timeoutMillis optional wall-clock budget overriding {@code scripting.limits.timeout}
+ * @param cacheable     the script always produces the same response, so a cached one may be served
+ */
+public record ScriptRequest(String language, String script, Long timeoutMillis, Boolean cacheable) {
 
+    public ScriptRequest(String language, String script) {
+        this(language, script, null, null);
+    }
+
+    public ScriptRequest(String language, String script, Long timeoutMillis) {
+        this(language, script, timeoutMillis, null);
+    }
+}
@@ -1,4 +1,38 @@
 package org.apiwiz.scriptingengine.dto;
 
-public record ScriptResponse(String output, boolean success) {}
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 
+import java.util.Map;
+
+/**
+ * @param output  the script's value as a string (kept for existing clients): the value
+ *                itself for a null, boolean, number or string, the JSON text of
+ *                {@code result} for structured values; the message of a failure
+ * @param result  the script's value as JSON, present when the script completed
+ * @param error   kind of failure when the script was stopped by a limit
+ *                ({@code timeout}, {@code statement_limit}, {@code result_limit}), otherwise absent
+ * @param timings per-phase durations in milliseconds, only present when requested
+ */
+public record ScriptResponse(@JsonInclude(JsonInclude.Include.NON_NULL) String output,
+                             boolean success,
+                             @JsonInclude(JsonInclude.Include.NON_NULL) TokenBuffer result,
+                             @JsonInclude(JsonInclude.Include.NON_NULL) String error,
+                             @JsonInclude(JsonInclude.Include.NON_NULL) Map<String, Double> timings) {
+
+    public ScriptResponse(String output, boolean success) {
+        this(output, success, null, null, null);
+    }
+
+    public ScriptResponse(String output, boolean success, String error) {
+        this(output, success, null, error, null);
+    }
+
+    public ScriptResponse(String output, TokenBuffer result) {
+        this(output, true, result, null, null);
+    }
+
+    public ScriptResponse withTimings(Map<String, Double> timings) {
+        return new ScriptResponse(output, success, result, error, timings);
+    }
+}
@@ -0,0 +1,18 @@
+package org.apiwiz.scriptingengine.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+/**
+ * Final event of a streamed execution.
+ *
+ * @param result       the script's value as JSON, present when the script completed
+ * @param error        kind of limit that stopped the script, as in {@link ScriptResponse}, otherwise absent
+ * @param droppedBytes output discarded because the client did not keep up
+ */
+public record StreamResult(@JsonInclude(JsonInclude.Include.NON_NULL) String output,
+                           boolean success,
+                           @JsonInclude(JsonInclude.Include.NON_NULL) TokenBuffer result,
+                           @JsonInclude(JsonInclude.Include.NON_NULL) String error,
+                           long durationMillis,
+                           long droppedBytes) {}
@@ -0,0 +1,8 @@
+package org.apiwiz.scriptingengine.dto;
+
+import java.util.List;
+
+/**
+ * @param modules top-level import names whose distributions are upgraded, as scripts import them
+ */
+public record UpgradeRequest(List<String> modules) {}
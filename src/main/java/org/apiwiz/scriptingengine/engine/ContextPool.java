@@ -0,0 +1,214 @@
+package org.apiwiz.scriptingengine.engine;
+
+import org.apiwiz.scriptingengine.config.ContextPoolProperties;
+import org.apiwiz.scriptingengine.exception.ScriptExecutionException;
+import org.apiwiz.scriptingengine.models.ScriptLanguage;
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Value;
+
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.BiFunction;
+
+/**
+ * Bounded pool of pre-initialized contexts for a single language.
+ *
+ * <p>Contexts are checked out per execution and returned by closing the
+ * {@link PooledContext}. On return the language reset hook clears the
+ * globals the script left behind; a context is retired instead once it has
+ * served {@code maxUses} executions, was marked broken, or the pool already
+ * holds {@code maxIdle} idle contexts.
+ */
+public class ContextPool implements AutoCloseable {
+
+    private final ScriptLanguage language;
+    private final BiFunction<OutputStream, OutputStream, Context> factory;
+    private final Function<Context, Value> resetInstaller;
+    private final ContextPoolProperties properties;
+
+    private final BlockingDeque<PooledContext> idle = new LinkedBlockingDeque<>();
+    private final Semaphore permits;
+
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final LongAdder created = new LongAdder();
+    private final LongAdder retired = new LongAdder();
+    private final LongAdder acquisitions = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final LongAccumulator maxWaitNanos = new LongAccumulator(Math::max, 0);
+    private final AtomicLong generation = new AtomicLong();
+    private volatile boolean closed;
+
+    /**
+     * @param factory        creates a fresh context bound to the shared engine that
+     *                       writes its stdout/stderr to the given streams
+     * @param resetInstaller evaluated once per new context; returns an executable
+     *                       run on every check-in to clear script state, or {@code null}
+     */
+    public ContextPool(ScriptLanguage language,
+                       BiFunction<OutputStream, OutputStream, Context> factory,
+                       Function<Context, Value> resetInstaller,
+                       ContextPoolProperties properties) {
+        this.language = language;
+        this.factory = factory;
+        this.resetInstaller = resetInstaller;
+        this.properties = properties;
+        this.permits = new Semaphore(properties.maxSize(), true);
+    }
+
+    /** Checks out a context, waiting up to the configured acquire timeout. */
+    public PooledContext acquire() {
+        if (closed) throw new IllegalStateException("Context pool for " + language + " is closed");
+
+        long start = System.nanoTime();
+        waiting.incrementAndGet();
+        try {
+            if (!permits.tryAcquire(properties.acquireTimeout().toNanos(), TimeUnit.NANOSECONDS)) {
+                throw new ScriptExecutionException("Timed out waiting for a " + language.getEngineName()
+                        + " context after " + properties.acquireTimeout().toMillis() + " ms", null);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ScriptExecutionException("Interrupted while waiting for a context", e);
+        } finally {
+            waiting.decrementAndGet();
+        }
+        long waited = System.nanoTime() - start;
+        totalWaitNanos.add(waited);
+        maxWaitNanos.accumulate(waited);
+        acquisitions.increment();
+
+        try {
+            PooledContext pooled;
+            while ((pooled = idle.pollFirst()) != null && pooled.getGeneration() != generation.get()) {
+                retire(pooled);
+            }
+            if (pooled == null) pooled = create();
+            pooled.checkedOut();
+            active.incrementAndGet();
+            return pooled;
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Creates contexts until {@code count} are idle, capped at {@code maxIdle},
+     * so the first executions do not pay for context creation. Missing
+     * contexts are created in parallel.
+     *
+     * @return contexts now idle
+     */
+    public int prefill(int count) {
+        int target = Math.min(count, Math.min(properties.maxIdle(), properties.maxSize()));
+        List<Future<PooledContext>> checkouts = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            // checking out the whole target at once takes the idle ones and creates the rest
+            for (int i = 0; i < target; i++) checkouts.add(executor.submit(this::acquire));
+        }
+        RuntimeException failure = null;
+        for (Future<PooledContext> checkout : checkouts) {
+            try {
+                checkout.get().close();
+            } catch (ExecutionException e) {
+                if (failure == null) failure = new ScriptExecutionException(
+                        "Could not create a " + language.getEngineName() + " context: " + e.getCause().getMessage(), e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (failure != null) throw failure;
+        return idle.size();
+    }
+
+    /** Retires every context currently idle and marks checked-out ones for retirement on return. */
+    public void invalidate() {
+        generation.incrementAndGet();
+        PooledContext pooled;
+        while ((pooled = idle.pollFirst()) != null) retire(pooled);
+    }
+
+    public Stats stats() {
+        return new Stats(language, active.get(), idle.size(), waiting.get(),
+                created.sum(), retired.sum(), acquisitions.sum(),
+                TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.sum()),
+                TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get()));
+    }
+
+    public ScriptLanguage getLanguage() {
+        return language;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        invalidate();
+    }
+
+    void release(PooledContext pooled) {
+        active.decrementAndGet();
+        try {
+            if (closed || pooled.isBroken()
+                    || pooled.getGeneration() != generation.get()
+                    || pooled.getUses() >= properties.maxUses()
+                    || idle.size() >= properties.maxIdle()
+                    || !pooled.reset()) {
+                retire(pooled);
+            } else {
+                pooled.restoreOutput();
+                idle.offerFirst(pooled);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private PooledContext create() {
+        long start = System.nanoTime();
+        OutputRedirect out = new OutputRedirect(System.out);
+        OutputRedirect err = new OutputRedirect(System.err);
+        Context context = factory.apply(out, err);
+        try {
+            Value reset = resetInstaller != null ? resetInstaller.apply(context) : null;
+            created.increment();
+            return new PooledContext(this, context, reset, generation.get(), out, err, System.nanoTime() - start);
+        } catch (RuntimeException e) {
+            context.close(true);
+            throw e;
+        }
+    }
+
+    private void retire(PooledContext pooled) {
+        retired.increment();
+        pooled.closeContext();
+    }
+
+    /**
+     * Point-in-time pool occupancy and wait statistics.
+     */
+    public record Stats(ScriptLanguage language,
+                        int active,
+                        int idle,
+                        int waiting,
+                        long created,
+                        long retired,
+                        long acquisitions,
+                        long totalWaitMillis,
+                        long maxWaitMillis) {
+    }
+}
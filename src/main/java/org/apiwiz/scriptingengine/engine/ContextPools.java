@@ -0,0 +1,66 @@
+package org.apiwiz.scriptingengine.engine;
+
+import jakarta.annotation.PreDestroy;
+import org.apiwiz.scriptingengine.config.ContextPoolProperties;
+import org.apiwiz.scriptingengine.models.ScriptLanguage;
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Engine;
+import org.graalvm.polyglot.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Creates and tracks the {@link ContextPool} of every language. Executors
+ * register their pool with a context factory bound to the shared engine;
+ * the pools are closed before the engines on shutdown.
+ */
+@Component
+public class ContextPools {
+
+    /** Builds a context on the shared engine writing to the given streams. */
+    @FunctionalInterface
+    public interface ContextFactory {
+        Context create(Engine engine, OutputStream out, OutputStream err);
+    }
+
+    private final PolyglotEngines engines;
+    private final ContextPoolProperties properties;
+    private final Map<ScriptLanguage, ContextPool> pools = new ConcurrentHashMap<>();
+
+    public ContextPools(PolyglotEngines engines, ContextPoolProperties properties) {
+        this.engines = engines;
+        this.properties = properties;
+    }
+
+    public ContextPool create(ScriptLanguage language,
+                              ContextFactory factory,
+                              Function<Context, Value> resetInstaller) {
+        Engine engine = engines.get(language);
+        ContextPool pool = new ContextPool(language,
+                (out, err) -> factory.create(engine, out, err), resetInstaller, properties);
+        if (pools.putIfAbsent(language, pool) != null) {
+            throw new IllegalStateException("Context pool already registered for " + language);
+        }
+        return pool;
+    }
+
+    /** @see ContextPool#prefill(int) */
+    public int prefill(ScriptLanguage language, int count) {
+        ContextPool pool = pools.get(language);
+        return pool != null ? pool.prefill(count) : 0;
+    }
+
+    public List<ContextPool.Stats> stats() {
+        return pools.values().stream().map(ContextPool::stats).toList();
+    }
+
+    @PreDestroy
+    public void close() {
+        pools.values().forEach(ContextPool::close);
+    }
+}
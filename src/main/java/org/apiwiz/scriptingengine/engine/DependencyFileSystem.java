@@ -0,0 +1,332 @@
+package org.apiwiz.scriptingengine.engine;
+
+import org.graalvm.polyglot.io.FileSystem;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileAttribute;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Read-only polyglot file system over one dependency root (deps/js or
+ * deps/python), served from an in-memory index of the files installed there.
+ *
+ * <p>The tree under the root is walked once up front and again for each
+ * subtree an install publishes ({@link #published}). Module resolution then
+ * costs hash lookups: probing a path that is not installed — most of what
+ * {@code require} and the import system do — never reaches the disk, and
+ * directory listings come from the index. Attributes are read from disk
+ * once per file and kept; contents are read on first open and kept in
+ * memory, small files on the heap and larger ones memory-mapped.
+ *
+ * <p>Scripts see nothing outside the root except its parent directories,
+ * and cannot write anywhere: every write fails with
+ * {@link AccessDeniedException}. Contexts wrap this file system with
+ * {@link FileSystem#allowInternalResourceAccess} so languages can still load
+ * their own standard libraries.
+ */
+public class DependencyFileSystem implements FileSystem {
+
+    /** Files up to this size are copied onto the heap, larger ones are memory-mapped. */
+    private static final int HEAP_CONTENT_LIMIT = 64 * 1024;
+
+    private final Path root;
+    private final Map<Path, Node> index = new ConcurrentHashMap<>();
+
+    public DependencyFileSystem(Path root) {
+        this.root = root.toAbsolutePath().normalize();
+        Path child = null;
+        for (Path dir = this.root; dir != null; child = dir, dir = dir.getParent()) {
+            Node node = new Node(true);
+            if (child != null) node.children.add(child);
+            index.put(dir, node);
+        }
+        published(this.root);
+    }
+
+    /**
+     * Re-indexes {@code path} and everything below it after an install
+     * published, replaced or removed it. The new entries are swapped in
+     * before stale ones are dropped, so concurrent lookups never miss a file
+     * that exists both before and after. The cached attributes of its parent
+     * directories are dropped, so their new modification time is seen; the
+     * import system relies on it to notice new entries in a directory it has
+     * already listed.
+     */
+    public void published(Path path) {
+        Path dir = path.toAbsolutePath().normalize();
+        if (!dir.startsWith(root)) return;
+
+        Map<Path, Node> fresh = new HashMap<>();
+        if (Files.isDirectory(dir)) {
+            try {
+                Files.walkFileTree(dir, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE,
+                        new SimpleFileVisitor<>() {
+                            @Override
+                            public FileVisitResult preVisitDirectory(Path d, BasicFileAttributes attrs) {
+                                add(fresh, dir, d, true);
+                                return FileVisitResult.CONTINUE;
+                            }
+
+                            @Override
+                            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                                add(fresh, dir, file, attrs.isDirectory());
+                                return FileVisitResult.CONTINUE;
+                            }
+
+                            @Override
+                            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                                return FileVisitResult.CONTINUE;
+                            }
+                        });
+            } catch (IOException e) {
+                System.err.println("Warning: could not index " + dir + ": " + e.getMessage());
+            }
+        } else if (Files.exists(dir)) {
+            fresh.put(dir, new Node(false));
+        } else if (dir.equals(root)) {
+            fresh.put(dir, new Node(true));     // nothing installed yet
+        }
+
+        index.putAll(fresh);
+        index.keySet().removeIf(p -> p.startsWith(dir) && !fresh.containsKey(p));
+        if (dir.equals(root)) return;
+
+        if (fresh.isEmpty()) {
+            Node parent = index.get(dir.getParent());
+            if (parent != null) {
+                parent.children.remove(dir);
+                parent.attributes.clear();
+            }
+            return;
+        }
+        // link the subtree into its parent directories, which may be new as well
+        for (Path child = dir; !child.equals(root); child = child.getParent()) {
+            Node parent = index.computeIfAbsent(child.getParent(), p -> new Node(true));
+            parent.children.add(child);
+            parent.attributes.clear();
+        }
+    }
+
+    /** Number of indexed files and directories. */
+    public int size() {
+        return index.size();
+    }
+
+    private static void add(Map<Path, Node> fresh, Path top, Path path, boolean directory) {
+        fresh.put(path, new Node(directory));
+        if (!path.equals(top)) fresh.get(path.getParent()).children.add(path);
+    }
+
+    private Node node(Path path) throws NoSuchFileException {
+        Node node = index.get(path);
+        if (node == null) throw new NoSuchFileException(path.toString());
+        return node;
+    }
+
+    @Override
+    public Path parsePath(URI uri) {
+        if (!"file".equals(uri.getScheme())) throw new UnsupportedOperationException("Unsupported URI: " + uri);
+        return Path.of(uri);
+    }
+
+    @Override
+    public Path parsePath(String path) {
+        return Path.of(path);
+    }
+
+    @Override
+    public Path toAbsolutePath(Path path) {
+        return path.toAbsolutePath();
+    }
+
+    @Override
+    public Path toRealPath(Path path, LinkOption... linkOptions) throws IOException {
+        Path absolute = path.toAbsolutePath().normalize();
+        node(absolute);
+        return absolute;
+    }
+
+    @Override
+    public void checkAccess(Path path, Set<? extends AccessMode> modes, LinkOption... linkOptions) throws IOException {
+        Path absolute = path.toAbsolutePath().normalize();
+        node(absolute);
+        if (modes.contains(AccessMode.WRITE)) throw new AccessDeniedException(absolute.toString(), null, "read-only");
+    }
+
+    @Override
+    public Map<String, Object> readAttributes(Path path, String attributes, LinkOption... options) throws IOException {
+        Path absolute = path.toAbsolutePath().normalize();
+        Node node = node(absolute);
+        Map<String, Object> cached = node.attributes.get(attributes);
+        if (cached == null) {
+            cached = Collections.unmodifiableMap(Files.readAttributes(absolute, attributes));
+            node.attributes.put(attributes, cached);
+        }
+        return cached;
+    }
+
+    @Override
+    public SeekableByteChannel newByteChannel(Path path, Set<? extends OpenOption> options,
+                                              FileAttribute<?>... attrs) throws IOException {
+        Path absolute = path.toAbsolutePath().normalize();
+        if (options.contains(StandardOpenOption.WRITE) || options.contains(StandardOpenOption.APPEND)
+                || options.contains(StandardOpenOption.CREATE_NEW) || options.contains(StandardOpenOption.DELETE_ON_CLOSE)) {
+            throw new AccessDeniedException(absolute.toString(), null, "read-only");
+        }
+        Node node = node(absolute);
+        if (node.directory) throw new FileSystemException(absolute.toString(), null, "Is a directory");
+        return new ContentChannel(node.content(absolute));
+    }
+
+    @Override
+    public DirectoryStream<Path> newDirectoryStream(Path dir, DirectoryStream.Filter<? super Path> filter) throws IOException {
+        Path absolute = dir.toAbsolutePath().normalize();
+        Node node = node(absolute);
+        if (!node.directory) throw new NotDirectoryException(absolute.toString());
+        List<Path> entries = new ArrayList<>();
+        for (Path child : node.children) {
+            if (filter.accept(dir.resolve(child.getFileName()))) entries.add(dir.resolve(child.getFileName()));
+        }
+        return new DirectoryStream<>() {
+            @Override
+            public Iterator<Path> iterator() {
+                return entries.iterator();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    @Override
+    public void createDirectory(Path dir, FileAttribute<?>... attrs) throws IOException {
+        throw new AccessDeniedException(dir.toString(), null, "read-only");
+    }
+
+    @Override
+    public void delete(Path path) throws IOException {
+        throw new AccessDeniedException(path.toString(), null, "read-only");
+    }
+
+    @Override
+    public void setAttribute(Path path, String attribute, Object value, LinkOption... options) throws IOException {
+        throw new AccessDeniedException(path.toString(), null, "read-only");
+    }
+
+    @Override
+    public void createLink(Path link, Path existing) throws IOException {
+        throw new AccessDeniedException(link.toString(), null, "read-only");
+    }
+
+    @Override
+    public void createSymbolicLink(Path link, Path target, FileAttribute<?>... attrs) throws IOException {
+        throw new AccessDeniedException(link.toString(), null, "read-only");
+    }
+
+    private static final class Node {
+        final boolean directory;
+        /** absolute paths of the entries of a directory */
+        final Set<Path> children;
+        /** attribute maps by requested attribute string */
+        final Map<String, Map<String, Object>> attributes = new ConcurrentHashMap<>(2);
+        private volatile ByteBuffer content;
+
+        Node(boolean directory) {
+            this.directory = directory;
+            this.children = directory ? ConcurrentHashMap.newKeySet() : Set.of();
+        }
+
+        ByteBuffer content(Path path) throws IOException {
+            ByteBuffer loaded = content;
+            if (loaded == null) {
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                    long size = channel.size();
+                    if (size <= HEAP_CONTENT_LIMIT) {
+                        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+                        while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                            // keep reading
+                        }
+                        loaded = buffer.flip();
+                    } else {
+                        loaded = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                    }
+                }
+                content = loaded;
+            }
+            return loaded.asReadOnlyBuffer();
+        }
+    }
+
+    /** Read-only channel over a file's cached content. */
+    private static final class ContentChannel implements SeekableByteChannel {
+        private final ByteBuffer content;
+        private boolean open = true;
+
+        ContentChannel(ByteBuffer content) {
+            this.content = content;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            ensureOpen();
+            if (!content.hasRemaining()) return -1;
+            int n = Math.min(dst.remaining(), content.remaining());
+            dst.put(content.slice(content.position(), n));
+            content.position(content.position() + n);
+            return n;
+        }
+
+        @Override
+        public int write(ByteBuffer src) {
+            throw new NonWritableChannelException();
+        }
+
+        @Override
+        public long position() throws IOException {
+            ensureOpen();
+            return content.position();
+        }
+
+        @Override
+        public SeekableByteChannel position(long newPosition) throws IOException {
+            ensureOpen();
+            content.position((int) Math.min(newPosition, content.limit()));
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            ensureOpen();
+            return content.limit();
+        }
+
+        @Override
+        public SeekableByteChannel truncate(long size) {
+            throw new NonWritableChannelException();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void close() {
+            open = false;
+        }
+
+        private void ensureOpen() throws ClosedChannelException {
+            if (!open) throw new ClosedChannelException();
+        }
+    }
+}
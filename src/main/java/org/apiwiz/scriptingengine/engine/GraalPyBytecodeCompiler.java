@@ -0,0 +1,88 @@
+package org.apiwiz.scriptingengine.engine;
+
+import jakarta.annotation.PreDestroy;
+import org.apiwiz.scriptingengine.models.ScriptLanguage;
+import org.apiwiz.scriptingengine.utils.PythonBytecodeCompiler;
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.PolyglotException;
+import org.graalvm.polyglot.Source;
+import org.graalvm.polyglot.Value;
+import org.graalvm.polyglot.io.IOAccess;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+
+/**
+ * {@link PythonBytecodeCompiler} using the bundled GraalPy, so the caches
+ * carry its cache tag and bytecode format.
+ *
+ * <p>Compilation runs in one long-lived context on the shared Python engine
+ * that, unlike the script contexts, may write; calls are serialized. Caches
+ * are validated against the source's modification time and size when
+ * imported, so a source that changes afterwards is compiled again in memory
+ * rather than loaded stale.
+ */
+@Component
+public class GraalPyBytecodeCompiler implements PythonBytecodeCompiler {
+
+    private static final Source COMPILE = Source.create("python", """
+            def __compile(root):
+                import compileall, os, py_compile
+                failed = 0
+                for dirpath, dirnames, filenames in os.walk(root):
+                    dirnames[:] = [d for d in dirnames if not d.startswith('.') and d != '__pycache__']
+                    for name in filenames:
+                        if name.endswith('.py') and not compileall.compile_file(
+                                os.path.join(dirpath, name), quiet=2,
+                                invalidation_mode=py_compile.PycInvalidationMode.TIMESTAMP):
+                            failed += 1
+                return failed
+            __compile
+            """);
+
+    private static final Source CACHE_TAG = Source.create("python", "__import__('sys').implementation.cache_tag");
+
+    private final PolyglotEngines engines;
+    private Context context;
+    private Value compile;
+
+    public GraalPyBytecodeCompiler(PolyglotEngines engines) {
+        this.engines = engines;
+    }
+
+    @Override
+    public synchronized String cacheTag() {
+        return context().eval(CACHE_TAG).asString();
+    }
+
+    @Override
+    public synchronized int compile(Path dir) throws IOException {
+        try {
+            context();
+            return compile.execute(dir.toAbsolutePath().toString()).asInt();
+        } catch (PolyglotException e) {
+            throw new IOException("Could not compile " + dir + ": " + e.getMessage(), e);
+        }
+    }
+
+    private Context context() {
+        if (context == null) {
+            context = Context.newBuilder(ScriptLanguage.PYTHON.getEngineName())
+                    .engine(engines.get(ScriptLanguage.PYTHON))
+                    .out(OutputStream.nullOutputStream())
+                    .allowIO(IOAccess.ALL)
+                    .build();
+            compile = context.eval(COMPILE);
+        }
+        return context;
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (context != null) context.close();
+        context = null;
+        compile = null;
+    }
+}
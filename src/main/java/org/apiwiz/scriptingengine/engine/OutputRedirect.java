@@ -0,0 +1,49 @@
+package org.apiwiz.scriptingengine.engine;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Output stream handed to a pooled context at creation time. Contexts
+ * cannot change their {@code out}/{@code err} after being built, so each
+ * execution points this stream at its own sink and the pool points it back
+ * at the server console on return.
+ */
+class OutputRedirect extends OutputStream {
+
+    private final OutputStream fallback;
+    private volatile OutputStream target;
+
+    OutputRedirect(OutputStream fallback) {
+        this.fallback = fallback;
+        this.target = fallback;
+    }
+
+    void redirect(OutputStream sink) {
+        target = sink != null ? sink : fallback;
+    }
+
+    void restore() {
+        target = fallback;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        target.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        target.write(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        target.flush();
+    }
+
+    @Override
+    public void close() {
+        // the sinks are owned by whoever redirected to them
+    }
+}
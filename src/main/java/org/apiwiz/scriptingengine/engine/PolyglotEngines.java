@@ -0,0 +1,32 @@
+package org.apiwiz.scriptingengine.engine;
+
+import jakarta.annotation.PreDestroy;
+import org.apiwiz.scriptingengine.models.ScriptLanguage;
+import org.graalvm.polyglot.Engine;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Holds one long-lived GraalVM {@link Engine} per {@link ScriptLanguage}.
+ * Contexts created on a shared engine reuse its language initialization
+ * and share parsed/compiled code for identical sources.
+ */
+@Component
+public class PolyglotEngines {
+
+    private final Map<ScriptLanguage, Engine> engines = new EnumMap<>(ScriptLanguage.class);
+
+    public synchronized Engine get(ScriptLanguage language) {
+        return engines.computeIfAbsent(language, l -> Engine.newBuilder(l.getEngineName())
+                .allowExperimentalOptions(true)
+                .build());
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        engines.values().forEach(Engine::close);
+        engines.clear();
+    }
+}
@@ -0,0 +1,118 @@
+package org.apiwiz.scriptingengine.engine;
+
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.PolyglotException;
+import org.graalvm.polyglot.Value;
+
+import java.io.OutputStream;
+
+/**
+ * A context checked out of a {@link ContextPool}. Closing it hands the
+ * context back to the pool rather than closing the underlying
+ * {@link Context}.
+ */
+public class PooledContext implements AutoCloseable {
+
+    private final ContextPool pool;
+    private final Context context;
+    private final Value resetHook;
+    private final long generation;
+    private final OutputRedirect out;
+    private final OutputRedirect err;
+    private final long createNanos;
+    private int uses;
+    private boolean broken;
+
+    PooledContext(ContextPool pool, Context context, Value resetHook, long generation,
+                  OutputRedirect out, OutputRedirect err, long createNanos) {
+        this.pool = pool;
+        this.context = context;
+        this.resetHook = resetHook;
+        this.generation = generation;
+        this.out = out;
+        this.err = err;
+        this.createNanos = createNanos;
+    }
+
+    public Context context() {
+        return context;
+    }
+
+    /** Number of executions this context has served, including the current one. */
+    public int getUses() {
+        return uses;
+    }
+
+    /** Time it took to build this context and install its reset hook. */
+    public long getCreateNanos() {
+        return createNanos;
+    }
+
+    public boolean isBroken() {
+        return broken;
+    }
+
+    /** Retires the context on return instead of recycling it. */
+    public void markBroken() {
+        broken = true;
+    }
+
+    /**
+     * Inspects a failure raised while this context was in use. Guest errors
+     * (syntax errors, uncaught exceptions) leave the context reusable;
+     * cancellation, exit, resource exhaustion and host/internal errors do not.
+     */
+    public void failed(Throwable error) {
+        if (!(error instanceof PolyglotException pe)
+                || pe.isCancelled() || pe.isExit() || pe.isResourceExhausted()
+                || pe.isInternalError() || pe.isHostException()) {
+            markBroken();
+        }
+    }
+
+    /**
+     * Sends the script's stdout/stderr to the given sinks until the context
+     * is returned; {@code null} keeps the server console.
+     */
+    public void redirectOutput(OutputStream stdout, OutputStream stderr) {
+        out.redirect(stdout);
+        err.redirect(stderr);
+    }
+
+    @Override
+    public void close() {
+        pool.release(this);
+    }
+
+    long getGeneration() {
+        return generation;
+    }
+
+    void checkedOut() {
+        uses++;
+        context.resetLimits();
+    }
+
+    void restoreOutput() {
+        out.restore();
+        err.restore();
+    }
+
+    boolean reset() {
+        if (resetHook == null) return true;
+        try {
+            resetHook.executeVoid();
+            return true;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    void closeContext() {
+        try {
+            context.close(true);
+        } catch (RuntimeException ignored) {
+            // already closed or cancelled
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package org.apiwiz.scriptingengine.engine;
+
+import org.apiwiz.scriptingengine.config.SourceCacheProperties;
+import org.apiwiz.scriptingengine.models.ScriptLanguage;
+import org.graalvm.polyglot.Source;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Size-bounded LRU cache of {@link Source} objects keyed by language, source
+ * name and a SHA-256 of the script text.
+ *
+ * <p>Handing the engine the same {@code Source} instance for a repeated script
+ * lets every context on the shared engine reuse its parsed AST and compiled
+ * code instead of parsing the text again.
+ */
+@Component
+public class SourceCache {
+
+    private final int maxEntries;
+    private final Map<Key, Source> sources;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public SourceCache(SourceCacheProperties properties) {
+        this.maxEntries = properties.maxEntries();
+        this.sources = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Source> eldest) {
+                if (size() <= maxEntries) return false;
+                evictions.increment();
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached source for the script, building and caching it on a miss.
+     *
+     * @param mimeType MIME type for the source, or {@code null} for the language default
+     */
+    public Source get(ScriptLanguage language, String name, String mimeType, String script) {
+        Key key = new Key(language, name, mimeType, sha256(script));
+        synchronized (sources) {
+            Source cached = sources.get(key);
+            if (cached != null) {
+                hits.increment();
+                return cached;
+            }
+        }
+
+        misses.increment();
+        Source source = Source.newBuilder(language.getEngineName(), script, name)
+                .mimeType(mimeType)
+                .buildLiteral();
+        synchronized (sources) {
+            Source raced = sources.putIfAbsent(key, source);
+            return raced != null ? raced : source;
+        }
+    }
+
+    public void clear() {
+        synchronized (sources) {
+            sources.clear();
+        }
+    }
+
+    public Stats stats() {
+        int size;
+        synchronized (sources) {
+            size = sources.size();
+        }
+        return new Stats(size, maxEntries, hits.sum(), misses.sum(), evictions.sum());
+    }
+
+    private static String sha256(String script) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(script.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private record Key(ScriptLanguage language, String name, String mimeType, String hash) {
+    }
+
+    public record Stats(int size, int maxEntries, long hits, long misses, long evictions) {
+    }
+}
@@ -0,0 +1,23 @@
+package org.apiwiz.scriptingengine.exception;
+
+/**
+ * A script was stopped because it ran past its time budget or statement limit,
+ * or its result was too large to return.
+ */
+public class ExecutionLimitExceededException extends ScriptExecutionException {
+    public static final String TIMEOUT = "timeout";
+    public static final String STATEMENT_LIMIT = "statement_limit";
+    public static final String RESULT_LIMIT = "result_limit";
+
+    private final String limit;
+
+    public ExecutionLimitExceededException(String limit, String message, Throwable cause) {
+        super(message, cause);
+        this.limit = limit;
+    }
+
+    /** {@link #TIMEOUT}, {@link #STATEMENT_LIMIT} or {@link #RESULT_LIMIT} */
+    public String getLimit() {
+        return limit;
+    }
+}
@@ -0,0 +1,17 @@
+package org.apiwiz.scriptingengine.exception;
+
+import java.time.Duration;
+
+/** Work refused because the engine is at capacity; clients should retry later. */
+public class ExecutionRejectedException extends RuntimeException {
+    private final Duration retryAfter;
+
+    public ExecutionRejectedException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -1,8 +1,11 @@
 package org.apiwiz.scriptingengine.exception;
 
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
 import org.apiwiz.scriptingengine.dto.ScriptResponse;
 
 import java.time.Instant;
@@ -15,6 +18,50 @@ public class GlobalExceptionHandler {
         return ResponseEntity.badRequest().body(new ScriptResponse(e.getMessage(), false));
     }
 
+    /**
+     * 422 for every limit: the request was understood but the script ran past
+     * its time or statement budget or produced a result too large to return.
+     * The {@code error} field names the limit.
+     */
+    @ExceptionHandler(ExecutionLimitExceededException.class)
+    public ResponseEntity<ScriptResponse> handleLimitExceeded(ExecutionLimitExceededException e) {
+        return ResponseEntity.unprocessableEntity()
+                .body(new ScriptResponse(e.getMessage(), false, e.getLimit()));
+    }
+
+    @ExceptionHandler({JobNotFoundException.class, ScriptNotFoundException.class})
+    public ResponseEntity<?> handleNotFound(RuntimeException ex) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of(
+                "timestamp", Instant.now(),
+                "status", 404,
+                "error", "Not Found",
+                "message", ex.getMessage()
+        ));
+    }
+
+    @ExceptionHandler(ExecutionRejectedException.class)
+    public ResponseEntity<?> handleRejected(ExecutionRejectedException ex) {
+        long retryAfter = Math.max(1, ex.getRetryAfter().toSeconds());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(retryAfter))
+                .body(Map.of(
+                        "timestamp", Instant.now(),
+                        "status", 429,
+                        "error", "Too Many Requests",
+                        "message", ex.getMessage()
+                ));
+    }
+
+    @ExceptionHandler(MaxUploadSizeExceededException.class)
+    public ResponseEntity<?> handleUploadTooLarge(MaxUploadSizeExceededException ex) {
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(Map.of(
+                "timestamp", Instant.now(),
+                "status", 413,
+                "error", "Payload Too Large",
+                "message", "Uploaded script exceeds the limit of " + ex.getMaxUploadSize() + " bytes"
+        ));
+    }
+
     @ExceptionHandler(UnsupportedLanguageException.class)
     public ResponseEntity<?> handleUnsupportedLanguage(UnsupportedLanguageException ex) {
         return ResponseEntity.badRequest().body(Map.of(
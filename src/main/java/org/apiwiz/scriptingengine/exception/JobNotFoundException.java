@@ -0,0 +1,7 @@
+package org.apiwiz.scriptingengine.exception;
+
+public class JobNotFoundException extends RuntimeException {
+    public JobNotFoundException(String id) {
+        super("Job not found: " + id);
+    }
+}
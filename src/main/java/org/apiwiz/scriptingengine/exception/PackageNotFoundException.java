@@ -0,0 +1,9 @@
+package org.apiwiz.scriptingengine.exception;
+
+import java.io.IOException;
+
+public class PackageNotFoundException extends IOException {
+    public PackageNotFoundException(String packageName, String registryUrl) {
+        super("Package not found: " + packageName + " (" + registryUrl + ")");
+    }
+}
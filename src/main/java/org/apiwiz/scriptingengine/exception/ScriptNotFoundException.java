@@ -0,0 +1,7 @@
+package org.apiwiz.scriptingengine.exception;
+
+public class ScriptNotFoundException extends RuntimeException {
+    public ScriptNotFoundException(String id) {
+        super("Script not found: " + id);
+    }
+}
@@ -0,0 +1,73 @@
+package org.apiwiz.scriptingengine.executor;
+
+import jakarta.annotation.PreDestroy;
+import org.apiwiz.scriptingengine.config.ExecutionLimitProperties;
+import org.graalvm.polyglot.ResourceLimits;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Enforces the time and statement budgets of executions.
+ *
+ * <p>Pooled contexts are built with one shared {@link ResourceLimits}
+ * statement limit, whose counter is reset on every checkout. Wall-clock
+ * deadlines are enforced by a watchdog thread that cancels the execution
+ * (closing its context) when the deadline passes; the pool then retires the
+ * context and the executing thread unwinds with a timeout error.
+ */
+@Component
+public class ExecutionLimits {
+
+    private final ExecutionLimitProperties properties;
+    private final ResourceLimits resourceLimits;
+    private final ScheduledThreadPoolExecutor watchdog;
+
+    public ExecutionLimits(ExecutionLimitProperties properties) {
+        this.properties = properties;
+        this.resourceLimits = properties.statementLimit() > 0
+                ? ResourceLimits.newBuilder()
+                        .statementLimit(properties.statementLimit(), null)
+                        .onLimit(event -> ScriptExecution.statementLimitReached())
+                        .build()
+                : null;
+        this.watchdog = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "script-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.watchdog.setRemoveOnCancelPolicy(true);
+    }
+
+    /** Statement limit for new contexts, or {@code null} when disabled. */
+    public ResourceLimits resourceLimits() {
+        return resourceLimits;
+    }
+
+    /** The requested budget capped at {@code maxTimeout}, or the default budget. */
+    public Duration timeoutFor(Long requestedMillis) {
+        if (requestedMillis == null || requestedMillis <= 0) return properties.timeout();
+        Duration requested = Duration.ofMillis(requestedMillis);
+        return requested.compareTo(properties.maxTimeout()) > 0 ? properties.maxTimeout() : requested;
+    }
+
+    /**
+     * Schedules cancellation of the execution at its deadline.
+     *
+     * @return disarms the watchdog; call once evaluation has finished
+     */
+    Runnable arm(ScriptExecution execution) {
+        if (!execution.hasDeadline()) return () -> { };
+        ScheduledFuture<?> timer = watchdog.schedule(execution::timeOut,
+                Math.max(0, execution.remainingNanos()), TimeUnit.NANOSECONDS);
+        return () -> timer.cancel(false);
+    }
+
+    @PreDestroy
+    public void close() {
+        watchdog.shutdownNow();
+    }
+}
@@ -1,68 +1,226 @@
 package org.apiwiz.scriptingengine.executor;
 
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 import org.apiwiz.scriptingengine.dto.ScriptResponse;
+import org.apiwiz.scriptingengine.engine.ContextPool;
+import org.apiwiz.scriptingengine.engine.ContextPools;
+import org.apiwiz.scriptingengine.engine.DependencyFileSystem;
+import org.apiwiz.scriptingengine.engine.PooledContext;
+import org.apiwiz.scriptingengine.engine.SourceCache;
 import org.apiwiz.scriptingengine.exception.ScriptExecutionException;
 import org.apiwiz.scriptingengine.models.ScriptLanguage;
 import org.apiwiz.scriptingengine.utils.NpmDependencyDownloader;
 import org.apiwiz.scriptingengine.utils.NpmDependencyExtractor;
 import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Engine;
+import org.graalvm.polyglot.PolyglotException;
 import org.graalvm.polyglot.Source;
 import org.graalvm.polyglot.Value;
+import org.graalvm.polyglot.io.FileSystem;
 import org.graalvm.polyglot.io.IOAccess;
 import org.springframework.stereotype.Component;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 @Component
 public class JsScriptExecutor implements ScriptExecutor {
     /** Parent directory under which node_modules will be created */
     public static final String MODULE_ROOT = "deps/js";
+    private static final String MODULE_MIME_TYPE = "application/javascript+module";
+
+    /**
+     * Captures the global property names of a fresh context and returns a
+     * function deleting any global a script added since. It also records the
+     * own properties of the global object and of the core constructors, their
+     * prototypes and the {@code JSON}, {@code Math} and {@code Reflect}
+     * namespaces. When a script replaced, added or removed one of those, froze
+     * one of them, or left a global that cannot be deleted (a top-level
+     * {@code var} of a classic script), the function throws so the pool
+     * retires the context instead of leaking the change to the next script.
+     * Other objects, such as iterator prototypes or loaded modules, are not
+     * compared (see {@link org.apiwiz.scriptingengine.config.ContextPoolProperties}).
+     */
+    private static final Source RESET_GLOBALS = Source.create("js", """
+            (() => {
+              // the returned function only calls what it captured here, so patched iterators or methods cannot steer it
+              const { apply, ownKeys, getOwnPropertyDescriptor, getPrototypeOf, isExtensible } = Reflect;
+              const is = Object.is, has = Set.prototype.has;
+              const baseline = new Set(ownKeys(globalThis));
+              const targets = [globalThis, JSON, Math, Reflect];
+              for (const ctor of [Object, Function, Array, String, Number, Boolean, Symbol, BigInt, Promise,
+                                  RegExp, Date, Error, Map, Set, WeakMap, WeakSet, ArrayBuffer]) {
+                targets.push(ctor, ctor.prototype);
+              }
+              const snapshot = targets.map((target) => {
+                const keys = ownKeys(target);
+                return { target, prototype: getPrototypeOf(target), keys,
+                         descriptors: keys.map((key) => getOwnPropertyDescriptor(target, key)) };
+              });
+              const same = (a, b) => b !== undefined && is(a.value, b.value) && a.get === b.get && a.set === b.set
+                  && a.writable === b.writable && a.configurable === b.configurable;
+              return () => {
+                const globals = ownKeys(globalThis);
+                for (let i = 0; i < globals.length; i++) {
+                  const key = globals[i];
+                  if (!apply(has, baseline, [key]) && !delete globalThis[key]) throw new Error('cannot delete ' + String(key));
+                }
+                for (let t = 0; t < snapshot.length; t++) {
+                  const { target, prototype, keys, descriptors } = snapshot[t];
+                  if (getPrototypeOf(target) !== prototype || !isExtensible(target)
+                      || ownKeys(target).length !== keys.length) {
+                    throw new Error('intrinsics modified');
+                  }
+                  for (let i = 0; i < keys.length; i++) {
+                    if (!same(descriptors[i], getOwnPropertyDescriptor(target, keys[i]))) throw new Error('intrinsics modified');
+                  }
+                }
+              };
+            })()
+            """);
+
+    private static final Source JSON_PARSE = Source.create("js", "JSON.parse");
+
+    private final ContextPool contextPool;
+    private final SourceCache sourceCache;
+    private final ExecutionLimits limits;
+    private final UploadedScripts uploadedScripts;
+    private final ResultMarshaller resultMarshaller;
+    private final IOAccess ioAccess;
+    private final NpmDependencyDownloader dependencyDownloader;
+
+    public JsScriptExecutor(ContextPools contextPools,
+                            SourceCache sourceCache,
+                            ExecutionLimits limits,
+                            UploadedScripts uploadedScripts,
+                            ResultMarshaller resultMarshaller,
+                            NpmDependencyDownloader dependencyDownloader) {
+        this.sourceCache = sourceCache;
+        this.limits = limits;
+        this.uploadedScripts = uploadedScripts;
+        this.resultMarshaller = resultMarshaller;
+        this.dependencyDownloader = dependencyDownloader;
+        DependencyFileSystem fileSystem = new DependencyFileSystem(Path.of(MODULE_ROOT));
+        dependencyDownloader.addPublishListener(fileSystem::published);
+        this.ioAccess = IOAccess.newBuilder()
+                .fileSystem(FileSystem.allowInternalResourceAccess(fileSystem))
+                .build();
+        this.contextPool = contextPools.create(ScriptLanguage.JAVASCRIPT,
+                this::createGraalVMContext,
+                context -> context.eval(RESET_GLOBALS));
+    }
+
+    @Override
+    public ScriptResponse execute(ScriptLanguage language, String script, ScriptExecution execution) {
+        // Evaluate user script as ES‑module so `import … from 'x'` works
+        return run(sourceCache.get(ScriptLanguage.JAVASCRIPT, "user-script.mjs", MODULE_MIME_TYPE, script.strip()),
+                execution, null, null);
+    }
 
     @Override
-    public ScriptResponse execute(ScriptLanguage language, String script) {
+    public Source compile(String name, String script) {
+        Source source = Source.newBuilder(ScriptLanguage.JAVASCRIPT.getEngineName(), script, name + ".mjs")
+                .mimeType(MODULE_MIME_TYPE)
+                .buildLiteral();
+        installDependencies(List.of(script));
+        try (PooledContext pooled = contextPool.acquire()) {
+            pooled.context().parse(source);
+        } catch (PolyglotException e) {
+            throw new ScriptExecutionException("Error compiling JavaScript script: " + e.getMessage(), e);
+        }
+        return source;
+    }
+
+    @Override
+    public ScriptResponse invoke(Source source, String argsJson, String function, ScriptExecution execution) {
+        return run(source, execution.dependenciesInstalled(), argsJson, function);
+    }
+
+    private ScriptResponse run(Source src, ScriptExecution execution, String argsJson, String function) {
         try {
-            // 0) Ensure module root exists
-            File root = new File(MODULE_ROOT);
-            if (!root.exists() && !root.mkdirs()) {
-                throw new IOException("Could not create module root: " + MODULE_ROOT);
+            if (!execution.isDependenciesInstalled())
+                install(List.of(src.getCharacters()), execution);
+            execution.checkCancelled();
+
+            // 3) Check out a pooled GraalVM JS context pointed at MODULE_ROOT
+            long checkout = System.nanoTime();
+            try (PooledContext pooled = contextPool.acquire()) {
+                execution.recordCheckout(pooled, System.nanoTime() - checkout);
+                // 4) Evaluate the module
+                execution.attach(pooled);
+                Runnable disarm = limits.arm(execution);
+                long eval = System.nanoTime();
+                try {
+                    Value result = evaluate(pooled.context(), src, argsJson, function);
+                    TokenBuffer json = resultMarshaller.toJson(result, ScriptLanguage.JAVASCRIPT);
+                    return new ScriptResponse(ResultMarshaller.outputText(json, ScriptLanguage.JAVASCRIPT), json);
+                } catch (ScriptExecutionException e) {
+                    throw e;    // result too large, bad arguments: the context itself is fine
+                } catch (RuntimeException e) {
+                    pooled.failed(e);
+                    throw e;
+                } finally {
+                    disarm.run();
+                    execution.recordPhase("eval", System.nanoTime() - eval);
+                    execution.detach();
+                }
             }
 
-            // 1) Extract bare specifier dependencies (require/import)
-            Set<String> required = NpmDependencyExtractor.extractRequiredModules(script);
-            System.out.println("Dependencies to install: " + required);
+        } catch (Exception e) {
+            throw execution.failure("Error executing JavaScript script: ", e);
+        }
+    }
 
-            // 2) Block until download + extraction + patching completes
-            if (!required.isEmpty())
-                NpmDependencyDownloader.installDependencies(required);
+    /**
+     * Evaluates the module with the arguments bound as globals, or calls one
+     * of its exports with them. Globals added here are deleted again when the
+     * context goes back to the pool.
+     */
+    private static Value evaluate(Context context, Source src, String argsJson, String function) {
+        if (argsJson == null && function == null) return context.eval(src);
 
+        Value args = argsJson != null ? context.eval(JSON_PARSE).execute(argsJson) : null;
+        if (function != null) {
+            Value fn = context.eval(src).getMember(function);
+            if (fn == null || !fn.canExecute())
+                throw new ScriptExecutionException("Script does not export a function '" + function + "'", null);
+            return args != null ? fn.execute(args) : fn.execute();
+        }
 
-            // 3) Create GraalVM JS context pointed at MODULE_ROOT
-            try (Context context = createGraalVMContext()) {
-                // 5) Evaluate user script as ES‑module so `import … from 'x'` works
-                Source src = Source.newBuilder("js", script.strip(), "user-script.mjs")
-                        .mimeType("application/javascript+module")
-                        .build();
-                Value result = context.eval(src);
-                return new ScriptResponse(result.toString(), true);
-            }
+        Value globals = context.getBindings(ScriptLanguage.JAVASCRIPT.getEngineName());
+        for (String name : args.getMemberKeys()) {
+            if (globals.hasMember(name))
+                throw new ScriptExecutionException("Argument '" + name + "' would replace a global", null);
+            globals.putMember(name, args.getMember(name));
+        }
+        return context.eval(src);
+    }
 
+    @Override
+    public void installDependencies(List<? extends CharSequence> scripts) {
+        try {
+            install(scripts, new ScriptExecution());
         } catch (Exception e) {
-            throw new ScriptExecutionException("Error executing JavaScript script: " + e.getMessage(), e);
+            throw new ScriptExecutionException("Error installing JavaScript dependencies: " + e.getMessage(), e);
         }
     }
 
     @Override
-    public ScriptResponse executeFromMultipartFile(ScriptLanguage language, MultipartFile file) {
+    public ScriptResponse executeFromMultipartFile(ScriptLanguage language, MultipartFile file, ScriptExecution execution) {
+        String script;
         try {
-            String content = new String(file.getBytes(), StandardCharsets.UTF_8);
-            return execute(language, content);
+            script = uploadedScripts.read(file);
         } catch (IOException e) {
             throw new ScriptExecutionException("Failed to read uploaded JS file: " + e.getMessage(), e);
         }
+        return run(sourceCache.get(ScriptLanguage.JAVASCRIPT, "user-script.mjs", MODULE_MIME_TYPE, script.strip()),
+                execution, null, null);
     }
 
     @Override
@@ -70,15 +228,42 @@ public class JsScriptExecutor implements ScriptExecutor {
         return ScriptLanguage.JAVASCRIPT;
     }
 
+    private void install(List<? extends CharSequence> scripts, ScriptExecution execution) throws IOException {
+        // 0) Ensure module root exists
+        File root = new File(MODULE_ROOT);
+        if (!root.exists() && !root.mkdirs()) {
+            throw new IOException("Could not create module root: " + MODULE_ROOT);
+        }
+
+        // 1) Extract bare specifier dependencies (require/import)
+        long start = System.nanoTime();
+        Set<String> required = new HashSet<>();
+        for (CharSequence script : scripts) required.addAll(NpmDependencyExtractor.extractRequiredModules(script));
+        execution.recordPhase("extract", System.nanoTime() - start);
+        System.out.println("Dependencies to install: " + required);
+
+        // 2) Block until download + extraction + patching completes
+        if (!required.isEmpty()) {
+            start = System.nanoTime();
+            dependencyDownloader.installDependencies(required);
+            execution.recordPhase("install", System.nanoTime() - start);
+        }
+    }
+
     /**
      * Build a GraalVM Context that:
-     *  - Allows filesystem require()/import from MODULE_ROOT
+     *  - Can read MODULE_ROOT (served from an index, see DependencyFileSystem) and nothing else
      *  - Supports CommonJS require
      *  - Resolves bare specifiers like Node.js
+     *  - Shares the language engine with every other pooled JS context
      */
-    private Context createGraalVMContext() {
+    private Context createGraalVMContext(Engine engine, OutputStream out, OutputStream err) {
         return Context.newBuilder("js")
-                .allowIO(IOAccess.ALL)
+                .engine(engine)
+                .out(out)
+                .err(err)
+                .resourceLimits(limits.resourceLimits())
+                .allowIO(ioAccess)
                 .allowAllAccess(true)
                 .allowExperimentalOptions(true)
                 .option("js.commonjs-require", "true")
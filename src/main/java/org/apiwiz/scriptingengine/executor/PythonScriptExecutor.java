@@ -1,35 +1,162 @@
 package org.apiwiz.scriptingengine.executor;
 
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 import org.apiwiz.scriptingengine.dto.ScriptResponse;
+import org.apiwiz.scriptingengine.engine.ContextPool;
+import org.apiwiz.scriptingengine.engine.ContextPools;
+import org.apiwiz.scriptingengine.engine.DependencyFileSystem;
+import org.apiwiz.scriptingengine.engine.PooledContext;
+import org.apiwiz.scriptingengine.engine.SourceCache;
 import org.apiwiz.scriptingengine.exception.ScriptExecutionException;
 import org.apiwiz.scriptingengine.models.ScriptLanguage;
 import org.apiwiz.scriptingengine.utils.PythonImportExtractor;
 import org.apiwiz.scriptingengine.utils.PyPIDependencyDownloader;
 import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Engine;
+import org.graalvm.polyglot.PolyglotException;
 import org.graalvm.polyglot.Source;
+import org.graalvm.polyglot.Value;
+import org.graalvm.polyglot.io.FileSystem;
 import org.graalvm.polyglot.io.IOAccess;
 import org.springframework.stereotype.Component;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
 @Component
 public class PythonScriptExecutor implements ScriptExecutor{
 
+    /**
+     * Snapshots the names bound in {@code __main__} of a fresh context and
+     * returns a function removing everything a script defined since. It also
+     * flushes stdout/stderr so a trailing partial line reaches the sink of the
+     * execution that printed it.
+     * <p>
+     * The function raises, so the pool retires the context, when a script
+     * imported a module that was not loaded yet, replaced or removed one in
+     * {@code sys.modules}, rebound, added or deleted a name of {@code builtins}
+     * or {@code sys}, or changed {@code sys.path}, {@code sys.meta_path} or
+     * {@code sys.path_hooks} in place. Attributes of other loaded modules are
+     * not compared (see {@link org.apiwiz.scriptingengine.config.ContextPoolProperties}).
+     * {@code json} is imported up front because every execution with arguments
+     * uses it.
+     */
+    private static final Source RESET_MAIN = Source.create("python", """
+            def __make_reset():
+                import sys, json, builtins
+                namespace = sys.modules['__main__'].__dict__
+                baseline = set(namespace)
+                modules = dict(sys.modules)
+                attributes = [(module.__dict__, dict(module.__dict__)) for module in (builtins, sys)]
+                paths = [(sys.path, list(sys.path)), (sys.meta_path, list(sys.meta_path)),
+                         (sys.path_hooks, list(sys.path_hooks))]
+                missing = object()
+                def modified():
+                    if len(sys.modules) != len(modules):
+                        return True
+                    for name, module in modules.items():
+                        if sys.modules.get(name, missing) is not module:
+                            return True
+                    for current, saved in paths:
+                        if current != saved:
+                            return True
+                    for current, saved in attributes:
+                        if len(current) != len(saved):
+                            return True
+                        for name, value in saved.items():
+                            if current.get(name, missing) is not value:
+                                return True
+                    return False
+                def reset():
+                    sys.stdout.flush()
+                    sys.stderr.flush()
+                    for key in [k for k in namespace if k not in baseline]:
+                        del namespace[key]
+                    if modified():
+                        raise RuntimeError('interpreter state modified')
+                return reset
+            __make_reset()
+            """);
+
+    private static final Source JSON_LOADS = Source.create("python", "__import__('json').loads");
+
+    private final ContextPool contextPool;
+    private final SourceCache sourceCache;
+    private final ExecutionLimits limits;
+    private final UploadedScripts uploadedScripts;
+    private final ResultMarshaller resultMarshaller;
+    private final IOAccess ioAccess;
+    private final PyPIDependencyDownloader dependencyDownloader;
+
+    public PythonScriptExecutor(ContextPools contextPools,
+                                SourceCache sourceCache,
+                                ExecutionLimits limits,
+                                UploadedScripts uploadedScripts,
+                                ResultMarshaller resultMarshaller,
+                                PyPIDependencyDownloader dependencyDownloader) {
+        this.sourceCache = sourceCache;
+        this.limits = limits;
+        this.uploadedScripts = uploadedScripts;
+        this.resultMarshaller = resultMarshaller;
+        this.dependencyDownloader = dependencyDownloader;
+        DependencyFileSystem fileSystem = new DependencyFileSystem(Path.of(dependencyDownloader.getDownloadPath()));
+        dependencyDownloader.addPublishListener(fileSystem::published);
+        this.ioAccess = IOAccess.newBuilder()
+                .fileSystem(FileSystem.allowInternalResourceAccess(fileSystem))
+                .build();
+        this.contextPool = contextPools.create(ScriptLanguage.PYTHON,
+                this::createGraalVMContext,
+                context -> context.eval(RESET_MAIN));
+        // contexts get the import roots when created; retire them when new roots appear
+        dependencyDownloader.pathIndex().addListener(contextPool::invalidate);
+    }
+
+    @Override
+    public ScriptResponse execute(ScriptLanguage language, String script, ScriptExecution execution) {
+        return run(sourceCache.get(ScriptLanguage.PYTHON, "script.py", null, script.strip()), execution, null, null);
+    }
+
     @Override
-    public ScriptResponse execute(ScriptLanguage language, String script) {
-        return executeWithContent(language, script, "script.py");
+    public Source compile(String name, String script) {
+        Source source = Source.newBuilder(ScriptLanguage.PYTHON.getEngineName(), script, name + ".py").buildLiteral();
+        installDependencies(List.of(script));
+        try (PooledContext pooled = contextPool.acquire()) {
+            pooled.context().parse(source);
+        } catch (PolyglotException e) {
+            throw new ScriptExecutionException("Error compiling Python script: " + e.getMessage(), e);
+        }
+        return source;
+    }
+
+    @Override
+    public ScriptResponse invoke(Source source, String argsJson, String function, ScriptExecution execution) {
+        return run(source, execution.dependenciesInstalled(), argsJson, function);
     }
 
-    public ScriptResponse executeFromMultipartFile(ScriptLanguage language, MultipartFile file) {
+    @Override
+    public ScriptResponse executeFromMultipartFile(ScriptLanguage language, MultipartFile file, ScriptExecution execution) {
+        String script;
         try {
-            String scriptContent = new String(file.getBytes());
-            return executeWithContent(language, scriptContent, file.getOriginalFilename());
+            script = uploadedScripts.read(file);
         } catch (IOException e) {
             throw new ScriptExecutionException("Failed to read uploaded file: " + e.getMessage(), e);
         }
+        return run(sourceCache.get(ScriptLanguage.PYTHON, "script.py", null, script.strip()), execution, null, null);
+    }
+
+    @Override
+    public void installDependencies(List<? extends CharSequence> scripts) {
+        try {
+            install(scripts, new ScriptExecution());
+        } catch (IOException e) {
+            throw new ScriptExecutionException("Error installing Python dependencies: " + e.getMessage(), e);
+        }
     }
 
     @Override
@@ -37,28 +164,92 @@ public class PythonScriptExecutor implements ScriptExecutor{
         return ScriptLanguage.PYTHON;
     }
 
-    private ScriptResponse executeWithContent(ScriptLanguage language, String script, String sourceName) {
-        try {
-            Set<String> imports = PythonImportExtractor.extractImports(script);
-            PyPIDependencyDownloader.installDependencies(imports);
-            List<String> modulePaths = PyPIDependencyDownloader.getImportableModulePaths();
+    private void install(List<? extends CharSequence> scripts, ScriptExecution execution) throws IOException {
+        long start = System.nanoTime();
+        Set<String> imports = new HashSet<>();
+        for (CharSequence script : scripts) imports.addAll(PythonImportExtractor.extractImports(script));
+        execution.recordPhase("extract", System.nanoTime() - start);
 
-            StringBuilder sysPathBootstrap = new StringBuilder("import sys\nprint('Before sys.path:', sys.path)\n");
-            for (String path : modulePaths) {
-                sysPathBootstrap.append("sys.path.insert(0, '").append(path).append("')\n");
-            }
-            sysPathBootstrap.append("print('After sys.path:', sys.path)");
+        if (!imports.isEmpty()) {
+            start = System.nanoTime();
+            dependencyDownloader.installDependencies(imports);
+            execution.recordPhase("install", System.nanoTime() - start);
+        }
+    }
 
-            try (var context = Context.newBuilder(language.getEngineName())
-                    .allowIO(IOAccess.ALL)
-                    .build()) {
+    private ScriptResponse run(Source source, ScriptExecution execution, String argsJson, String function) {
+        try {
+            if (!execution.isDependenciesInstalled())
+                install(List.of(source.getCharacters()), execution);
+            execution.checkCancelled();
 
-                context.eval(Source.newBuilder("python", sysPathBootstrap.toString(), "bootstrap.py").build());
-                var result = context.eval(Source.newBuilder("python", script.strip(), sourceName).build());
-                return new ScriptResponse(result.toString(), true);
+            long checkout = System.nanoTime();
+            try (PooledContext pooled = contextPool.acquire()) {
+                execution.recordCheckout(pooled, System.nanoTime() - checkout);
+                Context context = pooled.context();
+                execution.attach(pooled);
+                Runnable disarm = limits.arm(execution);
+                long eval = System.nanoTime();
+                try {
+                    var result = evaluate(context, source, argsJson, function);
+                    TokenBuffer json = resultMarshaller.toJson(result, ScriptLanguage.PYTHON);
+                    return new ScriptResponse(ResultMarshaller.outputText(json, ScriptLanguage.PYTHON), json);
+                } catch (ScriptExecutionException e) {
+                    throw e;    // result too large, bad arguments: the context itself is fine
+                } catch (RuntimeException e) {
+                    pooled.failed(e);
+                    throw e;
+                } finally {
+                    disarm.run();
+                    execution.recordPhase("eval", System.nanoTime() - eval);
+                    execution.detach();
+                }
             }
         } catch (Exception e) {
-            throw new ScriptExecutionException("Error executing script: " + e.getMessage(), e);
+            throw execution.failure("Error executing script: ", e);
         }
     }
+
+    /**
+     * Evaluates the script with the arguments bound as {@code __main__}
+     * globals, or calls a function it defines with them. Names bound here are
+     * removed again when the context goes back to the pool.
+     */
+    private static Value evaluate(Context context, Source source, String argsJson, String function) {
+        if (argsJson == null && function == null) return context.eval(source);
+
+        Value args = argsJson != null ? context.eval(JSON_LOADS).execute(argsJson) : null;
+        Value globals = context.getBindings(ScriptLanguage.PYTHON.getEngineName());
+        if (function != null) {
+            context.eval(source);
+            Value fn = globals.getMember(function);
+            if (fn == null || !fn.canExecute())
+                throw new ScriptExecutionException("Script does not define a function '" + function + "'", null);
+            return args != null ? fn.execute(args) : fn.execute();
+        }
+
+        Value names = args.getHashKeysIterator();
+        while (names.hasIteratorNextElement()) {
+            Value name = names.getIteratorNextElement();
+            if (globals.hasMember(name.asString()))
+                throw new ScriptExecutionException("Argument '" + name.asString() + "' would replace a global", null);
+            globals.putMember(name.asString(), args.getHashValue(name));
+        }
+        return context.eval(source);
+    }
+
+    /**
+     * Builds a Python context whose sys.path starts with the current dependency
+     * import roots; it can read deps/python and its own standard library only.
+     */
+    private Context createGraalVMContext(Engine engine, OutputStream out, OutputStream err) {
+        return Context.newBuilder(ScriptLanguage.PYTHON.getEngineName())
+                .engine(engine)
+                .out(out)
+                .err(err)
+                .resourceLimits(limits.resourceLimits())
+                .allowIO(ioAccess)
+                .option("python.PythonPath", String.join(File.pathSeparator, dependencyDownloader.pathIndex().roots()))
+                .build();
+    }
 }
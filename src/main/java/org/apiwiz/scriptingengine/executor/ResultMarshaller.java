@@ -0,0 +1,183 @@
+package org.apiwiz.scriptingengine.executor;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import org.apiwiz.scriptingengine.config.ResultProperties;
+import org.apiwiz.scriptingengine.exception.ExecutionLimitExceededException;
+import org.apiwiz.scriptingengine.models.ScriptLanguage;
+import org.graalvm.polyglot.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+
+/**
+ * Writes a polyglot {@link Value} as JSON through Jackson's generator API,
+ * without going through {@code Value.toString()}.
+ *
+ * <p>Executors marshal the value into a {@link TokenBuffer} while they
+ * still hold the context; Jackson replays the buffered tokens into the
+ * response, so arrays are walked element by element and never become one
+ * large string. Null, booleans, numbers and strings map to their
+ * JSON counterparts, arrays and Python dicts / JS Maps to arrays and
+ * objects, plain JS objects (and module namespaces) to objects of their
+ * non-function members, and dates/times to ISO-8601 strings. Anything else
+ * (functions, Python class instances, host objects) is written as its
+ * string form. Exceeding a {@link ResultProperties} cap fails the execution
+ * with an {@link ExecutionLimitExceededException}.
+ *
+ * <p>The buffer holds the whole marshalled result until the response is
+ * written, and a structured result is also rendered once as text for
+ * {@code output}; the caps are what bound both.
+ */
+@Component
+public class ResultMarshaller {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final ResultProperties properties;
+
+    public ResultMarshaller(ResultProperties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * The text of a result for the response's {@code output}: a scalar is
+     * read back from its single marshalled token, with booleans and null
+     * spelled the way the language prints them; anything structured is the
+     * compact JSON text of the buffer, so clients reading {@code output}
+     * keep getting a value.
+     */
+    public static String outputText(TokenBuffer json, ScriptLanguage language) {
+        boolean python = language == ScriptLanguage.PYTHON;
+        try (JsonParser parser = json.asParser()) {
+            JsonToken token = parser.nextToken();
+            if (token == null) return null;
+            return switch (token) {
+                case VALUE_STRING, VALUE_NUMBER_INT, VALUE_NUMBER_FLOAT -> parser.getText();
+                case VALUE_TRUE -> python ? "True" : "true";
+                case VALUE_FALSE -> python ? "False" : "false";
+                case VALUE_NULL -> python ? "None" : "null";
+                default -> jsonText(json);
+            };
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String jsonText(TokenBuffer json) throws IOException {
+        StringWriter text = new StringWriter();
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(text)) {
+            json.serialize(generator);
+        }
+        return text.toString();
+    }
+
+    public TokenBuffer toJson(Value value, ScriptLanguage language) {
+        TokenBuffer buffer = new TokenBuffer(null, false);
+        try {
+            new Writer(buffer, language).write(value, 0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer;
+    }
+
+    private final class Writer {
+        private final JsonGenerator gen;
+        private final ScriptLanguage language;
+        private int values;
+
+        Writer(JsonGenerator gen, ScriptLanguage language) {
+            this.gen = gen;
+            this.language = language;
+        }
+
+        void write(Value value, int depth) throws IOException {
+            if (++values > properties.maxValues()) {
+                throw limit("Result has more than " + properties.maxValues() + " values");
+            }
+            if (value == null || value.isNull()) {
+                gen.writeNull();
+            } else if (value.isBoolean()) {
+                gen.writeBoolean(value.asBoolean());
+            } else if (value.isNumber()) {
+                writeNumber(value);
+            } else if (value.isString()) {
+                writeString(value.asString());
+            } else if (value.isInstant()) {
+                gen.writeString(value.asInstant().toString());
+            } else if (value.isDate() && value.isTime()) {
+                gen.writeString(value.asDate().atTime(value.asTime()).toString());
+            } else if (value.isDate()) {
+                gen.writeString(value.asDate().toString());
+            } else if (value.isTime()) {
+                gen.writeString(value.asTime().toString());
+            } else if (value.hasArrayElements()) {
+                enter(depth);
+                gen.writeStartArray();
+                long size = value.getArraySize();
+                for (long i = 0; i < size; i++) write(value.getArrayElement(i), depth + 1);
+                gen.writeEndArray();
+            } else if (value.hasHashEntries()) {
+                enter(depth);
+                gen.writeStartObject();
+                Value entries = value.getHashEntriesIterator();
+                while (entries.hasIteratorNextElement()) {
+                    Value entry = entries.getIteratorNextElement();
+                    Value key = entry.getArrayElement(0);
+                    gen.writeFieldName(key.isString() ? key.asString() : key.toString());
+                    write(entry.getArrayElement(1), depth + 1);
+                }
+                gen.writeEndObject();
+            } else if (language == ScriptLanguage.JAVASCRIPT && value.hasMembers()
+                    && !value.canExecute() && !value.isHostObject()) {
+                enter(depth);
+                gen.writeStartObject();
+                for (String key : value.getMemberKeys()) {
+                    Value member = value.getMember(key);
+                    if (member != null && member.canExecute()) continue;
+                    gen.writeFieldName(key);
+                    write(member, depth + 1);
+                }
+                gen.writeEndObject();
+            } else {
+                writeString(value.toString());
+            }
+        }
+
+        private void writeNumber(Value value) throws IOException {
+            if (value.fitsInLong()) {
+                gen.writeNumber(value.asLong());
+            } else if (value.fitsInBigInteger()) {
+                gen.writeNumber(value.asBigInteger());
+            } else {
+                double d = value.asDouble();
+                if (Double.isFinite(d)) gen.writeNumber(d);
+                else gen.writeNull();
+            }
+        }
+
+        private void writeString(String s) throws IOException {
+            if (s.length() > properties.maxStringLength()) {
+                throw limit("Result string of " + s.length() + " characters exceeds the limit of "
+                        + properties.maxStringLength());
+            }
+            gen.writeString(s);
+        }
+
+        private void enter(int depth) {
+            if (depth >= properties.maxDepth()) {
+                throw limit("Result is nested deeper than " + properties.maxDepth() + " levels");
+            }
+        }
+
+        private ExecutionLimitExceededException limit(String message) {
+            return new ExecutionLimitExceededException(ExecutionLimitExceededException.RESULT_LIMIT, message, null);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package org.apiwiz.scriptingengine.executor;
+
+import org.apiwiz.scriptingengine.exception.ExecutionLimitExceededException;
+import org.apiwiz.scriptingengine.exception.ScriptExecutionException;
+import org.apiwiz.scriptingengine.engine.PooledContext;
+import org.graalvm.polyglot.Context;
+
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Handle on a single script run that another thread can cancel.
+ *
+ * <p>Executors attach the pooled context for as long as the script is being
+ * evaluated. Cancelling closes that context with {@code cancelIfExecuting},
+ * which aborts guest code even inside a tight loop; the context is then
+ * retired by its pool rather than recycled. A run cancelled before it
+ * reached evaluation fails at the next {@link #checkCancelled()}.
+ *
+ * <p>Once admitted, a run gets a wall-clock deadline; the
+ * {@link ExecutionLimits} watchdog cancels it when the deadline passes, and
+ * a context that hits its statement limit marks the run attached to the
+ * current thread. Either way the executor reports an
+ * {@link ExecutionLimitExceededException} instead of a plain cancellation.
+ */
+public class ScriptExecution {
+
+    /** Run whose context is being evaluated on this thread, for the statement-limit callback. */
+    private static final ThreadLocal<ScriptExecution> EVALUATING = new ThreadLocal<>();
+
+    private Context context;
+    private boolean cancelled;
+    private boolean timedOut;
+    private volatile boolean statementLimitExceeded;
+    private volatile Long timeoutMillis;
+    private volatile Duration timeout;
+    private volatile long deadlineNanos;
+    private volatile boolean dependenciesInstalled;
+    private volatile boolean cacheable;
+    private volatile OutputStream stdout;
+    private volatile OutputStream stderr;
+    private final Map<String, Long> phaseNanos = new LinkedHashMap<>();
+
+    /** Sends the script's stdout/stderr to the given sinks instead of the server console. */
+    public ScriptExecution output(OutputStream stdout, OutputStream stderr) {
+        this.stdout = stdout;
+        this.stderr = stderr;
+        return this;
+    }
+
+    /** Marks the script's dependencies as already installed, e.g. once for a whole batch. */
+    public ScriptExecution dependenciesInstalled() {
+        this.dependenciesInstalled = true;
+        return this;
+    }
+
+    /** Requests a wall-clock budget other than the configured default; {@code null} keeps the default. */
+    public ScriptExecution timeoutMillis(Long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+        return this;
+    }
+
+    /**
+     * Marks the script as deterministic in its script and input, so its
+     * response may be served from and stored in the result cache; {@code null} means no.
+     */
+    public ScriptExecution cacheable(Boolean cacheable) {
+        this.cacheable = Boolean.TRUE.equals(cacheable);
+        return this;
+    }
+
+    public boolean isCacheable() {
+        return cacheable;
+    }
+
+    public Long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    /** Starts the clock: the run must finish within {@code timeout} from now. */
+    public void startDeadline(Duration timeout) {
+        this.timeout = timeout;
+        this.deadlineNanos = System.nanoTime() + timeout.toNanos();
+    }
+
+    public boolean hasDeadline() {
+        return timeout != null;
+    }
+
+    long remainingNanos() {
+        return deadlineNanos - System.nanoTime();
+    }
+
+    /** True once the run has been out of time for longer than {@code grace}. */
+    public boolean isPastDeadline(Duration grace) {
+        return hasDeadline() && remainingNanos() + grace.toNanos() < 0;
+    }
+
+    public boolean isDependenciesInstalled() {
+        return dependenciesInstalled;
+    }
+
+    /** Adds time spent in a phase (queue, extract, install, create, acquire, eval). */
+    public void recordPhase(String phase, long nanos) {
+        synchronized (phaseNanos) {
+            phaseNanos.merge(phase, nanos, Long::sum);
+        }
+    }
+
+    /** Phase durations in nanoseconds, in the order the phases were first recorded. */
+    public Map<String, Long> phases() {
+        synchronized (phaseNanos) {
+            return new LinkedHashMap<>(phaseNanos);
+        }
+    }
+
+    /** @return false if the run had already been cancelled */
+    public synchronized boolean cancel() {
+        if (cancelled) return false;
+        cancelled = true;
+        if (context != null) {
+            try {
+                context.close(true);
+            } catch (RuntimeException ignored) {
+                // already closed
+            }
+        }
+        return true;
+    }
+
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    public synchronized boolean isTimedOut() {
+        return timedOut;
+    }
+
+    public boolean isStatementLimitExceeded() {
+        return statementLimitExceeded;
+    }
+
+    /** Fails fast between phases (dependency install, context checkout) once cancelled or out of time. */
+    public void checkCancelled() {
+        if (hasDeadline() && remainingNanos() <= 0) timeOut();
+        if (isCancelled()) throw failure("", null);
+    }
+
+    /**
+     * Exception describing why the run failed: a limit it exceeded, its
+     * cancellation, or otherwise {@code message} followed by the cause's message.
+     */
+    public ScriptExecutionException failure(String message, Exception cause) {
+        if (isTimedOut()) {
+            return new ExecutionLimitExceededException(ExecutionLimitExceededException.TIMEOUT,
+                    "Script exceeded its time limit of " + timeout.toMillis() + " ms", cause);
+        }
+        if (statementLimitExceeded) {
+            return new ExecutionLimitExceededException(ExecutionLimitExceededException.STATEMENT_LIMIT,
+                    "Script exceeded the statement limit", cause);
+        }
+        if (isCancelled()) return new ScriptExecutionException("Script execution was cancelled", cause);
+        if (cause instanceof ExecutionLimitExceededException limitExceeded) return limitExceeded;
+        return new ScriptExecutionException(message + (cause != null ? cause.getMessage() : ""), cause);
+    }
+
+    /** Called by the watchdog when the deadline passes. */
+    synchronized void timeOut() {
+        if (cancelled) return;
+        timedOut = true;
+        cancel();
+    }
+
+    /** Called on the evaluating thread when its context runs out of statements. */
+    static void statementLimitReached() {
+        ScriptExecution execution = EVALUATING.get();
+        if (execution != null) execution.statementLimitExceeded = true;
+    }
+
+    /** Splits the time taken to check out a context into creation (fresh contexts only) and waiting. */
+    void recordCheckout(PooledContext pooled, long nanos) {
+        long create = pooled.getUses() == 1 ? pooled.getCreateNanos() : 0;
+        if (create > 0) recordPhase("create", create);
+        recordPhase("acquire", Math.max(0, nanos - create));
+    }
+
+    synchronized void attach(PooledContext pooled) {
+        checkCancelled();
+        if (stdout != null || stderr != null) pooled.redirectOutput(stdout, stderr);
+        this.context = pooled.context();
+        EVALUATING.set(this);
+    }
+
+    synchronized void detach() {
+        this.context = null;
+        EVALUATING.remove();
+    }
+}
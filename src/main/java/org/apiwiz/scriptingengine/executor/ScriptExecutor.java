@@ -2,10 +2,36 @@ package org.apiwiz.scriptingengine.executor;
 
 import org.apiwiz.scriptingengine.dto.ScriptResponse;
 import org.apiwiz.scriptingengine.models.ScriptLanguage;
+import org.graalvm.polyglot.Source;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.util.List;
+
 public interface ScriptExecutor {
-    ScriptResponse execute(ScriptLanguage script, String language);
-    ScriptResponse executeFromMultipartFile(ScriptLanguage language, MultipartFile file);
+    ScriptResponse execute(ScriptLanguage language, String script, ScriptExecution execution);
+    ScriptResponse executeFromMultipartFile(ScriptLanguage language, MultipartFile file, ScriptExecution execution);
+    /** Installs the union of the dependencies of several scripts in one pass. */
+    void installDependencies(List<? extends CharSequence> scripts);
+
+    /**
+     * Installs a script's dependencies and parses it once, so that every
+     * {@link #invoke} of the returned source reuses the engine's compiled code.
+     *
+     * @param name identifies the source in stack traces; the executor adds the file extension
+     */
+    Source compile(String name, String script);
+
+    /**
+     * Evaluates a compiled script with the members of {@code argsJson} bound
+     * as globals or, if {@code function} is given, evaluates it and calls that
+     * function with the parsed arguments. Dependencies are not installed.
+     *
+     * @param argsJson JSON arguments, or {@code null} for none
+     */
+    ScriptResponse invoke(Source source, String argsJson, String function, ScriptExecution execution);
     ScriptLanguage getSupportedLanguage();
+
+    default ScriptResponse execute(ScriptLanguage language, String script) {
+        return execute(language, script, new ScriptExecution());
+    }
 }
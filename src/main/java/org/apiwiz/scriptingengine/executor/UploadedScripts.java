@@ -0,0 +1,38 @@
+package org.apiwiz.scriptingengine.executor;
+
+import org.apiwiz.scriptingengine.config.UploadProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads an uploaded script as UTF-8 text, enforcing
+ * {@code scripting.upload.max-size} while the part is read rather than
+ * trusting its declared size. Executors then look the text up in the
+ * {@link org.apiwiz.scriptingengine.engine.SourceCache}, keyed by its
+ * content hash like an inline script, so a repeated upload reuses the
+ * parsed code of the shared engine.
+ */
+@Component
+public class UploadedScripts {
+
+    private final UploadProperties properties;
+
+    public UploadedScripts(UploadProperties properties) {
+        this.properties = properties;
+    }
+
+    public String read(MultipartFile file) throws IOException {
+        long max = properties.maxSize().toBytes();
+        if (file.getSize() > max) throw new MaxUploadSizeExceededException(max);
+        try (InputStream in = file.getInputStream()) {
+            byte[] bytes = in.readNBytes((int) Math.min(max + 1, Integer.MAX_VALUE - 8));
+            if (bytes.length > max) throw new MaxUploadSizeExceededException(max);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
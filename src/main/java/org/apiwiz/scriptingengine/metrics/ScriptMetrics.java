@@ -0,0 +1,168 @@
+package org.apiwiz.scriptingengine.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apiwiz.scriptingengine.dto.ScriptResponse;
+import org.apiwiz.scriptingengine.engine.ContextPool;
+import org.apiwiz.scriptingengine.engine.ContextPools;
+import org.apiwiz.scriptingengine.engine.SourceCache;
+import org.apiwiz.scriptingengine.exception.ExecutionLimitExceededException;
+import org.apiwiz.scriptingengine.exception.ExecutionRejectedException;
+import org.apiwiz.scriptingengine.executor.ScriptExecution;
+import org.apiwiz.scriptingengine.models.ScriptLanguage;
+import org.apiwiz.scriptingengine.service.AdmissionControl;
+import org.apiwiz.scriptingengine.service.ResultCache;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Micrometer instrumentation of script executions.
+ *
+ * <p>Every execution records {@code scripting.execution} plus one
+ * {@code scripting.execution.phase} timer per phase it went through
+ * (queue, extract, install, create, acquire, eval), tagged by language and
+ * outcome. Gauges and function counters expose in-flight executions, the
+ * context pools, the source and result caches and admission control; registry and
+ * install meters are recorded by the downloaders themselves.
+ */
+@Component
+public class ScriptMetrics {
+
+    private final MeterRegistry registry;
+    private final Map<ScriptLanguage, AtomicInteger> inFlight = new EnumMap<>(ScriptLanguage.class);
+
+    public ScriptMetrics(MeterRegistry registry,
+                         ContextPools contextPools,
+                         SourceCache sourceCache,
+                         ResultCache resultCache,
+                         AdmissionControl admissionControl) {
+        this.registry = registry;
+
+        for (ScriptLanguage language : ScriptLanguage.values()) {
+            String tag = language.getEngineName();
+            AtomicInteger count = new AtomicInteger();
+            inFlight.put(language, count);
+            Gauge.builder("scripting.executions.in-flight", count, AtomicInteger::get)
+                    .description("Executions currently running or queued")
+                    .tag("language", tag)
+                    .register(registry);
+
+            poolGauge("scripting.context-pool.active", contextPools, language, ContextPool.Stats::active);
+            poolGauge("scripting.context-pool.idle", contextPools, language, ContextPool.Stats::idle);
+            poolGauge("scripting.context-pool.waiting", contextPools, language, ContextPool.Stats::waiting);
+            FunctionCounter.builder("scripting.context-pool.created", contextPools,
+                            pools -> poolStat(pools, language, ContextPool.Stats::created))
+                    .tag("language", tag)
+                    .register(registry);
+
+            Gauge.builder("scripting.admission.limit", admissionControl,
+                            admission -> admissionStat(admission, language, AdmissionControl.Stats::limit))
+                    .tag("language", tag)
+                    .register(registry);
+            FunctionCounter.builder("scripting.admission.rejected", admissionControl,
+                            admission -> admissionStat(admission, language, AdmissionControl.Stats::rejected))
+                    .tag("language", tag)
+                    .register(registry);
+        }
+
+        FunctionCounter.builder("scripting.source-cache.requests", sourceCache, cache -> cache.stats().hits())
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("scripting.source-cache.requests", sourceCache, cache -> cache.stats().misses())
+                .tag("result", "miss")
+                .register(registry);
+        Gauge.builder("scripting.source-cache.size", sourceCache, cache -> cache.stats().size())
+                .register(registry);
+
+        FunctionCounter.builder("scripting.result-cache.requests", resultCache, cache -> cache.stats().hits())
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("scripting.result-cache.requests", resultCache, cache -> cache.stats().misses())
+                .tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("scripting.result-cache.evictions", resultCache, cache -> cache.stats().evictions())
+                .register(registry);
+        Gauge.builder("scripting.result-cache.size", resultCache, cache -> cache.stats().size())
+                .register(registry);
+        Gauge.builder("scripting.result-cache.weight", resultCache, cache -> cache.stats().weightBytes())
+                .description("Estimated memory held by cached responses")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    /** Runs an execution, recording its total and per-phase timings and its outcome. */
+    public ScriptResponse observe(ScriptLanguage language, ScriptExecution execution, Supplier<ScriptResponse> work) {
+        AtomicInteger running = inFlight.get(language);
+        running.incrementAndGet();
+        long start = System.nanoTime();
+        String outcome = "error";
+        try {
+            ScriptResponse response = work.get();
+            outcome = response.success() ? "success" : "failure";
+            return response;
+        } catch (ExecutionLimitExceededException e) {
+            outcome = e.getLimit();
+            throw e;
+        } catch (ExecutionRejectedException e) {
+            outcome = "rejected";
+            throw e;
+        } catch (RuntimeException e) {
+            if (execution.isCancelled()) outcome = "cancelled";
+            throw e;
+        } finally {
+            running.decrementAndGet();
+            record(language, outcome, execution.phases(), System.nanoTime() - start);
+        }
+    }
+
+    private void record(ScriptLanguage language, String outcome, Map<String, Long> phases, long totalNanos) {
+        String tag = language.getEngineName();
+        Timer.builder("scripting.execution")
+                .description("End-to-end script execution")
+                .tag("language", tag)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(totalNanos, TimeUnit.NANOSECONDS);
+        phases.forEach((phase, nanos) -> Timer.builder("scripting.execution.phase")
+                .description("Time spent in one phase of a script execution")
+                .tag("language", tag)
+                .tag("phase", phase)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS));
+    }
+
+    private void poolGauge(String name, ContextPools pools, ScriptLanguage language,
+                           ToDoubleFunction<ContextPool.Stats> stat) {
+        Gauge.builder(name, pools, p -> poolStat(p, language, stat))
+                .tag("language", language.getEngineName())
+                .register(registry);
+    }
+
+    private static double poolStat(ContextPools pools, ScriptLanguage language, ToDoubleFunction<ContextPool.Stats> stat) {
+        return pools.stats().stream()
+                .filter(s -> s.language() == language)
+                .mapToDouble(stat)
+                .findFirst()
+                .orElse(0);
+    }
+
+    private static double admissionStat(AdmissionControl admission, ScriptLanguage language,
+                                        ToDoubleFunction<AdmissionControl.Stats> stat) {
+        return admission.stats().stream()
+                .filter(s -> s.language() == language)
+                .mapToDouble(stat)
+                .findFirst()
+                .orElse(0);
+    }
+}
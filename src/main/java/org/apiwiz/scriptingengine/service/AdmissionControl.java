@@ -0,0 +1,180 @@
+package org.apiwiz.scriptingengine.service;
+
+import org.apiwiz.scriptingengine.config.AdmissionProperties;
+import org.apiwiz.scriptingengine.exception.ExecutionRejectedException;
+import org.apiwiz.scriptingengine.models.ScriptLanguage;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Bounds the executions of each language: up to a concurrency limit run at
+ * once, a bounded number wait in line for at most the queue timeout, and
+ * everything beyond that is rejected immediately with
+ * {@link ExecutionRejectedException} (HTTP 429) instead of piling up
+ * contexts. With {@code adaptive.enabled} the limit follows observed
+ * latency using additive increase / multiplicative decrease.
+ */
+@Component
+public class AdmissionControl {
+
+    private final AdmissionProperties properties;
+    private final Map<ScriptLanguage, Limiter> limiters = new EnumMap<>(ScriptLanguage.class);
+
+    public AdmissionControl(AdmissionProperties properties) {
+        this.properties = properties;
+        for (ScriptLanguage language : ScriptLanguage.values()) {
+            limiters.put(language, new Limiter(language, properties.limitsFor(language)));
+        }
+    }
+
+    /** Runs the work once the language has a free slot, or rejects it. */
+    public <T> T run(ScriptLanguage language, Supplier<T> work) {
+        if (!properties.enabled()) return work.get();
+
+        Limiter limiter = limiters.get(language);
+        limiter.acquire();
+        long start = System.nanoTime();
+        try {
+            return work.get();
+        } finally {
+            limiter.release(System.nanoTime() - start);
+        }
+    }
+
+    public List<Stats> stats() {
+        return limiters.values().stream().map(Limiter::stats).toList();
+    }
+
+    private final class Limiter {
+        private final ScriptLanguage language;
+        private final AdmissionProperties.Limits limits;
+        private final ReentrantLock lock = new ReentrantLock(true);
+        private final Condition slotFreed = lock.newCondition();
+
+        private int limit;
+        private int inFlight;
+        private int waiting;
+        private int completedSinceIncrease;
+        private long lastDecreaseNanos;
+        private double averageLatencyNanos;
+        private long admitted;
+        private long rejected;
+
+        Limiter(ScriptLanguage language, AdmissionProperties.Limits limits) {
+            this.language = language;
+            this.limits = limits;
+            this.limit = limits.maxConcurrency();
+        }
+
+        void acquire() {
+            lock.lock();
+            try {
+                if (inFlight < limit && waiting == 0) {
+                    admit();
+                    return;
+                }
+                if (waiting >= limits.maxQueue()) {
+                    throw reject("queue is full");
+                }
+
+                waiting++;
+                try {
+                    long remaining = limits.queueTimeout().toNanos();
+                    while (inFlight >= limit) {
+                        if (remaining <= 0) throw reject("timed out after " + limits.queueTimeout().toMillis() + " ms in queue");
+                        remaining = slotFreed.awaitNanos(remaining);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw reject("interrupted while queued");
+                } finally {
+                    waiting--;
+                }
+                admit();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void release(long latencyNanos) {
+            lock.lock();
+            try {
+                inFlight--;
+                averageLatencyNanos = averageLatencyNanos == 0
+                        ? latencyNanos
+                        : 0.9 * averageLatencyNanos + 0.1 * latencyNanos;
+                if (properties.adaptive().enabled()) adapt(latencyNanos);
+                slotFreed.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void adapt(long latencyNanos) {
+            AdmissionProperties.Adaptive adaptive = properties.adaptive();
+            long threshold = adaptive.latencyThreshold().toNanos();
+            long now = System.nanoTime();
+            if (latencyNanos > threshold) {
+                completedSinceIncrease = 0;
+                if (now - lastDecreaseNanos >= threshold) {
+                    limit = Math.max(adaptive.minLimit(), (int) (limit * adaptive.backoffRatio()));
+                    lastDecreaseNanos = now;
+                }
+            } else if (++completedSinceIncrease >= limit) {
+                completedSinceIncrease = 0;
+                if (limit < limits.maxConcurrency()) {
+                    limit++;
+                    slotFreed.signal();
+                }
+            }
+        }
+
+        private void admit() {
+            inFlight++;
+            admitted++;
+        }
+
+        private ExecutionRejectedException reject(String reason) {
+            rejected++;
+            return new ExecutionRejectedException("Too many " + language.getEngineName()
+                    + " executions: " + reason, retryAfter());
+        }
+
+        /** Roughly how long until the current queue drains, clamped to [1s, 60s]. */
+        private Duration retryAfter() {
+            double perSlot = averageLatencyNanos * (waiting + 1) / Math.max(1, limit);
+            long seconds = Math.min(60, Math.max(1, TimeUnit.NANOSECONDS.toSeconds((long) perSlot)));
+            return Duration.ofSeconds(seconds);
+        }
+
+        Stats stats() {
+            lock.lock();
+            try {
+                return new Stats(language, limit, inFlight, waiting, admitted, rejected,
+                        TimeUnit.NANOSECONDS.toMillis((long) averageLatencyNanos));
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Point-in-time admission state of one language.
+     */
+    public record Stats(ScriptLanguage language,
+                        int limit,
+                        int inFlight,
+                        int waiting,
+                        long admitted,
+                        long rejected,
+                        long averageLatencyMillis) {
+    }
+}
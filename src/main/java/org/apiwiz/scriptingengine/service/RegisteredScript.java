@@ -0,0 +1,26 @@
+package org.apiwiz.scriptingengine.service;
+
+import org.apiwiz.scriptingengine.dto.RegisteredScriptResponse;
+import org.apiwiz.scriptingengine.models.ScriptLanguage;
+import org.graalvm.polyglot.Source;
+
+import java.time.Instant;
+
+/**
+ * A registered script and its compiled source. Holding on to the
+ * {@link Source} keeps the engine's parsed and compiled code for it alive.
+ */
+record RegisteredScript(String id, ScriptLanguage language, String script, Instant registeredAt, Source source) {
+
+    Stored stored() {
+        return new Stored(id, language, script, registeredAt);
+    }
+
+    RegisteredScriptResponse toResponse() {
+        return new RegisteredScriptResponse(id, language.name().toLowerCase(), registeredAt);
+    }
+
+    /** What is written to {@code scripting.registry.directory}. */
+    record Stored(String id, ScriptLanguage language, String script, Instant registeredAt) {
+    }
+}
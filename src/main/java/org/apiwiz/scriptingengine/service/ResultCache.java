@@ -0,0 +1,215 @@
+package org.apiwiz.scriptingengine.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.github.benmanes.caffeine.cache.stats.ConcurrentStatsCounter;
+import com.github.benmanes.caffeine.cache.stats.StatsCounter;
+import org.apiwiz.scriptingengine.config.ResultCacheProperties;
+import org.apiwiz.scriptingengine.dto.ScriptResponse;
+import org.apiwiz.scriptingengine.exception.ExecutionLimitExceededException;
+import org.apiwiz.scriptingengine.exception.ScriptExecutionException;
+import org.apiwiz.scriptingengine.executor.ScriptExecution;
+import org.apiwiz.scriptingengine.models.ScriptLanguage;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Memoizes the responses of executions the caller marked as cacheable, i.e.
+ * deterministic in their script and input.
+ *
+ * <p>Entries are keyed by language, a SHA-256 of the script (or the id of
+ * a registered script) and a SHA-256 of the input, and are bounded by an
+ * estimate of their size in bytes and by a TTL; Caffeine's W-TinyLFU policy
+ * picks what to evict. Concurrent requests for the same key share a single
+ * execution: the first one runs it, the others wait for its outcome, but
+ * give up with a timeout once it is well past its own deadline. Only
+ * successful responses are kept: a failure is handed to the callers waiting
+ * on it and then dropped.
+ */
+@Component
+public class ResultCache {
+
+    /** How long after the running execution's deadline waiting callers give up. */
+    static final Duration WAIT_GRACE = Duration.ofSeconds(1);
+    /** Re-check interval while the running execution is still queued and has no deadline yet. */
+    private static final long QUEUED_POLL_MILLIS = 100;
+    /** Bytes a buffered token costs besides its text: its slot in a segment and the boxed value. */
+    private static final int TOKEN_BYTES = 24;
+
+    private final ResultCacheProperties properties;
+    private final Cache<Key, ScriptResponse> cache;
+    /** Hits and misses are recorded by {@link #get}, which also counts callers joining a running execution. */
+    private final StatsCounter statsCounter = new ConcurrentStatsCounter();
+    /** Executions still running, which callers for the same key wait for; failures never reach {@link #cache}. */
+    private final ConcurrentMap<Key, Running> running = new ConcurrentHashMap<>();
+
+    public ResultCache(ResultCacheProperties properties) {
+        this.properties = properties;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(properties.maxSize().toBytes())
+                .weigher((Key key, ScriptResponse response) -> weight(response))
+                .expireAfterWrite(properties.ttl())
+                .recordStats(() -> statsCounter)
+                .build();
+    }
+
+    public static Key key(ScriptLanguage language, String script, String input) {
+        return new Key(language, sha256(script), input != null ? sha256(input) : "");
+    }
+
+    /** Key of a registered script, which is identified by its id rather than its text. */
+    public static Key registeredKey(ScriptLanguage language, String id, String input) {
+        return new Key(language, id, input != null ? sha256(input) : "");
+    }
+
+    /**
+     * Returns the cached response for the key, or runs {@code work},
+     * sharing it with concurrent callers for the same key and caching its
+     * response if it succeeded.
+     *
+     * @param execution the run {@code work} performs, whose deadline bounds how long others wait for it
+     */
+    public ScriptResponse get(Key key, ScriptExecution execution, Supplier<ScriptResponse> work) {
+        ScriptResponse cached = cache.policy().getIfPresentQuietly(key);
+        if (cached != null) {
+            statsCounter.recordHits(1);
+            return cached;
+        }
+
+        Running mine = new Running(execution);
+        Running shared = running.putIfAbsent(key, mine);
+        if (shared != null) {
+            statsCounter.recordHits(1);
+            return await(shared);
+        }
+        try {
+            // the previous execution may have finished between the two lookups
+            cached = cache.policy().getIfPresentQuietly(key);
+            if (cached != null) {
+                statsCounter.recordHits(1);
+                mine.complete(cached);
+                return cached;
+            }
+            statsCounter.recordMisses(1);
+            ScriptResponse response = work.get();
+            if (response.success()) cache.put(key, response);
+            mine.complete(response);
+            return response;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            running.remove(key, mine);
+        }
+    }
+
+    public void clear() {
+        cache.invalidateAll();
+    }
+
+    public Stats stats() {
+        cache.cleanUp();    // size and weight are only settled by pending maintenance
+        CacheStats stats = cache.stats();
+        long weight = cache.policy().eviction()
+                .map(eviction -> eviction.weightedSize().orElse(0))
+                .orElse(0L);
+        return new Stats(cache.estimatedSize(), weight, properties.maxSize().toBytes(),
+                stats.hitCount(), stats.missCount(), stats.hitRate(), stats.evictionCount());
+    }
+
+    private static ScriptResponse await(Running shared) {
+        ScriptExecution leader = shared.execution;
+        try {
+            while (true) {
+                try {
+                    return shared.get(QUEUED_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    if (leader.isPastDeadline(WAIT_GRACE)) {
+                        throw new ExecutionLimitExceededException(ExecutionLimitExceededException.TIMEOUT,
+                                "Shared execution did not finish within its time limit", null);
+                    }
+                }
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw new ScriptExecutionException(e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ScriptExecutionException("Interrupted while waiting for a shared execution", e);
+        }
+    }
+
+    /**
+     * Rough bytes retained by a response: its strings at two bytes a
+     * character, the buffered result tokens and a fixed overhead. The result
+     * is walked once, when the entry is inserted.
+     */
+    static int weight(ScriptResponse response) {
+        long bytes = 256 + chars(response.output()) + chars(response.error());
+        if (response.result() != null) {
+            try (JsonParser tokens = response.result().asParser()) {
+                JsonToken token;
+                while ((token = tokens.nextToken()) != null) {
+                    bytes += TOKEN_BYTES;
+                    if (token == JsonToken.VALUE_STRING || token == JsonToken.FIELD_NAME) {
+                        bytes += 2L * tokens.getTextLength();
+                    } else if (token == JsonToken.VALUE_NUMBER_INT && tokens.getNumberType() == JsonParser.NumberType.BIG_INTEGER) {
+                        bytes += tokens.getBigIntegerValue().bitLength() / 8;
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return (int) Math.min(Integer.MAX_VALUE, bytes);
+    }
+
+    private static long chars(String s) {
+        return s != null ? 2L * s.length() : 0;
+    }
+
+    /** An entry whose execution is still running, with the run others wait for. */
+    private static final class Running extends CompletableFuture<ScriptResponse> {
+        final ScriptExecution execution;
+
+        Running(ScriptExecution execution) {
+            this.execution = execution;
+        }
+    }
+
+    private static String sha256(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    public record Key(ScriptLanguage language, String script, String input) {
+    }
+
+    /**
+     * @param weightBytes estimated memory held by the cached responses
+     */
+    public record Stats(long size, long weightBytes, long maxWeightBytes,
+                        long hits, long misses, double hitRatio, long evictions) {
+    }
+}
@@ -0,0 +1,106 @@
+package org.apiwiz.scriptingengine.service;
+
+import org.apiwiz.scriptingengine.dto.JobResponse;
+import org.apiwiz.scriptingengine.dto.ScriptResponse;
+import org.apiwiz.scriptingengine.executor.ScriptExecution;
+import org.apiwiz.scriptingengine.models.JobStatus;
+
+import java.time.Instant;
+import java.util.concurrent.Future;
+
+/**
+ * A submitted script and its lifecycle. State transitions are synchronized
+ * so that a cancel racing with completion leaves exactly one outcome.
+ */
+class ScriptJob {
+
+    private final String id;
+    private final String language;
+    private final Instant submittedAt = Instant.now();
+    private final ScriptExecution execution = new ScriptExecution();
+    private Future<?> future;
+    private JobStatus status = JobStatus.QUEUED;
+    private Instant startedAt;
+    private Instant finishedAt;
+    private ScriptResponse result;
+    private String error;
+    private String limit;
+
+    ScriptJob(String id, String language) {
+        this.id = id;
+        this.language = language;
+    }
+
+    String id() {
+        return id;
+    }
+
+    String language() {
+        return language;
+    }
+
+    ScriptExecution execution() {
+        return execution;
+    }
+
+    synchronized void setFuture(Future<?> future) {
+        this.future = future;
+    }
+
+    /** @return false if the job was cancelled while queued */
+    synchronized boolean start() {
+        if (status != JobStatus.QUEUED) return false;
+        status = JobStatus.RUNNING;
+        startedAt = Instant.now();
+        return true;
+    }
+
+    synchronized void succeeded(ScriptResponse response) {
+        if (finish(JobStatus.SUCCEEDED)) result = response;
+    }
+
+    /** @param limit kind of limit that stopped the script, or null for any other failure */
+    synchronized void failed(String message, String limit) {
+        if (finish(JobStatus.FAILED)) {
+            error = message;
+            this.limit = limit;
+        }
+    }
+
+    /**
+     * Cancels a queued or running job: closes its context if the script is
+     * being evaluated and interrupts its thread otherwise.
+     *
+     * @return false if the job had already finished
+     */
+    boolean cancel() {
+        Future<?> running;
+        synchronized (this) {
+            if (!finish(JobStatus.CANCELLED)) return false;
+            error = "Script execution was cancelled";
+            running = future;
+        }
+        execution.cancel();
+        if (running != null) running.cancel(true);
+        return true;
+    }
+
+    synchronized JobStatus status() {
+        return status;
+    }
+
+    synchronized Instant finishedAt() {
+        return finishedAt;
+    }
+
+    synchronized JobResponse toResponse() {
+        return new JobResponse(id, language, status, submittedAt, startedAt, finishedAt, result, error, limit);
+    }
+
+    private boolean finish(JobStatus outcome) {
+        if (status.isFinished()) return false;
+        status = outcome;
+        finishedAt = Instant.now();
+        return true;
+    }
+}
@@ -0,0 +1,114 @@
+package org.apiwiz.scriptingengine.service;
+
+import jakarta.annotation.PreDestroy;
+import org.apiwiz.scriptingengine.config.JobProperties;
+import org.apiwiz.scriptingengine.dto.JobResponse;
+import org.apiwiz.scriptingengine.exception.ExecutionLimitExceededException;
+import org.apiwiz.scriptingengine.exception.ExecutionRejectedException;
+import org.apiwiz.scriptingengine.exception.JobNotFoundException;
+import org.apiwiz.scriptingengine.models.ScriptLanguage;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs scripts in the background so callers do not hold a request thread
+ * through dependency installation and evaluation.
+ *
+ * <p>Every job gets its own virtual thread. Jobs are kept in a bounded
+ * store: finished jobs expire after the configured TTL, and when the store
+ * is full the oldest finished jobs make room for new ones. Submissions are
+ * rejected only when every retained job is still queued or running.
+ */
+@Service
+public class ScriptJobService {
+
+    private final ScriptService scriptService;
+    private final JobProperties properties;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<String, ScriptJob> jobs = new LinkedHashMap<>();
+
+    public ScriptJobService(ScriptService scriptService, JobProperties properties) {
+        this.scriptService = scriptService;
+        this.properties = properties;
+    }
+
+    public JobResponse submit(String language, String script, Long timeoutMillis) {
+        ScriptLanguage.fromString(language);
+        ScriptJob job = new ScriptJob(UUID.randomUUID().toString(), language);
+        job.execution().timeoutMillis(timeoutMillis);
+        synchronized (jobs) {
+            evictExpired();
+            if (jobs.size() >= properties.maxJobs() && !evictOldestFinished()) {
+                throw new ExecutionRejectedException(
+                        "Job store is full: " + properties.maxJobs() + " jobs are queued or running",
+                        Duration.ofSeconds(1));
+            }
+            jobs.put(job.id(), job);
+        }
+        job.setFuture(executor.submit(() -> run(job, script)));
+        return job.toResponse();
+    }
+
+    public JobResponse get(String id) {
+        return find(id).toResponse();
+    }
+
+    public JobResponse cancel(String id) {
+        ScriptJob job = find(id);
+        job.cancel();
+        return job.toResponse();
+    }
+
+    @PreDestroy
+    public void close() {
+        synchronized (jobs) {
+            jobs.values().forEach(ScriptJob::cancel);
+        }
+        executor.shutdownNow();
+    }
+
+    private void run(ScriptJob job, String script) {
+        if (!job.start()) return;
+        try {
+            job.succeeded(scriptService.executeScript(job.language(), script, job.execution()));
+        } catch (ExecutionLimitExceededException e) {
+            job.failed(e.getMessage(), e.getLimit());
+        } catch (RuntimeException e) {
+            job.failed(e.getMessage(), null);
+        }
+    }
+
+    private ScriptJob find(String id) {
+        synchronized (jobs) {
+            evictExpired();
+            ScriptJob job = jobs.get(id);
+            if (job == null) throw new JobNotFoundException(id);
+            return job;
+        }
+    }
+
+    private void evictExpired() {
+        Instant cutoff = Instant.now().minus(properties.ttl());
+        jobs.values().removeIf(job -> {
+            Instant finishedAt = job.finishedAt();
+            return finishedAt != null && finishedAt.isBefore(cutoff);
+        });
+    }
+
+    private boolean evictOldestFinished() {
+        Optional<ScriptJob> oldest = jobs.values().stream()
+                .filter(job -> job.finishedAt() != null)
+                .min(Comparator.comparing(ScriptJob::finishedAt));
+        oldest.ifPresent(job -> jobs.remove(job.id()));
+        return oldest.isPresent();
+    }
+}
@@ -0,0 +1,203 @@
+package org.apiwiz.scriptingengine.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apiwiz.scriptingengine.config.RegistryProperties;
+import org.apiwiz.scriptingengine.dto.InvokeRequest;
+import org.apiwiz.scriptingengine.dto.RegisteredScriptResponse;
+import org.apiwiz.scriptingengine.dto.ScriptResponse;
+import org.apiwiz.scriptingengine.exception.ScriptExecutionException;
+import org.apiwiz.scriptingengine.exception.ScriptNotFoundException;
+import org.apiwiz.scriptingengine.executor.ScriptExecution;
+import org.apiwiz.scriptingengine.models.ScriptLanguage;
+import org.graalvm.polyglot.Source;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Scripts registered once and then invoked by id.
+ *
+ * <p>Registering installs a script's dependencies and parses it, and the
+ * compiled {@link Source} is kept, so invocations go straight to evaluation
+ * on code the engine has already compiled; per-call input comes in as
+ * arguments instead of as different source text. At most
+ * {@code scripting.registry.max-scripts} compiled scripts are held, least
+ * recently used first out. With {@code scripting.registry.directory} set,
+ * registrations are also written to disk: evicted scripts are recompiled on
+ * their next use, and the most recent ones are restored at startup, before
+ * the instance reports ready.
+ */
+@Service
+public class ScriptRegistry implements ApplicationRunner {
+
+    private final ScriptService scriptService;
+    private final RegistryProperties properties;
+    private final ObjectMapper objectMapper;
+    private final Map<String, RegisteredScript> scripts;
+
+    public ScriptRegistry(ScriptService scriptService, RegistryProperties properties, ObjectMapper objectMapper) {
+        this.scriptService = scriptService;
+        this.properties = properties;
+        this.objectMapper = objectMapper;
+        this.scripts = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, RegisteredScript> eldest) {
+                if (size() <= properties.maxScripts()) return false;
+                if (properties.directory() == null) {
+                    System.out.println("Registry full, dropping least recently used script " + eldest.getKey());
+                }
+                return true;
+            }
+        };
+    }
+
+    public RegisteredScriptResponse register(String language, String script) {
+        ScriptLanguage lang = ScriptLanguage.fromString(language);
+        if (script == null || script.isBlank()) throw new ScriptExecutionException("Script is empty", null);
+
+        RegisteredScript registered = compile(
+                new RegisteredScript.Stored(UUID.randomUUID().toString(), lang, script, Instant.now()));
+        Path file = file(registered.id());
+        if (file != null) store(file, registered.stored());
+        synchronized (scripts) {
+            scripts.put(registered.id(), registered);
+        }
+        return registered.toResponse();
+    }
+
+    public RegisteredScriptResponse get(String id) {
+        return find(id).toResponse();
+    }
+
+    public ScriptResponse invoke(String id, InvokeRequest request) {
+        RegisteredScript script = find(id);
+        JsonNode args = request.args();
+        if (args != null && args.isNull()) args = null;
+        if (args != null && !args.isObject() && request.function() == null) {
+            throw new ScriptExecutionException("args must be a JSON object unless a function is called", null);
+        }
+        ScriptExecution execution = new ScriptExecution()
+                .timeoutMillis(request.timeoutMillis())
+                .cacheable(request.cacheable());
+        return scriptService.invoke(script, args != null ? args.toString() : null, request.function(), execution);
+    }
+
+    public void delete(String id) {
+        boolean removed;
+        synchronized (scripts) {
+            removed = scripts.remove(id) != null;
+        }
+        Path file = file(id);
+        try {
+            if (file != null && Files.deleteIfExists(file)) removed = true;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not delete " + file, e);
+        }
+        if (!removed) throw new ScriptNotFoundException(id);
+    }
+
+    /** Recompiles the most recently registered scripts stored on disk. */
+    @Override
+    public void run(ApplicationArguments args) {
+        Path directory = properties.directory();
+        if (directory == null || !Files.isDirectory(directory)) return;
+
+        List<RegisteredScript.Stored> stored = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.filter(f -> f.getFileName().toString().endsWith(".json")).toList()) {
+                try {
+                    stored.add(objectMapper.readValue(file.toFile(), RegisteredScript.Stored.class));
+                } catch (IOException e) {
+                    System.err.println("Skipping unreadable registered script " + file + ": " + e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Could not list registered scripts in " + directory + ": " + e.getMessage());
+            return;
+        }
+
+        stored.sort(Comparator.comparing(RegisteredScript.Stored::registeredAt).reversed());
+        int restored = 0;
+        for (RegisteredScript.Stored script : stored.subList(0, Math.min(stored.size(), properties.maxScripts()))) {
+            try {
+                RegisteredScript registered = compile(script);
+                synchronized (scripts) {
+                    scripts.putIfAbsent(registered.id(), registered);
+                }
+                restored++;
+            } catch (RuntimeException e) {
+                System.err.println("Could not restore registered script " + script.id() + ": " + e.getMessage());
+            }
+        }
+        System.out.println("Restored " + restored + " of " + stored.size() + " registered scripts from " + directory);
+    }
+
+    private RegisteredScript find(String id) {
+        synchronized (scripts) {
+            RegisteredScript script = scripts.get(id);
+            if (script != null) return script;
+        }
+
+        Path file = file(id);
+        if (file == null || !Files.isRegularFile(file)) throw new ScriptNotFoundException(id);
+        RegisteredScript.Stored stored;
+        try {
+            stored = objectMapper.readValue(file.toFile(), RegisteredScript.Stored.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read " + file, e);
+        }
+        RegisteredScript script = compile(stored);
+        synchronized (scripts) {
+            RegisteredScript raced = scripts.putIfAbsent(id, script);
+            return raced != null ? raced : script;
+        }
+    }
+
+    private RegisteredScript compile(RegisteredScript.Stored stored) {
+        Source source = scriptService.resolveExecutor(stored.language())
+                .compile("registered-" + stored.id(), stored.script());
+        return new RegisteredScript(stored.id(), stored.language(), stored.script(), stored.registeredAt(), source);
+    }
+
+    /** The file of a registered script, or {@code null} when not persisting or the id is not one of ours. */
+    private Path file(String id) {
+        if (properties.directory() == null) return null;
+        try {
+            if (!UUID.fromString(id).toString().equals(id)) return null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        return properties.directory().resolve(id + ".json");
+    }
+
+    /** Writes to a temporary file first so a crash never leaves a truncated registration behind. */
+    private void store(Path file, RegisteredScript.Stored stored) {
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = Files.createTempFile(file.getParent(), ".registering-", ".tmp");
+            try {
+                objectMapper.writeValue(temp.toFile(), stored);
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not store registered script " + stored.id(), e);
+        }
+    }
+}
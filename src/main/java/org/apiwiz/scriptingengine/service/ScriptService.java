@@ -1,36 +1,185 @@
 package org.apiwiz.scriptingengine.service;
 
+import org.apiwiz.scriptingengine.config.BatchProperties;
+import org.apiwiz.scriptingengine.dto.ScriptRequest;
 import org.apiwiz.scriptingengine.dto.ScriptResponse;
+import org.apiwiz.scriptingengine.executor.ExecutionLimits;
+import org.apiwiz.scriptingengine.executor.ScriptExecution;
 import org.apiwiz.scriptingengine.executor.ScriptExecutor;
+import org.apiwiz.scriptingengine.exception.ExecutionLimitExceededException;
 import org.apiwiz.scriptingengine.exception.ScriptExecutionException;
+import org.apiwiz.scriptingengine.metrics.ScriptMetrics;
 import org.apiwiz.scriptingengine.models.ScriptLanguage;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
 
 @Service
 public class ScriptService {
 
     private final Map<ScriptLanguage, ScriptExecutor> executors;
+    private final BatchProperties batchProperties;
+    private final AdmissionControl admissionControl;
+    private final ScriptMetrics metrics;
+    private final ExecutionLimits limits;
+    private final ResultCache resultCache;
 
-    public ScriptService(Map<ScriptLanguage, ScriptExecutor> executors) {
+    public ScriptService(Map<ScriptLanguage, ScriptExecutor> executors,
+                         BatchProperties batchProperties,
+                         AdmissionControl admissionControl,
+                         ScriptMetrics metrics,
+                         ExecutionLimits limits,
+                         ResultCache resultCache) {
         this.executors = executors;
+        this.batchProperties = batchProperties;
+        this.admissionControl = admissionControl;
+        this.metrics = metrics;
+        this.limits = limits;
+        this.resultCache = resultCache;
     }
 
     public ScriptResponse executeScript(String language, String script) {
+        return executeScript(language, script, new ScriptExecution());
+    }
+
+    public ScriptResponse executeScript(String language, String script, ScriptExecution execution) {
         ScriptLanguage lang = ScriptLanguage.fromString(language);
         ScriptExecutor executor = resolveExecutor(lang);
-        return executor.execute(lang, script);
+        return cached(() -> ResultCache.key(lang, script, null), lang, execution,
+                () -> executor.execute(lang, script, execution));
     }
 
     public ScriptResponse executeUploadedScriptFile(String language, MultipartFile file) {
         ScriptLanguage lang = ScriptLanguage.fromString(language);
         ScriptExecutor executor = resolveExecutor(lang);
-        return executor.executeFromMultipartFile(lang, file);
+        ScriptExecution execution = new ScriptExecution();
+        return run(lang, execution, () -> executor.executeFromMultipartFile(lang, file, execution));
+    }
+
+    /** Runs a registered script; its dependencies were installed when it was registered. */
+    ScriptResponse invoke(RegisteredScript script, String argsJson, String function, ScriptExecution execution) {
+        ScriptExecutor executor = resolveExecutor(script.language());
+        return cached(() -> ResultCache.registeredKey(script.language(), script.id(), function + "\0" + argsJson),
+                script.language(), execution,
+                () -> executor.invoke(script.source(), argsJson, function, execution));
+    }
+
+    /**
+     * Runs a batch of scripts and returns one response per request, in order.
+     *
+     * <p>Dependencies are installed once per language for the whole batch,
+     * then the items are evaluated on virtual threads, at most
+     * {@code scripting.batch.parallelism} at a time and subject to admission
+     * control like any other execution. A failing or rejected item yields an
+     * unsuccessful response for that item only.
+     */
+    public List<ScriptResponse> executeBatch(List<ScriptRequest> requests) {
+        if (requests.size() > batchProperties.maxItems()) {
+            throw new ScriptExecutionException("Batch of " + requests.size()
+                    + " scripts exceeds the limit of " + batchProperties.maxItems(), null);
+        }
+
+        ScriptResponse[] responses = new ScriptResponse[requests.size()];
+        Map<ScriptLanguage, List<Integer>> byLanguage = new EnumMap<>(ScriptLanguage.class);
+        for (int i = 0; i < requests.size(); i++) {
+            try {
+                ScriptLanguage lang = ScriptLanguage.fromString(requests.get(i).language());
+                resolveExecutor(lang);
+                byLanguage.computeIfAbsent(lang, l -> new ArrayList<>()).add(i);
+            } catch (RuntimeException e) {
+                responses[i] = new ScriptResponse(e.getMessage(), false);
+            }
+        }
+
+        Semaphore permits = new Semaphore(batchProperties.parallelism());
+        Map<Integer, Future<ScriptResponse>> running = new HashMap<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Map.Entry<ScriptLanguage, List<Integer>> group : byLanguage.entrySet()) {
+                ScriptLanguage lang = group.getKey();
+                ScriptExecutor scriptExecutor = resolveExecutor(lang);
+                try {
+                    scriptExecutor.installDependencies(group.getValue().stream()
+                            .map(i -> requests.get(i).script())
+                            .toList());
+                } catch (RuntimeException e) {
+                    group.getValue().forEach(i -> responses[i] = new ScriptResponse(e.getMessage(), false));
+                    continue;
+                }
+
+                for (int i : group.getValue()) {
+                    String script = requests.get(i).script();
+                    Long timeoutMillis = requests.get(i).timeoutMillis();
+                    Boolean cacheable = requests.get(i).cacheable();
+                    running.put(i, executor.submit(() -> {
+                        permits.acquire();
+                        try {
+                            ScriptExecution execution = new ScriptExecution()
+                                    .dependenciesInstalled()
+                                    .timeoutMillis(timeoutMillis)
+                                    .cacheable(cacheable);
+                            return cached(() -> ResultCache.key(lang, script, null), lang, execution,
+                                    () -> scriptExecutor.execute(lang, script, execution));
+                        } catch (ExecutionLimitExceededException e) {
+                            return new ScriptResponse(e.getMessage(), false, e.getLimit());
+                        } catch (RuntimeException e) {
+                            return new ScriptResponse(e.getMessage(), false);
+                        } finally {
+                            permits.release();
+                        }
+                    }));
+                }
+            }
+
+            for (Map.Entry<Integer, Future<ScriptResponse>> item : running.entrySet()) {
+                try {
+                    responses[item.getKey()] = item.getValue().get();
+                } catch (ExecutionException e) {
+                    responses[item.getKey()] = new ScriptResponse(e.getCause().getMessage(), false);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new ScriptExecutionException("Interrupted while running batch", e);
+                }
+            }
+        }
+        return Arrays.asList(responses);
+    }
+
+    /**
+     * Runs a cacheable execution through the result cache, others directly.
+     * A response served from the cache, or shared with a concurrent
+     * identical execution, is reported as a single "cache" phase.
+     */
+    private ScriptResponse cached(Supplier<ResultCache.Key> key, ScriptLanguage language, ScriptExecution execution,
+                                  Supplier<ScriptResponse> work) {
+        if (!execution.isCacheable()) return run(language, execution, work);
+
+        long start = System.nanoTime();
+        ScriptResponse response = resultCache.get(key.get(), execution, () -> run(language, execution, work));
+        if (execution.phases().isEmpty()) execution.recordPhase("cache", System.nanoTime() - start);
+        return response;
+    }
+
+    /**
+     * Admits, times and meters one execution; time spent waiting for admission
+     * is the "queue" phase. The execution's time budget starts once admitted.
+     */
+    private ScriptResponse run(ScriptLanguage language, ScriptExecution execution, Supplier<ScriptResponse> work) {
+        long submitted = System.nanoTime();
+        return metrics.observe(language, execution, () -> admissionControl.run(language, () -> {
+            execution.recordPhase("queue", System.nanoTime() - submitted);
+            execution.startDeadline(limits.timeoutFor(execution.getTimeoutMillis()));
+            return work.get();
+        }));
     }
 
-    private ScriptExecutor resolveExecutor(ScriptLanguage language) {
+    ScriptExecutor resolveExecutor(ScriptLanguage language) {
         ScriptExecutor executor = executors.get(language);
         if (executor == null)
             throw new ScriptExecutionException("Unsupported language: " + language.name(), null);
@@ -0,0 +1,222 @@
+package org.apiwiz.scriptingengine.service;
+
+import jakarta.annotation.PreDestroy;
+import org.apiwiz.scriptingengine.config.StreamProperties;
+import org.apiwiz.scriptingengine.dto.OutputChunk;
+import org.apiwiz.scriptingengine.dto.OutputTruncated;
+import org.apiwiz.scriptingengine.dto.ScriptResponse;
+import org.apiwiz.scriptingengine.dto.StreamResult;
+import org.apiwiz.scriptingengine.exception.ExecutionLimitExceededException;
+import org.apiwiz.scriptingengine.executor.ScriptExecution;
+import org.apiwiz.scriptingengine.models.ScriptLanguage;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs a script while pushing its stdout/stderr to the client as
+ * Server-Sent Events.
+ *
+ * <p>Output is cut into chunks at line ends (or every {@code chunkSize}
+ * bytes) and handed to a sender thread through a bounded queue, so memory
+ * per stream stays flat however much a script prints. When the client
+ * falls behind and the queue stays full for {@code offerTimeout}, chunks
+ * are dropped and counted rather than stalling the script; a
+ * {@code truncated} event then reports how many bytes were lost. A final
+ * {@code result} event carries the script's value, as a string and as
+ * JSON, and its timing. A client that disconnects cancels the execution.
+ */
+@Service
+public class ScriptStreamService {
+
+    private final ScriptService scriptService;
+    private final StreamProperties properties;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public ScriptStreamService(ScriptService scriptService, StreamProperties properties) {
+        this.scriptService = scriptService;
+        this.properties = properties;
+    }
+
+    public SseEmitter stream(String language, String script, Long timeoutMillis) {
+        ScriptLanguage.fromString(language);
+
+        SseEmitter emitter = new SseEmitter(properties.timeout().toMillis());
+        Events events = new Events(properties.bufferChunks());
+        ChunkedOutput stdout = new ChunkedOutput("stdout", events);
+        ChunkedOutput stderr = new ChunkedOutput("stderr", events);
+        ScriptExecution execution = new ScriptExecution()
+                .output(stdout, stderr)
+                .timeoutMillis(timeoutMillis);
+
+        Runnable abort = () -> {
+            events.closed = true;
+            execution.cancel();
+        };
+        emitter.onTimeout(abort);
+        emitter.onError(e -> abort.run());
+
+        executor.submit(() -> {
+            long start = System.nanoTime();
+            ScriptResponse response = new ScriptResponse("Execution aborted", false);
+            try {
+                response = scriptService.executeScript(language, script, execution);
+            } catch (ExecutionLimitExceededException e) {
+                response = new ScriptResponse(e.getMessage(), false, e.getLimit());
+            } catch (RuntimeException e) {
+                response = new ScriptResponse(e.getMessage(), false);
+            } finally {
+                // the sender blocks until this arrives, so it is queued whatever happened
+                stdout.close();
+                stderr.close();
+                events.finish(new StreamResult(response.output(), response.success(), response.result(),
+                        response.error(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                        events.dropped.sum()));
+            }
+        });
+        executor.submit(() -> send(emitter, events, abort));
+        return emitter;
+    }
+
+    @PreDestroy
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private void send(SseEmitter emitter, Events events, Runnable abort) {
+        try {
+            while (true) {
+                Event event = events.queue.take();
+                if (event.result() == null) {
+                    events.slots.release();
+                    emitter.send(SseEmitter.event().name(event.stream())
+                            .data(new OutputChunk(event.text()), MediaType.APPLICATION_JSON));
+                    continue;
+                }
+                if (event.result().droppedBytes() > 0) {
+                    emitter.send(SseEmitter.event().name("truncated")
+                            .data(new OutputTruncated(event.result().droppedBytes()), MediaType.APPLICATION_JSON));
+                }
+                emitter.send(SseEmitter.event().name("result")
+                        .data(event.result(), MediaType.APPLICATION_JSON));
+                emitter.complete();
+                return;
+            }
+        } catch (IOException | IllegalStateException e) {
+            // client went away
+            abort.run();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abort.run();
+            emitter.complete();
+        }
+    }
+
+    /** An output chunk, or the outcome that ends the stream when {@code result} is set. */
+    private record Event(String stream, String text, StreamResult result) {
+    }
+
+    /**
+     * Chunks waiting for the sender, then the outcome once the script is
+     * done. Chunks take one of {@code capacity} slots; the queue has one more
+     * so the outcome is always accepted.
+     */
+    private static final class Events {
+        final BlockingQueue<Event> queue;
+        final Semaphore slots;
+        final LongAdder dropped = new LongAdder();
+        volatile boolean closed;
+
+        Events(int capacity) {
+            this.queue = new ArrayBlockingQueue<>(capacity + 1);
+            this.slots = new Semaphore(capacity);
+        }
+
+        void finish(StreamResult result) {
+            queue.add(new Event(null, null, result));
+        }
+    }
+
+    /**
+     * Cuts one output stream into chunks at line ends or when the buffer is
+     * full, never splitting a UTF-8 sequence, and offers them to the queue.
+     */
+    private final class ChunkedOutput extends OutputStream {
+        private final String stream;
+        private final Events events;
+        private final byte[] buffer = new byte[properties.chunkSize()];
+        private int count;
+
+        ChunkedOutput(String stream, Events events) {
+            this.stream = stream;
+            this.events = events;
+        }
+
+        @Override
+        public synchronized void write(int b) {
+            buffer[count++] = (byte) b;
+            if (b == '\n' || count == buffer.length) emit(false);
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) {
+            for (int i = off; i < off + len; i++) write(b[i]);
+        }
+
+        @Override
+        public synchronized void flush() {
+            if (count > 0) emit(false);
+        }
+
+        /** Emits whatever is left, including an incomplete trailing sequence. */
+        @Override
+        public synchronized void close() {
+            if (count > 0) emit(true);
+        }
+
+        private void emit(boolean all) {
+            int cut = all ? count : completeLength();
+            if (cut == 0) cut = count;
+            offer(new String(buffer, 0, cut, StandardCharsets.UTF_8), cut);
+            System.arraycopy(buffer, cut, buffer, 0, count - cut);
+            count -= cut;
+        }
+
+        /** Length of the buffered prefix that ends on a UTF-8 character boundary. */
+        private int completeLength() {
+            int lead = count - 1;
+            while (lead > 0 && (buffer[lead] & 0xC0) == 0x80) lead--;
+            int b = buffer[lead] & 0xFF;
+            int length = b >= 0xF0 ? 4 : b >= 0xE0 ? 3 : b >= 0xC0 ? 2 : 1;
+            return lead + length > count ? lead : count;
+        }
+
+        private void offer(String text, int bytes) {
+            if (events.closed) {
+                events.dropped.add(bytes);
+                return;
+            }
+            try {
+                if (events.slots.tryAcquire(properties.offerTimeout().toNanos(), TimeUnit.NANOSECONDS)) {
+                    events.queue.add(new Event(stream, text, null));
+                } else {
+                    events.dropped.add(bytes);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                events.dropped.add(bytes);
+            }
+        }
+    }
+}
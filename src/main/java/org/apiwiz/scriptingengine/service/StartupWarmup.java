@@ -0,0 +1,151 @@
+package org.apiwiz.scriptingengine.service;
+
+import org.apiwiz.scriptingengine.config.WarmupProperties;
+import org.apiwiz.scriptingengine.engine.ContextPools;
+import org.apiwiz.scriptingengine.executor.ScriptExecution;
+import org.apiwiz.scriptingengine.executor.ScriptExecutor;
+import org.apiwiz.scriptingengine.models.ScriptLanguage;
+import org.apiwiz.scriptingengine.utils.NpmDependencyDownloader;
+import org.apiwiz.scriptingengine.utils.PyPIDependencyDownloader;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Warms the instance up before it takes traffic: fills each language's
+ * context pool (which also initializes its engine), brings the bytecode
+ * caches of installed Python packages up to date with the interpreter,
+ * installs the declared dependency manifest into {@code deps/}, and runs representative scripts
+ * round after round until a round takes about as long as the previous one,
+ * i.e. the hot paths have been compiled.
+ *
+ * <p>Spring Boot only moves readiness to {@link ReadinessState#ACCEPTING_TRAFFIC}
+ * once all application runners have returned, so the Actuator readiness probe
+ * ({@code /actuator/health/readiness}) reports {@code OUT_OF_SERVICE} for as
+ * long as the warm-up takes while liveness is already {@code UP}. Warm-up
+ * failures are logged and do not keep the instance from starting.
+ */
+@Component
+public class StartupWarmup implements ApplicationRunner {
+
+    private static final Map<ScriptLanguage, String> DEFAULT_SCRIPTS = Map.of(
+            ScriptLanguage.JAVASCRIPT, """
+                    const xs = Array.from({ length: 2000 }, (_, i) => ({ id: i, name: 'item-' + i }));
+                    const picked = xs.filter(x => x.id % 3 === 0).map(x => x.name.toUpperCase());
+                    JSON.parse(JSON.stringify(picked)).length
+                    """,
+            ScriptLanguage.PYTHON, """
+                    import json
+                    xs = [{'id': i, 'name': 'item-%d' % i} for i in range(2000)]
+                    picked = [x['name'].upper() for x in xs if x['id'] % 3 == 0]
+                    len(json.loads(json.dumps(picked)))
+                    """);
+
+    private final WarmupProperties properties;
+    private final ContextPools contextPools;
+    private final Map<ScriptLanguage, ScriptExecutor> executors;
+    private final NpmDependencyDownloader npmDownloader;
+    private final PyPIDependencyDownloader pypiDownloader;
+    private final ApplicationEventPublisher events;
+
+    public StartupWarmup(WarmupProperties properties,
+                         ContextPools contextPools,
+                         Map<ScriptLanguage, ScriptExecutor> executors,
+                         NpmDependencyDownloader npmDownloader,
+                         PyPIDependencyDownloader pypiDownloader,
+                         ApplicationEventPublisher events) {
+        this.properties = properties;
+        this.contextPools = contextPools;
+        this.executors = executors;
+        this.npmDownloader = npmDownloader;
+        this.pypiDownloader = pypiDownloader;
+        this.events = events;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!properties.enabled()) return;
+
+        AvailabilityChangeEvent.publish(events, this, ReadinessState.REFUSING_TRAFFIC);
+        long deadline = System.nanoTime() + properties.timeout().toNanos();
+        long start = System.nanoTime();
+        for (ScriptLanguage language : ScriptLanguage.values()) {
+            if (!executors.containsKey(language)) continue;
+            try {
+                warmUp(language, deadline);
+            } catch (RuntimeException e) {
+                System.err.println("Warm-up of " + language.getEngineName() + " failed: " + e.getMessage());
+            }
+        }
+        System.out.println("Warm-up finished in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+    }
+
+    private void warmUp(ScriptLanguage language, long deadline) {
+        String name = language.getEngineName();
+        long start = System.nanoTime();
+        int idle = contextPools.prefill(language, properties.contexts());
+        System.out.println("Warm-up: " + idle + " " + name + " contexts ready in " + millisSince(start) + " ms");
+
+        if (language == ScriptLanguage.PYTHON) {
+            try {
+                pypiDownloader.compileInstalled();
+            } catch (Exception e) {
+                System.err.println("Warm-up: could not compile installed Python packages: " + e.getMessage());
+            }
+        }
+
+        List<String> dependencies = properties.dependenciesFor(language);
+        if (!dependencies.isEmpty()) {
+            start = System.nanoTime();
+            install(language, dependencies);
+            System.out.println("Warm-up: installed " + dependencies + " in " + millisSince(start) + " ms");
+        }
+
+        List<String> scripts = properties.scriptsFor(language);
+        if (scripts.isEmpty()) scripts = List.of(DEFAULT_SCRIPTS.get(language));
+        ScriptExecutor executor = executors.get(language);
+        executor.installDependencies(scripts);
+
+        long previous = -1;
+        long elapsed = 0;
+        int rounds = 0;
+        while (rounds < properties.maxRounds() && System.nanoTime() < deadline) {
+            long round = System.nanoTime();
+            for (String script : scripts) {
+                ScriptExecution execution = new ScriptExecution().dependenciesInstalled();
+                execution.startDeadline(Duration.ofNanos(Math.max(0, deadline - System.nanoTime())));
+                executor.execute(language, script, execution);
+            }
+            elapsed = System.nanoTime() - round;
+            rounds++;
+            if (previous > 0 && Math.abs(elapsed - previous) <= properties.tolerance() * previous) break;
+            previous = elapsed;
+        }
+        System.out.println("Warm-up: " + name + " settled after " + rounds + " rounds, last round "
+                + TimeUnit.NANOSECONDS.toMillis(elapsed) + " ms");
+    }
+
+    private void install(ScriptLanguage language, List<String> packages) {
+        try {
+            switch (language) {
+                case JAVASCRIPT -> npmDownloader.installDependencies(new LinkedHashSet<>(packages));
+                case PYTHON -> pypiDownloader.installDependencies(new LinkedHashSet<>(packages));
+            }
+        } catch (Exception e) {
+            System.err.println("Warm-up: could not install " + packages + ": " + e.getMessage());
+        }
+    }
+
+    private static long millisSince(long start) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+}
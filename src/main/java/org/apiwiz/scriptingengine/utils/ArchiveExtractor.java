@@ -0,0 +1,177 @@
+package org.apiwiz.scriptingengine.utils;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Streams .tgz/.tar.gz and .zip/.whl archives straight into a directory.
+ *
+ * <p>Archives are consumed as they arrive (typically an HTTP response body),
+ * so no temporary archive file is written. Entries are copied through NIO
+ * channels with a large buffer and are not fsynced one by one while they
+ * are written; callers issue one {@link #syncTree} barrier per package once
+ * extraction is complete, which flushes every file and directory of it
+ * before it is published. Entries that would escape the target directory
+ * are rejected.
+ */
+public final class ArchiveExtractor {
+
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    private ArchiveExtractor() {
+    }
+
+    /**
+     * Extracts a gzip-compressed tarball.
+     *
+     * @param stripPrefix only entries under this prefix are extracted, with the prefix
+     *                    removed (npm's {@code package/}); {@code null} extracts everything
+     * @return number of bytes written
+     */
+    public static long extractTarGz(InputStream in, Path targetDir, String stripPrefix) throws IOException {
+        long written = 0;
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        TarArchiveInputStream tar = new TarArchiveInputStream(
+                new GzipCompressorInputStream(new BufferedInputStream(in, BUFFER_SIZE)));
+        ReadableByteChannel source = Channels.newChannel(tar);
+        TarArchiveEntry entry;
+        while ((entry = tar.getNextEntry()) != null) {
+            String name = entry.getName();
+            if (stripPrefix != null) {
+                if (!name.startsWith(stripPrefix)) continue;
+                name = name.substring(stripPrefix.length());
+            }
+            if (name.isEmpty()) continue;
+
+            Path out = resolve(targetDir, name);
+            if (entry.isDirectory()) {
+                Files.createDirectories(out);
+            } else if (entry.isFile()) {
+                written += copy(source, out, buffer);
+            }
+        }
+        drain(in, buffer);
+        return written;
+    }
+
+    /**
+     * Extracts a zip archive (including wheels).
+     *
+     * @return number of bytes written
+     */
+    public static long extractZip(InputStream in, Path targetDir) throws IOException {
+        long written = 0;
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        ZipInputStream zip = new ZipInputStream(new BufferedInputStream(in, BUFFER_SIZE));
+        ReadableByteChannel source = Channels.newChannel(zip);
+        ZipEntry entry;
+        while ((entry = zip.getNextEntry()) != null) {
+            Path out = resolve(targetDir, entry.getName());
+            if (entry.isDirectory()) {
+                Files.createDirectories(out);
+            } else {
+                written += copy(source, out, buffer);
+            }
+            zip.closeEntry();
+        }
+        drain(in, buffer);
+        return written;
+    }
+
+    /**
+     * Durability barrier for a freshly extracted package: flushes the data of
+     * every file below {@code dir}, then every directory, deepest first, so
+     * the whole tree survives a crash once it is published. The files are
+     * flushed concurrently, which lets the file system batch their journal
+     * commits. Directories are best-effort on platforms that cannot open
+     * them as channels.
+     */
+    public static void syncTree(Path dir) throws IOException {
+        List<Path> files = new ArrayList<>();
+        List<Path> dirs = new ArrayList<>();
+        try (Stream<Path> walk = Files.walk(dir)) {
+            walk.forEach(path -> (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS) ? dirs : files).add(path));
+        }
+
+        List<Future<?>> syncs = new ArrayList<>(files.size());
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Path file : files) {
+                if (!Files.isRegularFile(file, LinkOption.NOFOLLOW_LINKS)) continue;
+                syncs.add(executor.submit(() -> {
+                    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                        channel.force(true);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> sync : syncs) sync.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException io ? io : new IOException("Could not sync " + dir, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while syncing " + dir);
+        }
+
+        for (int i = dirs.size() - 1; i >= 0; i--) {
+            try (FileChannel channel = FileChannel.open(dirs.get(i), StandardOpenOption.READ)) {
+                channel.force(true);
+            } catch (IOException e) {
+                // directories cannot be opened for sync on every platform
+            }
+        }
+    }
+
+    private static long copy(ReadableByteChannel source, Path out, ByteBuffer buffer) throws IOException {
+        Files.createDirectories(out.getParent());
+        long total = 0;
+        try (FileChannel target = FileChannel.open(out,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            buffer.clear();
+            while (source.read(buffer) != -1) {
+                buffer.flip();
+                while (buffer.hasRemaining()) total += target.write(buffer);
+                buffer.clear();
+            }
+        }
+        return total;
+    }
+
+    /** Reads the raw stream to its end so digests computed over it cover the whole archive. */
+    private static void drain(InputStream in, ByteBuffer buffer) throws IOException {
+        byte[] scratch = buffer.array();
+        while (in.read(scratch) != -1) {
+            // discard trailing padding
+        }
+    }
+
+    private static Path resolve(Path targetDir, String name) throws IOException {
+        Path out = targetDir.resolve(name).normalize();
+        if (!out.startsWith(targetDir.normalize())) {
+            throw new IOException("Archive entry escapes target directory: " + name);
+        }
+        return out;
+    }
+}
@@ -0,0 +1,97 @@
+package org.apiwiz.scriptingengine.utils;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Meters of the dependency installers: registry round trips, bytes
+ * downloaded, archive extraction time and packages installed, tagged by
+ * ecosystem ({@code npm}, {@code pypi}).
+ */
+public final class DependencyMetrics {
+
+    private final MeterRegistry registry;
+    private final Counter downloaded;
+
+    public DependencyMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.downloaded = Counter.builder("scripting.registry.downloaded")
+                .description("Archive bytes received from package registries")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    /**
+     * @param kind    {@code metadata} or {@code download}
+     * @param outcome {@code ok}, {@code not_modified}, {@code cached}, {@code not_found} or {@code error}
+     */
+    void request(String kind, String outcome, long nanos) {
+        Timer.builder("scripting.registry.requests")
+                .description("Package registry round trips")
+                .tag("kind", kind)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    void extracted(String ecosystem, long nanos) {
+        Timer.builder("scripting.dependencies.extraction")
+                .description("Streaming download plus archive extraction of one package")
+                .tag("ecosystem", ecosystem)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    void prelinked(String ecosystem, long nanos) {
+        Timer.builder("scripting.dependencies.prelink")
+                .description("Resolving and bundling the modules of one package at install time")
+                .tag("ecosystem", ecosystem)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    void compiled(String ecosystem, long nanos) {
+        Timer.builder("scripting.dependencies.bytecode")
+                .description("Ahead-of-time compilation of one package's sources to bytecode")
+                .tag("ecosystem", ecosystem)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    void installed(String ecosystem) {
+        Counter.builder("scripting.dependencies.installed")
+                .description("Packages installed")
+                .tag("ecosystem", ecosystem)
+                .register(registry)
+                .increment();
+    }
+
+    /** Counts the bytes read from a download stream. */
+    InputStream counting(InputStream in) {
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b != -1) downloaded.increment();
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int n = super.read(b, off, len);
+                if (n > 0) downloaded.increment(n);
+                return n;
+            }
+        };
+    }
+}
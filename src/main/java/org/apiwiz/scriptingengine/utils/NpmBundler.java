@@ -0,0 +1,219 @@
+package org.apiwiz.scriptingengine.utils;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Pre-links an installed CommonJS package into a single file.
+ *
+ * <p>Starting at the package's {@code main}, every {@code require} with a
+ * literal specifier that stays inside the package (relative paths, the
+ * package's own name) is resolved once, the way Node.js would — exact file,
+ * then {@code .js}, {@code .json}, {@code .cjs}, then a directory's
+ * package.json {@code main} or index file — and the files reached are
+ * written, each wrapped in its module function, into {@link #BUNDLE_FILE}
+ * together with the resolved links between them. Loading the package then
+ * means reading and parsing that one file instead of probing and parsing
+ * every module of the tree.
+ *
+ * <p>Requires of other packages, Node.js builtins and anything computed at
+ * run time are left to the loader, relative to the requiring file; the
+ * original files stay on disk for them. Packages written as ES modules
+ * ({@code "type": "module"} or an {@code .mjs} entry) are not pre-linked.
+ */
+public final class NpmBundler {
+
+    /** Entry point of a pre-linked package, set as its “main”. */
+    public static final String BUNDLE_FILE = "__bundle__.cjs";
+
+    private static final List<String> EXTENSIONS = List.of(".js", ".json", ".cjs");
+
+    private NpmBundler() {}
+
+    /**
+     * Writes {@link #BUNDLE_FILE} for the package in {@code packageDir}.
+     *
+     * @param pkg         the package's name, for requires of its own subpaths
+     * @param packageJson the package's package.json, as published
+     * @return the number of modules bundled, or 0 if the package cannot be pre-linked
+     */
+    public static int bundle(Path packageDir, String pkg, JSONObject packageJson) throws IOException {
+        if ("module".equals(packageJson.optString("type"))) return 0;
+        Path dir = packageDir.toAbsolutePath().normalize();
+        Path entry = resolve(dir, dir.resolve(packageJson.optString("main", "index.js")).normalize());
+        if (entry == null) return 0;
+
+        List<Path> files = new ArrayList<>();
+        Map<Path, Integer> ids = new HashMap<>();
+        List<Map<String, Integer>> links = new ArrayList<>();
+        List<String> sources = new ArrayList<>();
+        files.add(entry);
+        ids.put(entry, 0);
+        for (int id = 0; id < files.size(); id++) {
+            Path file = files.get(id);
+            String source = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+            Map<String, Integer> resolved = new LinkedHashMap<>();
+            if (!isJson(file)) {
+                for (String specifier : NpmDependencyExtractor.extractSpecifiers(source)) {
+                    Path target = resolveSpecifier(dir, entry, file.getParent(), pkg, specifier);
+                    if (target == null) continue;
+                    Integer targetId = ids.get(target);
+                    if (targetId == null) {
+                        targetId = files.size();
+                        files.add(target);
+                        ids.put(target, targetId);
+                    }
+                    resolved.put(specifier, targetId);
+                }
+            }
+            sources.add(source);
+            links.add(resolved);
+        }
+
+        Files.writeString(dir.resolve(BUNDLE_FILE), render(dir, pkg, files, links, sources));
+        return files.size();
+    }
+
+    /** The file a require of {@code specifier} from a file in {@code from} loads, if it is inside the package. */
+    private static Path resolveSpecifier(Path dir, Path entry, Path from, String pkg, String specifier) {
+        Path base;
+        if (specifier.equals(".") || specifier.equals("..")
+                || specifier.startsWith("./") || specifier.startsWith("../")) {
+            base = from.resolve(specifier).normalize();
+        } else if (specifier.equals(pkg)) {
+            return entry;
+        } else if (specifier.startsWith(pkg + "/")) {
+            base = dir.resolve(specifier.substring(pkg.length() + 1)).normalize();
+        } else {
+            return null;    // another package, a builtin or an absolute path
+        }
+        return base.startsWith(dir) ? resolve(dir, base) : null;
+    }
+
+    /** Node.js LOAD_AS_FILE, then LOAD_AS_DIRECTORY; ES modules and native addons do not resolve. */
+    private static Path resolve(Path dir, Path base) {
+        Path file = loadAsFile(base);
+        if (file == null && Files.isDirectory(base)) {
+            Path packageJson = base.resolve("package.json");
+            if (!base.equals(dir) && Files.isRegularFile(packageJson)) {
+                try {
+                    String main = new JSONObject(Files.readString(packageJson)).optString("main", "");
+                    if (!main.isEmpty()) {
+                        Path mainPath = base.resolve(main).normalize();
+                        if (mainPath.startsWith(dir)) {
+                            file = loadAsFile(mainPath);
+                            if (file == null) file = loadIndex(mainPath);
+                        }
+                    }
+                } catch (IOException | JSONException e) {
+                    // unreadable package.json: fall back to the index file like Node.js
+                }
+            }
+            if (file == null) file = loadIndex(base);
+        }
+        if (file == null) return null;
+        String name = file.getFileName().toString();
+        return name.endsWith(".mjs") || name.endsWith(".node") ? null : file;
+    }
+
+    private static Path loadAsFile(Path base) {
+        if (Files.isRegularFile(base)) return base;
+        for (String extension : EXTENSIONS) {
+            Path candidate = base.resolveSibling(base.getFileName() + extension);
+            if (Files.isRegularFile(candidate)) return candidate;
+        }
+        return null;
+    }
+
+    private static Path loadIndex(Path base) {
+        for (String extension : EXTENSIONS) {
+            Path candidate = base.resolve("index" + extension);
+            if (Files.isRegularFile(candidate)) return candidate;
+        }
+        return null;
+    }
+
+    private static boolean isJson(Path file) {
+        return file.getFileName().toString().endsWith(".json");
+    }
+
+    /**
+     * The bundle: a table of module functions, the resolved links of each
+     * module and a loader with Node.js semantics (one instance per module,
+     * cycles see the partially filled {@code module.exports}) that exports
+     * the entry module. Loading happens inside each module's {@code require},
+     * so a chain of nested requires costs two guest frames per level.
+     */
+    private static String render(Path dir, String pkg, List<Path> files, List<Map<String, Integer>> links,
+                                 List<String> sources) {
+        StringBuilder out = new StringBuilder(sources.stream().mapToInt(String::length).sum() + 1024 * files.size());
+        out.append("// ").append(pkg).append(": ").append(files.size())
+                .append(" modules pre-linked at install time. Generated, do not edit.\n");
+        out.append("const __bundleFiles = [");
+        for (int id = 0; id < files.size(); id++) {
+            if (id > 0) out.append(", ");
+            out.append(JSONObject.quote(dir.relativize(files.get(id)).toString().replace('\\', '/')));
+        }
+        out.append("];\nconst __bundleLinks = [");
+        for (int id = 0; id < files.size(); id++) {
+            out.append(id > 0 ? ",\n  {" : "\n  {");
+            String separator = "";
+            for (Map.Entry<String, Integer> link : links.get(id).entrySet()) {
+                out.append(separator).append(JSONObject.quote(link.getKey())).append(": ").append(link.getValue());
+                separator = ", ";
+            }
+            out.append('}');
+        }
+        out.append("];\nconst __bundleModules = [");
+        for (int id = 0; id < files.size(); id++) {
+            out.append(id > 0 ? ",\n" : "\n");
+            out.append("// ").append(files.get(id).getFileName()).append('\n');
+            out.append("function (exports, require, module, __filename, __dirname) {\n");
+            String source = sources.get(id);
+            if (isJson(files.get(id))) {
+                out.append("module.exports = ").append(source.strip()).append(";\n}");
+            } else if (source.contains("this")) {
+                // top-level this is module.exports; only modules that may use it pay for the extra call
+                out.append("return (function () {\n").append(stripPreamble(source)).append("\n}).call(exports);\n}");
+            } else {
+                out.append(stripPreamble(source)).append("\n}");
+            }
+        }
+        out.append("""
+                ];
+                const __bundleCache = [];
+                function __bundleRequire(links, dirname) {
+                  return specifier => {
+                    if (!Object.prototype.hasOwnProperty.call(links, specifier)) {
+                      return require(specifier.startsWith('.') ? dirname + '/' + specifier : specifier);
+                    }
+                    const id = links[specifier];
+                    let module = __bundleCache[id];
+                    if (!module) {
+                      const filename = __dirname + '/' + __bundleFiles[id];
+                      const moduleDirname = filename.slice(0, filename.lastIndexOf('/'));
+                      module = __bundleCache[id] = { id: filename, filename, loaded: false, exports: {} };
+                      __bundleModules[id](module.exports, __bundleRequire(__bundleLinks[id], moduleDirname),
+                          module, filename, moduleDirname);
+                      module.loaded = true;
+                    }
+                    return module.exports;
+                  };
+                }
+                module.exports = __bundleRequire({ '.': 0 }, __dirname)('.');
+                """);
+        return out.toString();
+    }
+
+    /** Drops a byte order mark and turns a {@code #!} line into a comment, keeping line numbers. */
+    private static String stripPreamble(String source) {
+        if (!source.isEmpty() && source.charAt(0) == '\uFEFF') source = source.substring(1);
+        return source.startsWith("#!") ? "//" + source.substring(2) : source;
+    }
+}
@@ -1,150 +1,400 @@
 package org.apiwiz.scriptingengine.utils;
 
-import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
-import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
-import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.json.JSONArray;
 import org.json.JSONObject;
 
 import java.io.*;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.net.URI;
 import java.nio.file.*;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
 
 /**
  * Downloads NPM packages entirely in‐JVM into deps/js/node_modules,
  * patches them for GraalVM ES‑module/CommonJS loading, and installs
- * their dependencies recursively.
+ * their dependencies recursively. Installed packages are recorded in
+ * a {@link NpmPackageIndex} and skipped on later requests.
+ *
+ * <p>The dependency graph is resolved concurrently on virtual threads:
+ * as soon as a package's metadata arrives its dependencies' metadata is
+ * requested, ahead of (and in parallel with) its own tarball download.
+ * At most {@code concurrency} packages are worked on at once, and at most
+ * {@code perHostConcurrency} HTTP requests go to any one host.
+ *
+ * <p>Concurrent requests needing the same package@version share a single
+ * install, and every package is extracted and patched in a staging folder
+ * that is renamed into node_modules only when complete.
+ *
+ * <p>With {@code prelink} on, each CommonJS package is pre-linked into a
+ * single bundle at install time (see {@link NpmBundler}) instead of having
+ * its entry renamed to {@code .mjs}, so that both {@code import} and
+ * {@code require} load one file and files inside the package keep working
+ * as CommonJS.
  */
 public class NpmDependencyDownloader {
 
     public static final String DOWNLOAD_DIR   = "deps/js";
-    private static final String NODE_MODULES  = DOWNLOAD_DIR + "/node_modules";
-    private static final String NPM_REGISTRY  = "https://registry.npmjs.org/%s";
+    public static final String NPM_REGISTRY   = "https://registry.npmjs.org/";
+    /** npm's abbreviated “corgi” document: only what installs need, a fraction of the full packument. */
+    private static final String ABBREVIATED_METADATA =
+            "application/vnd.npm.install-v1+json; q=1.0, application/json; q=0.8";
+
+    private final Path nodeModules;
+    private final RegistryClient registry;
+    private final String registryUrl;
+    private final NpmPackageIndex index;
+    private final StagingArea staging;
+    private final SingleFlight<String> installs = new SingleFlight<>();
+    private final Semaphore workers;
+    private final int perHostConcurrency;
+    private final Map<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+    private final boolean prelink;
+    private final List<Consumer<Path>> publishListeners = new CopyOnWriteArrayList<>();
+
+    /** Version, dist information and dependencies of a package's “latest” release. */
+    private record PackageDist(String version, String tarball, String integrity, List<String> dependencies) {}
+
+    public NpmDependencyDownloader(Path root,
+                                   RegistryClient registry,
+                                   String registryUrl,
+                                   int concurrency,
+                                   int perHostConcurrency) {
+        this(root, registry, registryUrl, concurrency, perHostConcurrency, false);
+    }
+
+    public NpmDependencyDownloader(Path root,
+                                   RegistryClient registry,
+                                   String registryUrl,
+                                   int concurrency,
+                                   int perHostConcurrency,
+                                   boolean prelink) {
+        this.nodeModules = root.resolve("node_modules");
+        this.registry = registry;
+        this.registryUrl = registryUrl.endsWith("/") ? registryUrl : registryUrl + "/";
+        this.index = new NpmPackageIndex(root);
+        this.staging = new StagingArea(root);
+        this.workers = new Semaphore(Math.max(1, concurrency));
+        this.perHostConcurrency = Math.max(1, perHostConcurrency);
+        this.prelink = prelink;
+    }
+
+    /** Registers a callback told about every package folder an install publishes into node_modules. */
+    public void addPublishListener(Consumer<Path> listener) {
+        publishListeners.add(listener);
+    }
+
+    /** The installed-package index, for lookups, invalidation and refresh. */
+    public NpmPackageIndex packageIndex() {
+        return index;
+    }
 
     /**
      * Installs the given packages (and all their transitive dependencies)
-     * into deps/js/node_modules.
+     * into deps/js/node_modules. Packages already recorded in the index,
+     * together with their dependencies, are not fetched again.
+     *
+     * @return the packages installed by this call, sorted by name
      */
-    public static void installDependencies(Set<String> packages) throws IOException {
+    public List<String> installDependencies(Set<String> packages) throws IOException {
+        if (packages.stream().allMatch(index::isSatisfied)) {
+            return List.of();
+        }
+
         // ensure root node_modules folder exists
-        Files.createDirectories(Paths.get(NODE_MODULES));
+        Files.createDirectories(nodeModules);
+
+        Resolution resolution = new Resolution();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            resolution.executor = executor;
+            new TreeSet<>(packages).forEach(resolution::resolve);
+            resolution.pending.arriveAndAwaitAdvance();
+        }
+
+        if (!resolution.failures.isEmpty()) {
+            Iterator<Exception> it = resolution.failures.iterator();
+            Exception first = it.next();
+            IOException failure = first instanceof IOException io ? io
+                    : new IOException("Failed to install dependencies: " + first.getMessage(), first);
+            it.forEachRemaining(failure::addSuppressed);
+            throw failure;
+        }
+        // every requested package now has its whole closure on disk
+        index.markSatisfied(packages);
+        return List.copyOf(new TreeSet<>(resolution.installed));
+    }
 
-        // BFS over dependencies
-        Deque<String> queue   = new ArrayDeque<>(packages);
-        Set<String> processed = new HashSet<>();
+    /** State of a single {@link #installDependencies} call. */
+    private final class Resolution {
+        private final Set<String> processed = ConcurrentHashMap.newKeySet();
+        private final Queue<String> installed = new ConcurrentLinkedQueue<>();
+        private final Queue<Exception> failures = new ConcurrentLinkedQueue<>();
+        private final Phaser pending = new Phaser(1);
+        private ExecutorService executor;
 
-        while (!queue.isEmpty()) {
-            String pkg = queue.removeFirst();
+        /** Schedules a package (once per call) unless it is already installed. */
+        void resolve(String pkg) {
             if (!processed.add(pkg)) {
-                continue;   // already installed
+                return;     // already handled in this run
             }
+            Optional<NpmPackageIndex.Entry> entry = index.get(pkg);
+            if (entry.isPresent() && Files.isDirectory(moduleDir(pkg))) {
+                // installed earlier: only make sure its own dependencies are present
+                entry.get().dependencies().forEach(this::resolve);
+                return;
+            }
+            submit(() -> {
+                // 1) metadata first; dependencies are known before the tarball is fetched
+                PackageDist dist = fetchPackageDist(pkg);
+                dist.dependencies().forEach(this::resolve);
+                // 2) download, extract, patch and record — once across concurrent requests
+                if (installShared(pkg, dist)) {
+                    installed.add(pkg);
+                }
+            });
+        }
 
-            System.out.println("Installing: " + pkg);
-            File downloaded = null;
-            File moduleDir  = new File(NODE_MODULES, pkg);
-
-            try {
-                // 1) fetch tarball URL & download
-                String tarballUrl = fetchTarballUrl(pkg);
-                downloaded = downloadFile(tarballUrl, NODE_MODULES);
-
-                // 2) extract only package/ → moduleDir
-                extractTgz(downloaded, moduleDir);
-
-                // 3) patch package.json (remove exports/browser + rename main→.mjs)
-                patchPackageJson(moduleDir);
-
-                // 4) read its dependencies and enqueue
-                JSONObject json = new JSONObject(Files.readString(
-                        Paths.get(moduleDir.getAbsolutePath(), "package.json")));
-                JSONObject deps = json.optJSONObject("dependencies");
-                if (deps != null) {
-                    for (String dep : deps.keySet()) {
-                        if (!processed.contains(dep)) {
-                            queue.add(dep);
-                        }
+        private void submit(Task task) {
+            pending.register();
+            executor.execute(() -> {
+                try {
+                    workers.acquire();
+                    try {
+                        task.run();
+                    } finally {
+                        workers.release();
                     }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    failures.add(e);
+                } catch (Exception e) {
+                    failures.add(e);
+                } finally {
+                    pending.arriveAndDeregister();
                 }
+            });
+        }
+    }
 
-                // 5) verify the entry file exists
-                verifyEntry(moduleDir);
-                System.out.println("Installed: " + pkg);
+    @FunctionalInterface
+    private interface Task {
+        void run() throws Exception;
+    }
+
+    /**
+     * Installs pkg@version unless another request is already doing so, in
+     * which case this waits for and shares that install's outcome.
+     *
+     * @return true if this call performed the install
+     */
+    private boolean installShared(String pkg, PackageDist dist) throws IOException, InterruptedException {
+        SingleFlight.Result<Boolean> result = installs.run(pkg + "@" + dist.version(), () -> {
+            Optional<NpmPackageIndex.Entry> entry = index.get(pkg);
+            if (entry.isPresent() && entry.get().version().equals(dist.version())
+                    && Files.isDirectory(moduleDir(pkg))) {
+                return false;   // finished by a request that just completed
+            }
+            install(pkg, dist);
+            return true;
+        });
+        return result.leader() && result.value();
+    }
 
+    private void install(String pkg, PackageDist dist) throws IOException, InterruptedException {
+        System.out.println("Installing: " + pkg);
+        Path stagingDir = staging.newDirectory();
+        try {
+            // 1) stream the tarball straight into the staged module folder (only package/),
+            //    verifying its integrity on the way through
+            Path staged = stagingDir.resolve("package");
+            Semaphore host = hostPermits(dist.tarball());
+            host.acquire();
+            long start = System.nanoTime();
+            try (InputStream body = registry.open(dist.tarball())) {
+                Integrity integrity = Integrity.parse(dist.integrity());
+                DigestInputStream digest = new DigestInputStream(body, integrity.newDigest());
+                ArchiveExtractor.extractTarGz(digest, staged, "package/");
+                integrity.verify(digest.getMessageDigest(), pkg);
+                registry.metrics().extracted("npm", System.nanoTime() - start);
             } finally {
-                // clean up .tgz
-                if (downloaded != null && downloaded.exists() && !downloaded.delete()) {
-                    System.err.println("Warning: failed to delete " + downloaded.getAbsolutePath());
-                }
+                host.release();
             }
+
+            // 2) pre-link into one bundle, or patch package.json (remove exports/browser + rename main→.mjs)
+            if (!prelink || !prelink(staged, pkg)) {
+                patchPackageJson(staged.toFile());
+            }
+
+            // 3) verify the entry file exists, flush once, swap the module into place, then record it
+            String entry = verifyEntry(staged.toFile());
+            ArchiveExtractor.syncTree(staged);
+            staging.publish(staged, moduleDir(pkg));
+            publishListeners.forEach(listener -> listener.accept(moduleDir(pkg)));
+            index.record(new NpmPackageIndex.Entry(pkg, dist.version(), dist.integrity(), entry, dist.dependencies()));
+            registry.metrics().installed("npm");
+            System.out.println("Installed: " + pkg);
+        } finally {
+            StagingArea.deleteRecursively(stagingDir);
         }
     }
 
-    /** Fetches the “latest” tarball URL for a package from the npm registry. */
-    private static String fetchTarballUrl(String pkg) throws IOException {
-        URL url = new URL(String.format(NPM_REGISTRY, pkg));
-        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-        conn.setRequestProperty("Accept", "application/json");
-        try (BufferedReader in = new BufferedReader(new InputStreamReader(conn.getInputStream()))) {
-            StringBuilder sb = new StringBuilder();
-            String line;
-            while ((line = in.readLine()) != null) {
-                sb.append(line);
+    /** An SRI string as found in dist.integrity, e.g. {@code sha512-<base64>}. */
+    private record Integrity(String algorithm, byte[] expected) {
+
+        static Integrity parse(String sri) {
+            for (String candidate : sri.trim().split("\\s+")) {
+                int dash = candidate.indexOf('-');
+                if (dash < 0) continue;
+                String algorithm = switch (candidate.substring(0, dash)) {
+                    case "sha512" -> "SHA-512";
+                    case "sha384" -> "SHA-384";
+                    case "sha256" -> "SHA-256";
+                    case "sha1" -> "SHA-1";
+                    default -> null;
+                };
+                if (algorithm != null) {
+                    return new Integrity(algorithm, Base64.getDecoder().decode(candidate.substring(dash + 1)));
+                }
+            }
+            return new Integrity("SHA-512", null);   // nothing to verify against
+        }
+
+        MessageDigest newDigest() {
+            try {
+                return MessageDigest.getInstance(algorithm);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(algorithm + " not available", e);
+            }
+        }
+
+        void verify(MessageDigest digest, String pkg) throws IOException {
+            if (expected != null && !MessageDigest.isEqual(expected, digest.digest())) {
+                throw new IOException("Integrity check failed for " + pkg);
             }
-            JSONObject root = new JSONObject(sb.toString());
-            String latest = root.getJSONObject("dist-tags").getString("latest");
-            return root.getJSONObject("versions")
-                    .getJSONObject(latest)
-                    .getJSONObject("dist")
-                    .getString("tarball");
         }
     }
 
-    /** Downloads a URL into the given target directory, returns the downloaded File. */
-    private static File downloadFile(String urlString, String targetDir) throws IOException {
-        URL url = new URL(urlString);
-        String name = Paths.get(url.getPath()).getFileName().toString();
-        File out = new File(targetDir, name);
-        try (InputStream in = url.openStream();
-             FileOutputStream fos = new FileOutputStream(out)) {
-            in.transferTo(fos);
+    private Path moduleDir(String pkg) {
+        return nodeModules.resolve(pkg);
+    }
+
+    /** Fetches the “latest” version, tarball URL, integrity and dependencies of a package from the registry. */
+    private PackageDist fetchPackageDist(String pkg) throws IOException, InterruptedException {
+        String url = registryUrl + pkg.replace("/", "%2F");
+        Semaphore host = hostPermits(url);
+        host.acquire();
+        JSONObject latest;
+        try {
+            latest = registry.fetchMetadata(pkg, url, ABBREVIATED_METADATA, NpmDependencyDownloader::extractLatest);
+        } finally {
+            host.release();
         }
-        return out;
+        List<String> depNames = new ArrayList<>();
+        JSONArray deps = latest.getJSONArray("dependencies");
+        for (int i = 0; i < deps.length(); i++) depNames.add(deps.getString(i));
+        return new PackageDist(latest.getString("version"), latest.getString("tarball"),
+                latest.optString("integrity", ""), depNames);
     }
 
     /**
-     * Extracts only entries under “package/” from the .tgz,
-     * stripping that prefix so contents land directly in targetDir.
+     * Streams a packument and keeps only the “latest” version's tarball,
+     * integrity and dependency names; every other version is skipped
+     * without being parsed into a tree.
      */
-    private static void extractTgz(File tarGzFile, File targetDir) throws IOException {
-        final String PREFIX = "package/";
-        try (FileInputStream fis = new FileInputStream(tarGzFile);
-             GzipCompressorInputStream gcis = new GzipCompressorInputStream(fis);
-             TarArchiveInputStream tais = new TarArchiveInputStream(gcis)) {
-
-            TarArchiveEntry entry;
-            while ((entry = tais.getNextTarEntry()) != null) {
-                String name = entry.getName();
-                if (!name.startsWith(PREFIX)) continue;
-
-                String rel = name.substring(PREFIX.length());
-                File out = new File(targetDir, rel);
-                if (entry.isDirectory()) {
-                    if (!out.exists() && !out.mkdirs()) {
-                        throw new IOException("Could not create directory: " + out);
-                    }
-                } else {
-                    File parent = out.getParentFile();
-                    if (parent != null && !parent.exists() && !parent.mkdirs()) {
-                        throw new IOException("Could not create directory: " + parent);
+    static JSONObject extractLatest(JsonParser parser) throws IOException {
+        String latest = null;
+        Map<String, JSONObject> seen = new HashMap<>();   // only used if versions precede dist-tags
+        if (parser.nextToken() != JsonToken.START_OBJECT) throw new IOException("Malformed registry document");
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            if (field.equals("dist-tags")) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String tag = parser.currentName();
+                    parser.nextToken();
+                    if (tag.equals("latest")) latest = parser.getText();
+                    else parser.skipChildren();
+                }
+            } else if (field.equals("versions")) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String version = parser.currentName();
+                    parser.nextToken();
+                    if (latest == null || latest.equals(version)) {
+                        seen.put(version, readVersion(parser, version));
+                    } else {
+                        parser.skipChildren();
                     }
-                    try (FileOutputStream fos = new FileOutputStream(out)) {
-                        tais.transferTo(fos);
-                        fos.getFD().sync();
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        JSONObject result = latest != null ? seen.get(latest) : null;
+        if (result == null) throw new IOException("No “latest” release in registry document");
+        return result;
+    }
+
+    private static JSONObject readVersion(JsonParser parser, String version) throws IOException {
+        JSONObject result = new JSONObject().put("version", version);
+        Set<String> deps = new TreeSet<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            if (field.equals("dependencies")) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    deps.add(parser.currentName());
+                    parser.nextToken();
+                    parser.skipChildren();
+                }
+            } else if (field.equals("dist")) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String distField = parser.currentName();
+                    parser.nextToken();
+                    if (distField.equals("tarball") || distField.equals("integrity")) {
+                        result.put(distField, parser.getText());
+                    } else {
+                        parser.skipChildren();
                     }
                 }
+            } else {
+                parser.skipChildren();
             }
         }
+        return result.put("dependencies", new JSONArray(deps));
+    }
+
+    private Semaphore hostPermits(String url) {
+        URI uri = URI.create(url);
+        String host = uri.getHost() + ":" + uri.getPort();
+        return hostPermits.computeIfAbsent(host, h -> new Semaphore(perHostConcurrency));
+    }
+
+    /**
+     * Bundles a staged package and points its package.json at the bundle.
+     *
+     * @return false if the package cannot be pre-linked and needs patching instead
+     */
+    private boolean prelink(Path moduleDir, String pkg) throws IOException {
+        Path pkgFile = moduleDir.resolve("package.json");
+        if (!Files.exists(pkgFile)) throw new IOException("package.json missing in " + moduleDir);
+
+        long start = System.nanoTime();
+        JSONObject json = new JSONObject(Files.readString(pkgFile));
+        int modules = NpmBundler.bundle(moduleDir, pkg, json);
+        if (modules == 0) return false;
+
+        json.remove("exports");
+        json.remove("browser");
+        json.put("main", NpmBundler.BUNDLE_FILE);
+        Files.writeString(pkgFile, json.toString(2), StandardOpenOption.TRUNCATE_EXISTING);
+        registry.metrics().prelinked("npm", System.nanoTime() - start);
+        System.out.println("Pre-linked " + modules + " modules of " + pkg);
+        return true;
     }
 
     /**
@@ -160,7 +410,7 @@ public class NpmDependencyDownloader {
         json.remove("browser");
 
         // rename “main” .js → .mjs
-        String main = json.optString("main", "index.js");
+        String main = NpmPackageIndex.entryOf(json);
         if (main.endsWith(".js")) {
             String esmMain = main.replaceAll("\\.js$", ".mjs");
             File oldF = new File(moduleDir, main);
@@ -182,14 +432,15 @@ public class NpmDependencyDownloader {
                 StandardOpenOption.TRUNCATE_EXISTING);
     }
 
-    /** Ensures that the “main” entry file actually exists in the module folder. */
-    private static void verifyEntry(File moduleDir) throws IOException {
+    /** Ensures that the “main” entry file actually exists in the module folder and returns it. */
+    private static String verifyEntry(File moduleDir) throws IOException {
         File pkgFile = new File(moduleDir, "package.json");
         JSONObject json = new JSONObject(Files.readString(pkgFile.toPath()));
-        String entry = json.optString("main", "index.mjs");
+        String entry = NpmPackageIndex.entryOf(json);
         File entryFile = new File(moduleDir, entry);
         if (!entryFile.exists()) {
             throw new IOException("Entry file '" + entry + "' missing in " + moduleDir);
         }
+        return entry;
     }
 }
@@ -0,0 +1,192 @@
+package org.apiwiz.scriptingengine.utils;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persistent index of the packages installed under node_modules.
+ *
+ * <p>Lookups are served from memory; the index is written through to
+ * {@code <root>/.package-index.json} on every change so it survives
+ * restarts. A missing or unreadable index file is rebuilt from the
+ * package.json files found on disk.
+ *
+ * <p>Besides the entries, the index remembers which packages were last
+ * installed together with their whole dependency closure, so
+ * {@link #isSatisfied} is a single lookup. Changing the dependencies of an
+ * installed package forgets those flags; the next request walks the index
+ * once and sets them again.
+ */
+public class NpmPackageIndex {
+
+    static final String INDEX_FILE = ".package-index.json";
+    /** Entry file Node.js loads for a package without a “main”. */
+    static final String DEFAULT_ENTRY = "index.js";
+
+    /** One installed package, as recorded after a successful install. */
+    public record Entry(String name, String version, String integrity, String entry, List<String> dependencies) {
+    }
+
+    private final Path indexFile;
+    private final Path nodeModules;
+    // replaced as a whole on refresh, so readers never see a half-built index
+    private volatile Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private volatile Set<String> complete = ConcurrentHashMap.newKeySet();
+
+    public NpmPackageIndex(Path root) {
+        this.indexFile = root.resolve(INDEX_FILE);
+        this.nodeModules = root.resolve("node_modules");
+        load();
+    }
+
+    /** The entry file of a package, as Node.js resolves it from its package.json. */
+    static String entryOf(JSONObject packageJson) {
+        return packageJson.optString("main", DEFAULT_ENTRY);
+    }
+
+    public Optional<Entry> get(String name) {
+        return Optional.ofNullable(entries.get(name));
+    }
+
+    /**
+     * True when the package was installed together with all of its
+     * transitive dependencies, i.e. nothing has to be fetched for it.
+     */
+    public boolean isSatisfied(String name) {
+        return complete.contains(name);
+    }
+
+    /** Records that the packages and their whole dependency closures are installed. */
+    public synchronized void markSatisfied(Collection<String> names) throws IOException {
+        Map<String, Entry> current = entries;
+        if (complete.addAll(names.stream().filter(current::containsKey).toList())) persist();
+    }
+
+    public synchronized void record(Entry entry) throws IOException {
+        Entry previous = entries.put(entry.name(), entry);
+        if (previous != null && !previous.dependencies().equals(entry.dependencies())) complete.clear();
+        persist();
+    }
+
+    /** Forgets a package so that the next request installs it again. */
+    public synchronized void invalidate(String name) throws IOException {
+        if (entries.remove(name) != null) {
+            complete.clear();
+            persist();
+        }
+    }
+
+    public synchronized void invalidateAll() throws IOException {
+        entries = new ConcurrentHashMap<>();
+        complete = ConcurrentHashMap.newKeySet();
+        persist();
+    }
+
+    /** Rebuilds the index from the package.json files currently in node_modules. */
+    public synchronized void refresh() throws IOException {
+        Map<String, Entry> scanned = new ConcurrentHashMap<>();
+        File[] dirs = nodeModules.toFile().listFiles(File::isDirectory);
+        for (File dir : dirs != null ? dirs : new File[0]) {
+            if (dir.getName().startsWith("@")) {
+                File[] scoped = dir.listFiles(File::isDirectory);
+                for (File sub : scoped != null ? scoped : new File[0]) {
+                    scan(sub, dir.getName() + "/" + sub.getName(), scanned);
+                }
+            } else {
+                scan(dir, dir.getName(), scanned);
+            }
+        }
+        Set<String> closed = ConcurrentHashMap.newKeySet();
+        for (String name : scanned.keySet()) {
+            if (closureInstalled(name, scanned)) closed.add(name);
+        }
+        complete = closed;
+        entries = scanned;
+        persist();
+    }
+
+    private static boolean closureInstalled(String name, Map<String, Entry> entries) {
+        Deque<String> pending = new ArrayDeque<>(List.of(name));
+        Set<String> seen = new HashSet<>();
+        while (!pending.isEmpty()) {
+            String next = pending.removeFirst();
+            if (!seen.add(next)) continue;
+            Entry entry = entries.get(next);
+            if (entry == null) return false;
+            pending.addAll(entry.dependencies());
+        }
+        return true;
+    }
+
+    private void scan(File moduleDir, String name, Map<String, Entry> into) {
+        Path pkgFile = moduleDir.toPath().resolve("package.json");
+        if (!Files.isRegularFile(pkgFile)) return;
+        try {
+            JSONObject json = new JSONObject(Files.readString(pkgFile));
+            Entry previous = entries.get(name);
+            JSONObject deps = json.optJSONObject("dependencies");
+            into.put(name, new Entry(
+                    name,
+                    json.optString("version", ""),
+                    previous != null ? previous.integrity() : "",
+                    entryOf(json),
+                    deps != null ? new ArrayList<>(new TreeSet<>(deps.keySet())) : List.of()));
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Warning: skipping unreadable " + pkgFile + ": " + e.getMessage());
+        }
+    }
+
+    private void load() {
+        if (!Files.isRegularFile(indexFile)) {
+            try {
+                refresh();
+            } catch (IOException e) {
+                System.err.println("Warning: could not build package index: " + e.getMessage());
+            }
+            return;
+        }
+        try {
+            JSONObject root = new JSONObject(Files.readString(indexFile));
+            for (String name : root.keySet()) {
+                JSONObject e = root.getJSONObject(name);
+                List<String> deps = new ArrayList<>();
+                JSONArray arr = e.optJSONArray("dependencies");
+                if (arr != null) for (int i = 0; i < arr.length(); i++) deps.add(arr.getString(i));
+                entries.put(name, new Entry(name, e.optString("version"), e.optString("integrity"),
+                        e.optString("entry"), deps));
+                if (e.optBoolean("complete")) complete.add(name);
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Warning: package index unreadable, rebuilding: " + e.getMessage());
+            entries = new ConcurrentHashMap<>();
+            complete = ConcurrentHashMap.newKeySet();
+            try {
+                refresh();
+            } catch (IOException ex) {
+                System.err.println("Warning: could not build package index: " + ex.getMessage());
+            }
+        }
+    }
+
+    private synchronized void persist() throws IOException {
+        JSONObject root = new JSONObject();
+        for (Entry entry : new TreeMap<>(entries).values()) {
+            root.put(entry.name(), new JSONObject()
+                    .put("version", entry.version())
+                    .put("integrity", entry.integrity())
+                    .put("entry", entry.entry())
+                    .put("dependencies", new JSONArray(entry.dependencies()))
+                    .put("complete", complete.contains(entry.name())));
+        }
+        Files.createDirectories(indexFile.getParent());
+        Path tmp = indexFile.resolveSibling(INDEX_FILE + ".tmp");
+        Files.writeString(tmp, root.toString(2));
+        Files.move(tmp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -1,169 +1,343 @@
 package org.apiwiz.scriptingengine.utils;
 
-import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
-import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
-import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.apiwiz.scriptingengine.exception.PackageNotFoundException;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
 import java.io.*;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
+/**
+ * Downloads PyPI distributions into deps/python. Each archive is unpacked
+ * into a staging folder first and its top-level entries are then renamed
+ * into place; entries that are already installed are left untouched so
+ * running scripts never see them change. Distributions the
+ * {@link PythonPathIndex} knows as installed are skipped without any
+ * request. Concurrent requests for the same package share one download.
+ * Published entries update the index instead of triggering a rescan.
+ * {@link #upgradeDependencies} is the one path that replaces installed
+ * entries.
+ *
+ * <p>Import names are mapped to distribution names through
+ * {@link PythonDistributions}. Names PyPI does not know are remembered for
+ * {@code notFoundTtl} and skipped rather than looked up on every request;
+ * the script then fails with Python's own {@code ModuleNotFoundError} if
+ * the module really is missing.
+ *
+ * <p>With a {@link PythonBytecodeCompiler}, the sources of each
+ * distribution are compiled to bytecode caches in the staging folder, so
+ * they are published together with the sources they belong to. The cache
+ * tag they were compiled for is recorded in {@value #BYTECODE_TAG_FILE};
+ * {@link #compileInstalled()} brings an existing tree up to date when it
+ * changes.
+ */
 public class PyPIDependencyDownloader {
 
-    private static final String DOWNLOAD_DIR = "deps/python";
-    private static final String PYPI_URL = "https://pypi.org/pypi/%s/json";
+    public static final String DOWNLOAD_DIR = "deps/python";
+    public static final String PYPI_URL = "https://pypi.org/pypi/";
+    /** Cache tag of the interpreter the installed bytecode caches were compiled for. */
+    public static final String BYTECODE_TAG_FILE = ".bytecode-tag";
 
-    public static void installDependencies(Set<String> packages) throws IOException {
-        new File(DOWNLOAD_DIR).mkdirs();
+    private final Path root;
+    private final RegistryClient registry;
+    private final String indexUrl;
+    private final StagingArea staging;
+    private final PythonPathIndex pathIndex;
+    private final SingleFlight<String> installs = new SingleFlight<>();
+    private final PythonDistributions distributions;
+    private final Duration notFoundTtl;
+    /** lower-cased distribution name → System.nanoTime() until which it is known to be missing */
+    private final Map<String, Long> notFound = new ConcurrentHashMap<>();
+    private final List<Consumer<Path>> publishListeners = new CopyOnWriteArrayList<>();
+    /** null: sources only */
+    private final PythonBytecodeCompiler compiler;
 
-        for (String pkg : packages) {
-            System.out.println("Downloading: " + pkg);
-            String downloadUrl = getPackageDownloadUrl(pkg);
-            File downloadedFile = downloadFile(downloadUrl, DOWNLOAD_DIR);
-
-            if (downloadedFile.getName().endsWith(".zip")) {
-                unzip(downloadedFile, new File(DOWNLOAD_DIR));
-            } else if (downloadedFile.getName().endsWith(".tar.gz")) {
-                untar(downloadedFile, new File(DOWNLOAD_DIR));
-            } else if (downloadedFile.getName().endsWith(".zip") || downloadedFile.getName().endsWith(".whl")) {
-                unzip(downloadedFile, new File(DOWNLOAD_DIR));
-            } else {
-                throw new IOException("Unsupported archive format: " + downloadedFile.getName());
-            }
-            System.out.println("Installed: " + downloadedFile);
+    /**
+     * @param indexUrl base of the PyPI JSON API; {@code <name>/json} is appended
+     */
+    public PyPIDependencyDownloader(Path root, RegistryClient registry, String indexUrl) {
+        this(root, registry, indexUrl, new PythonDistributions(), Duration.ofMinutes(10));
+    }
+
+    /**
+     * @param distributions maps import names to distribution names
+     * @param notFoundTtl   how long a distribution PyPI does not know is skipped
+     */
+    public PyPIDependencyDownloader(Path root, RegistryClient registry, String indexUrl,
+                                    PythonDistributions distributions, Duration notFoundTtl) {
+        this(root, registry, indexUrl, distributions, notFoundTtl, null);
+    }
+
+    /**
+     * @param compiler compiles installed sources to bytecode caches, or null to install sources only
+     */
+    public PyPIDependencyDownloader(Path root, RegistryClient registry, String indexUrl,
+                                    PythonDistributions distributions, Duration notFoundTtl,
+                                    PythonBytecodeCompiler compiler) {
+        this.root = root;
+        this.registry = registry;
+        this.indexUrl = indexUrl.endsWith("/") ? indexUrl : indexUrl + "/";
+        this.staging = new StagingArea(root);
+        this.pathIndex = new PythonPathIndex(root);
+        this.distributions = distributions;
+        this.notFoundTtl = notFoundTtl;
+        this.compiler = compiler;
+    }
+
+    /**
+     * Installs the distributions providing the given top-level import names.
+     */
+    public void installDependencies(Set<String> modules) throws IOException {
+        for (String module : modules) {
+            String pkg = distributions.distributionFor(module);
+            if (!pathIndex.isInstalled(pkg)) install(module, pkg, false);
         }
     }
 
-    private static String getPackageDownloadUrl(String packageName) throws IOException {
-        URL url = new URL(String.format(PYPI_URL, packageName));
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-        connection.setRequestProperty("Accept", "application/json");
+    /**
+     * Installs the latest release of the distributions providing the given
+     * top-level import names, replacing whatever version is installed. The
+     * new entries come with freshly compiled bytecode caches and replace the
+     * old ones wholesale, so no cache of the previous sources survives; the
+     * old version's metadata folders are removed and pooled contexts, which
+     * may have imported the old code, are invalidated through the index.
+     */
+    public void upgradeDependencies(Set<String> modules) throws IOException {
+        for (String module : modules) {
+            install(module, distributions.distributionFor(module), true);
+        }
+    }
 
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream()))) {
-            StringBuilder jsonBuilder = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                jsonBuilder.append(line);
-            }
+    private void install(String module, String pkg, boolean replace) throws IOException {
+        String key = pkg.toLowerCase(Locale.ROOT);
+        if (isKnownMissing(key)) return;
 
-            JSONObject root = new JSONObject(jsonBuilder.toString());
-            JSONObject urlsByVersion = root.getJSONObject("releases");
-            String latestVersion = root.getJSONObject("info").getString("version");
+        Files.createDirectories(root);
+        try {
+            SingleFlight.Result<Void> result;
+            do {
+                result = installs.run(key, () -> {
+                    install(pkg, replace);
+                    return null;
+                });
+                // an upgrade must not settle for an install that was already running
+            } while (replace && !result.leader());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while installing " + pkg, e);
+        } catch (IOException e) {
+            if (!(e instanceof PackageNotFoundException || e.getCause() instanceof PackageNotFoundException)) throw e;
+            notFound.put(key, System.nanoTime() + notFoundTtl.toNanos());
+            System.err.println("No PyPI distribution '" + pkg + "' for import '" + module + "', skipping");
+        }
+    }
 
-            JSONArray files = urlsByVersion.getJSONArray(latestVersion);
+    private boolean isKnownMissing(String key) {
+        Long until = notFound.get(key);
+        if (until == null) return false;
+        if (until - System.nanoTime() > 0) return true;
+        notFound.remove(key, until);
+        return false;
+    }
 
-            for (int i = 0; i < files.length(); i++) {
-                JSONObject file = files.getJSONObject(i);
-                String pythonVersion = file.getString("python_version");
-                String urlStr = file.getString("url");
+    private void install(String pkg, boolean replace) throws IOException, InterruptedException {
+        System.out.println("Downloading: " + pkg);
+        Set<String> previous = replace ? pathIndex.entriesOf(pkg) : Set.of();
+        Path stagingDir = staging.newDirectory();
+        try {
+            String downloadUrl = getPackageDownloadUrl(pkg);
+            String fileName = Paths.get(URI.create(downloadUrl).getPath()).getFileName().toString();
+            Path extracted = stagingDir.resolve("extracted");
 
-                if ((pythonVersion.equals("py3") || pythonVersion.startsWith(">=3"))
-                        && (urlStr.endsWith(".tar.gz") || urlStr.endsWith(".whl") || urlStr.endsWith(".zip"))) {
-                    return urlStr;
+            // stream the archive straight from the response into the staging folder
+            long start = System.nanoTime();
+            try (InputStream body = registry.open(downloadUrl)) {
+                if (fileName.endsWith(".tar.gz")) {
+                    ArchiveExtractor.extractTarGz(body, extracted, null);
+                } else if (fileName.endsWith(".zip") || fileName.endsWith(".whl")) {
+                    ArchiveExtractor.extractZip(body, extracted);
+                } else {
+                    throw new IOException("Unsupported archive format: " + fileName);
                 }
             }
+            registry.metrics().extracted("pypi", System.nanoTime() - start);
+            compileBytecode(extracted, pkg);
+            ArchiveExtractor.syncTree(extracted);
 
-            // fallback to any format if none match
-            for (int i = 0; i < files.length(); i++) {
-                String urlStr = files.getJSONObject(i).getString("url");
-                if (urlStr.endsWith(".tar.gz") || urlStr.endsWith(".zip") || urlStr.endsWith(".whl")) {
-                    return urlStr;
+            List<String> published = new ArrayList<>();
+            try (Stream<Path> entries = Files.list(extracted)) {
+                for (Path entry : entries.toList()) {
+                    String name = entry.getFileName().toString();
+                    if (replace) {
+                        staging.publish(entry, root.resolve(name));
+                        published.add(name);
+                    } else if (staging.publishIfAbsent(entry, root.resolve(name))) {
+                        published.add(name);
+                    }
                 }
             }
+            // metadata or project folder of the version this one replaced
+            List<String> removed = previous.stream().filter(name -> !published.contains(name)).toList();
+            for (String name : removed) StagingArea.deleteRecursively(root.resolve(name));
+
+            Stream.concat(published.stream(), removed.stream())
+                    .forEach(name -> publishListeners.forEach(listener -> listener.accept(root.resolve(name))));
+            if (replace) {
+                pathIndex.removed(removed);
+                pathIndex.replaced(published);
+            } else {
+                pathIndex.added(published);
+            }
+            pathIndex.installed(pkg);
+            registry.metrics().installed("pypi");
+            System.out.println("Installed: " + fileName);
+        } finally {
+            StagingArea.deleteRecursively(stagingDir);
+        }
+    }
 
-            throw new IOException("No compatible file found for package: " + packageName);
+    /** Compiles a staged distribution; a failure leaves it to be compiled on import, like before. */
+    private void compileBytecode(Path dir, String pkg) {
+        if (compiler == null) return;
+        long start = System.nanoTime();
+        try {
+            int failed = compiler.compile(dir);
+            registry.metrics().compiled("pypi", System.nanoTime() - start);
+            if (failed > 0) System.err.println("Warning: " + failed + " sources of " + pkg + " could not be compiled");
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Warning: could not compile " + pkg + " to bytecode: " + e.getMessage());
         }
     }
 
-    private static File downloadFile(String urlString, String targetDir) throws IOException {
-        URL url = new URL(urlString);
-        String fileName = Paths.get(url.getPath()).getFileName().toString();
-        File outputFile = new File(targetDir, fileName);
+    /**
+     * Brings the bytecode caches of everything installed up to date with the
+     * compiler's interpreter: deletes caches written for other cache tags and
+     * compiles sources without a current cache. Does nothing if the recorded
+     * tag already matches, so it only costs time after an interpreter upgrade
+     * or for trees installed without compilation.
+     */
+    public void compileInstalled() throws IOException {
+        if (compiler == null || !Files.isDirectory(root)) return;
+        String tag = compiler.cacheTag();
+        Path marker = root.resolve(BYTECODE_TAG_FILE);
+        if (Files.exists(marker) && Files.readString(marker).strip().equals(tag)) return;
 
-        try (InputStream in = url.openStream(); FileOutputStream out = new FileOutputStream(outputFile)) {
-            in.transferTo(out);
+        long start = System.nanoTime();
+        int removed = 0;
+        try (Stream<Path> files = Files.walk(root)) {
+            for (Path file : files.filter(f -> isStaleBytecode(f, tag)).toList()) {
+                Files.deleteIfExists(file);
+                removed++;
+            }
         }
+        int failed = compiler.compile(root);
+        Files.writeString(marker, tag);
+        publishListeners.forEach(listener -> listener.accept(root));
+        System.out.println("Compiled installed Python packages for " + tag + " in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms (" + removed + " stale caches removed, "
+                + failed + " sources failed)");
+    }
 
-        return outputFile;
+    private boolean isStaleBytecode(Path file, String tag) {
+        String name = file.getFileName().toString();
+        return name.endsWith(".pyc") && !name.contains("." + tag + ".")
+                && file.getParent().getFileName().toString().equals("__pycache__")
+                && !root.relativize(file).getName(0).toString().startsWith(".");
     }
 
-    private static void unzip(File zipFile, File targetDir) throws IOException {
-        try (ZipInputStream zis = new ZipInputStream(new FileInputStream(zipFile))) {
-            ZipEntry entry;
-            while ((entry = zis.getNextEntry()) != null) {
-                File newFile = new File(targetDir, entry.getName());
-                if (entry.isDirectory()) {
-                    newFile.mkdirs();
-                } else {
-                    new File(newFile.getParent()).mkdirs();
-                    try (FileOutputStream fos = new FileOutputStream(newFile)) {
-                        zis.transferTo(fos);
-                    }
-                }
-                zis.closeEntry();
+    private String getPackageDownloadUrl(String packageName) throws IOException, InterruptedException {
+        String url = indexUrl + packageName + "/json";
+        JSONArray files = registry.fetchMetadata(packageName, url, "application/json",
+                PyPIDependencyDownloader::extractFiles).getJSONArray("files");
+
+        for (int i = 0; i < files.length(); i++) {
+            JSONObject file = files.getJSONObject(i);
+            String pythonVersion = file.getString("python_version");
+            String urlStr = file.getString("url");
+
+            if ((pythonVersion.equals("py3") || pythonVersion.startsWith(">=3"))
+                    && (urlStr.endsWith(".tar.gz") || urlStr.endsWith(".whl") || urlStr.endsWith(".zip"))) {
+                return urlStr;
             }
         }
+
+        // fallback to any format if none match
+        for (int i = 0; i < files.length(); i++) {
+            String urlStr = files.getJSONObject(i).getString("url");
+            if (urlStr.endsWith(".tar.gz") || urlStr.endsWith(".zip") || urlStr.endsWith(".whl")) {
+                return urlStr;
+            }
+        }
+
+        throw new IOException("No compatible file found for package: " + packageName);
     }
 
-    private static void untar(File tarGzFile, File targetDir) throws IOException {
-        try (
-                FileInputStream fis = new FileInputStream(tarGzFile);
-                GzipCompressorInputStream gcis = new GzipCompressorInputStream(fis);
-                TarArchiveInputStream tais = new TarArchiveInputStream(gcis)
-        ) {
-            TarArchiveEntry entry;
-            while ((entry = tais.getNextTarEntry()) != null) {
-                File newFile = new File(targetDir, entry.getName());
-                if (entry.isDirectory()) {
-                    newFile.mkdirs();
-                } else {
-                    new File(newFile.getParent()).mkdirs();
-                    try (FileOutputStream fos = new FileOutputStream(newFile)) {
-                        tais.transferTo(fos);
+    /**
+     * Streams a PyPI JSON API document and keeps the latest version plus the
+     * python_version/url of each of its files. The per-release history and
+     * the long description are skipped without being parsed.
+     */
+    static JSONObject extractFiles(JsonParser parser) throws IOException {
+        JSONObject result = new JSONObject();
+        JSONArray files = new JSONArray();
+        if (parser.nextToken() != JsonToken.START_OBJECT) throw new IOException("Malformed PyPI document");
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            if (field.equals("info")) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String infoField = parser.currentName();
+                    parser.nextToken();
+                    if (infoField.equals("version")) result.put("version", parser.getText());
+                    else parser.skipChildren();
+                }
+            } else if (field.equals("urls")) {
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    JSONObject file = new JSONObject();
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String fileField = parser.currentName();
+                        parser.nextToken();
+                        if (fileField.equals("url") || fileField.equals("python_version")) {
+                            file.put(fileField, parser.getText());
+                        } else {
+                            parser.skipChildren();
+                        }
                     }
+                    files.put(file);
                 }
+            } else {
+                parser.skipChildren();
             }
         }
+        return result.put("files", files);
     }
 
-    public static String getDownloadPath() {
-        return new File(DOWNLOAD_DIR).getAbsolutePath();
+    public String getDownloadPath() {
+        return root.toAbsolutePath().toString();
     }
 
-    public static List<String> getImportableModulePaths() {
-        List<String> paths = new ArrayList<>();
-        collectPythonModuleDirs(new File(getDownloadPath()), paths);
-        return paths;
+    /** Registers a callback told about every top-level entry an install publishes into deps/python. */
+    public void addPublishListener(Consumer<Path> listener) {
+        publishListeners.add(listener);
     }
 
-    private static void collectPythonModuleDirs(File dir, List<String> paths) {
-        if (dir == null || !dir.isDirectory()) return;
-
-        File[] files = dir.listFiles();
-        if (files == null) return;
-
-        boolean hasPythonCode = false;
-
-        for (File file : files) {
-            if (file.isDirectory()) {
-                collectPythonModuleDirs(file, paths); // Recursive call
-                hasPythonCode = true;
-            } else if (file.getName().endsWith(".py")) {
-                hasPythonCode = true;
-            }
-        }
-
-        if (hasPythonCode) {
-            paths.add(dir.getAbsolutePath().replace("\\", "/"));
-        }
+    /** Import roots of the installed distributions, maintained as packages are installed. */
+    public PythonPathIndex pathIndex() {
+        return pathIndex;
     }
-
-}
\ No newline at end of file
+}
@@ -0,0 +1,24 @@
+package org.apiwiz.scriptingengine.utils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Compiles installed Python sources ahead of time into bytecode caches,
+ * {@code __pycache__/<module>.<cache tag>.pyc} next to each source, so an
+ * import loads bytecode instead of parsing and compiling the source again
+ * in every new context.
+ */
+public interface PythonBytecodeCompiler {
+
+    /** {@code sys.implementation.cache_tag} of the interpreter the caches are for, e.g. {@code graalpy242-311}. */
+    String cacheTag();
+
+    /**
+     * Compiles every {@code .py} below {@code dir} that has no up-to-date
+     * cache; hidden directories are skipped.
+     *
+     * @return the number of sources that could not be compiled
+     */
+    int compile(Path dir) throws IOException;
+}
@@ -0,0 +1,42 @@
+package org.apiwiz.scriptingengine.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Maps import names to the PyPI distributions providing them
+ * ({@code yaml} → {@code PyYAML}, {@code PIL} → {@code Pillow}). The
+ * bundled table in {@code python/import-distributions.properties} can be
+ * extended or overridden through configuration; names without an entry are
+ * assumed to be published under the import name.
+ */
+public class PythonDistributions {
+
+    private static final String RESOURCE = "/python/import-distributions.properties";
+
+    private final Map<String, String> distributions = new HashMap<>();
+
+    public PythonDistributions(Map<String, String> overrides) {
+        Properties bundled = new Properties();
+        try (InputStream in = PythonDistributions.class.getResourceAsStream(RESOURCE)) {
+            if (in == null) throw new IllegalStateException("Missing resource " + RESOURCE);
+            bundled.load(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read " + RESOURCE, e);
+        }
+        bundled.forEach((module, distribution) -> distributions.put((String) module, (String) distribution));
+        if (overrides != null) distributions.putAll(overrides);
+    }
+
+    public PythonDistributions() {
+        this(Map.of());
+    }
+
+    public String distributionFor(String module) {
+        return distributions.getOrDefault(module, module);
+    }
+}
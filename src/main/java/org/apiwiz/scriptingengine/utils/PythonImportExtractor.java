@@ -1,20 +1,28 @@
 package org.apiwiz.scriptingengine.utils;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.HashSet;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
+/**
+ * Finds the top-level modules a Python script imports.
+ *
+ * <p>The script is scanned once, skipping comments and (triple-quoted,
+ * prefixed) string literals and following bracket nesting and backslash
+ * continuations, so that only {@code import} and {@code from} at the start
+ * of a statement are considered. {@code import a.b, c as d} yields
+ * {@code a} and {@code c}; relative imports ({@code from . import x},
+ * {@code from .pkg import y}) and standard library modules are skipped. The
+ * cost is linear in the length of the script.
+ */
 public class PythonImportExtractor {
 
-    // Regex pattern to match both 'import module' and 'from module import ...' statements
-    private static final Pattern IMPORT_PATTERN =
-            Pattern.compile("(?m)^\\s*(?:import|from)\\s+([a-zA-Z_][a-zA-Z0-9_]*)(?:\\s+import)?");
-
-    // List of standard built-in modules to exclude from the dependency download
-    private static final Set<String> STANDARD_LIBRARIES = Set.of(
-            "sys", "os", "math", "json", "re", "time", "itertools", "datetime", "subprocess", "builtins"
-    );
+    /** Standard library and builtin modules of the bundled GraalPy, excluded from the dependency download. */
+    private static final Set<String> STANDARD_LIBRARIES = loadStandardLibraries("/python/stdlib-modules.txt");
 
     /**
      * Extracts external Python module imports from the given script.
@@ -23,20 +31,190 @@ public class PythonImportExtractor {
      * @param script the Python script to extract imports from
      * @return a set of external modules to be installed
      */
-    public static Set<String> extractImports(String script) {
-        Matcher matcher = IMPORT_PATTERN.matcher(script);
+    public static Set<String> extractImports(CharSequence script) {
         Set<String> modules = new HashSet<>();
+        new Scanner(script, modules).scan();
+        return modules;
+    }
+
+    private static Set<String> loadStandardLibraries(String resource) {
+        try (InputStream in = PythonImportExtractor.class.getResourceAsStream(resource)) {
+            if (in == null) throw new IllegalStateException("Missing resource " + resource);
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8).lines()
+                    .map(String::strip)
+                    .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+                    .collect(Collectors.toUnmodifiableSet());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read " + resource, e);
+        }
+    }
+
+    private static final class Scanner {
+        private final CharSequence s;
+        private final int n;
+        private final Set<String> modules;
+        private int pos;
+        /** bracket nesting; newlines inside brackets do not end a statement */
+        private int depth;
+        private boolean statementStart = true;
 
-        while (matcher.find()) {
-            String fullImport = matcher.group(1);
-            String baseModule = fullImport.split("\\.")[0];  // Handle imports like 'from package.submodule import ...'
+        Scanner(CharSequence s, Set<String> modules) {
+            this.s = s;
+            this.n = s.length();
+            this.modules = modules;
+        }
 
-            // Add module only if it is not a standard library
-            if (!STANDARD_LIBRARIES.contains(baseModule)) {
-                modules.add(baseModule);
+        void scan() {
+            while (pos < n) {
+                char c = s.charAt(pos);
+                if (c == '\n') {
+                    pos++;
+                    if (depth == 0) statementStart = true;
+                } else if (c == '\\' && isLineBreak(pos + 1)) {
+                    pos = skipLineBreak(pos + 1);
+                } else if (c == ' ' || c == '\t' || c == '\r' || c == '\f') {
+                    pos++;
+                } else if (c == '#') {
+                    while (pos < n && s.charAt(pos) != '\n') pos++;
+                } else if (c == '\'' || c == '"') {
+                    skipString();
+                    statementStart = false;
+                } else if (Character.isJavaIdentifierStart(c)) {
+                    int start = pos;
+                    while (pos < n && Character.isJavaIdentifierPart(s.charAt(pos))) pos++;
+                    if (pos < n && (s.charAt(pos) == '\'' || s.charAt(pos) == '"') && isStringPrefix(start, pos)) {
+                        skipString();
+                    } else if (statementStart && is(start, pos, "import")) {
+                        importNames();
+                    } else if (statementStart && is(start, pos, "from")) {
+                        fromModule();
+                    }
+                    statementStart = false;
+                } else {
+                    pos++;
+                    if (c == '(' || c == '[' || c == '{') depth++;
+                    else if ((c == ')' || c == ']' || c == '}') && depth > 0) depth--;
+                    // `if x: import y` and `a = 1; import b` start a new statement on the same line
+                    statementStart = depth == 0 && (c == ';' || c == ':');
+                }
             }
         }
 
-        return modules;
+        /** {@code import a.b as c, d}: records {@code a} and {@code d}. */
+        private void importNames() {
+            while (true) {
+                String name = dottedNameHead();
+                if (name == null) return;
+                add(name);
+                skipInlineSpace();
+                if (matchWord("as")) {
+                    skipInlineSpace();
+                    skipWord();
+                    skipInlineSpace();
+                }
+                if (pos >= n || s.charAt(pos) != ',') return;
+                pos++;
+            }
+        }
+
+        /** {@code from a.b import c}: records {@code a} unless the import is relative. */
+        private void fromModule() {
+            skipInlineSpace();
+            if (pos < n && s.charAt(pos) == '.') return;
+            String name = dottedNameHead();
+            if (name != null) add(name);
+        }
+
+        /** Reads a dotted name and returns its first component. */
+        private String dottedNameHead() {
+            skipInlineSpace();
+            int start = pos;
+            skipWord();
+            if (pos == start) return null;
+            String head = s.subSequence(start, pos).toString();
+            while (true) {
+                skipInlineSpace();
+                if (pos >= n || s.charAt(pos) != '.') return head;
+                pos++;
+                skipInlineSpace();
+                skipWord();
+            }
+        }
+
+        private void add(String module) {
+            if (!STANDARD_LIBRARIES.contains(module)) modules.add(module);
+        }
+
+        private boolean matchWord(String word) {
+            int start = pos;
+            skipWord();
+            if (is(start, pos, word)) return true;
+            pos = start;
+            return false;
+        }
+
+        private void skipWord() {
+            if (pos < n && Character.isJavaIdentifierStart(s.charAt(pos))) {
+                pos++;
+                while (pos < n && Character.isJavaIdentifierPart(s.charAt(pos))) pos++;
+            }
+        }
+
+        /** Skips spaces, tabs and backslash continuations, but not the end of the statement. */
+        private void skipInlineSpace() {
+            while (pos < n) {
+                char c = s.charAt(pos);
+                if (c == ' ' || c == '\t' || c == '\f') pos++;
+                else if (c == '\\' && isLineBreak(pos + 1)) pos = skipLineBreak(pos + 1);
+                else return;
+            }
+        }
+
+        /** Skips a string literal starting at pos, single or triple quoted. */
+        private void skipString() {
+            char quote = s.charAt(pos);
+            boolean triple = pos + 2 < n && s.charAt(pos + 1) == quote && s.charAt(pos + 2) == quote;
+            pos += triple ? 3 : 1;
+            while (pos < n) {
+                char c = s.charAt(pos);
+                if (c == '\\') {
+                    pos += 2;
+                } else if (c == quote && (!triple
+                        || (pos + 2 < n && s.charAt(pos + 1) == quote && s.charAt(pos + 2) == quote))) {
+                    pos += triple ? 3 : 1;
+                    return;
+                } else if (c == '\n' && !triple) {
+                    return;     // unterminated; the newline still ends the statement
+                } else {
+                    pos++;
+                }
+            }
+        }
+
+        /** r, b, u, f and their two-letter combinations, in any case. */
+        private boolean isStringPrefix(int start, int end) {
+            if (end - start > 2) return false;
+            for (int i = start; i < end; i++) {
+                if ("rRbBuUfF".indexOf(s.charAt(i)) < 0) return false;
+            }
+            return true;
+        }
+
+        private boolean isLineBreak(int i) {
+            return i < n && (s.charAt(i) == '\n' || s.charAt(i) == '\r');
+        }
+
+        private int skipLineBreak(int i) {
+            if (s.charAt(i) == '\r' && i + 1 < n && s.charAt(i + 1) == '\n') return i + 2;
+            return i + 1;
+        }
+
+        private boolean is(int start, int end, String word) {
+            if (end - start != word.length()) return false;
+            for (int i = 0; i < word.length(); i++) {
+                if (s.charAt(start + i) != word.charAt(i)) return false;
+            }
+            return true;
+        }
     }
 }
@@ -0,0 +1,181 @@
+package org.apiwiz.scriptingengine.utils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * The import roots ({@code sys.path} entries) of deps/python.
+ *
+ * <p>Wheels unpack their packages directly into deps/python, so that folder
+ * itself is one root. Each unpacked sdist adds its project folder, or its
+ * {@code src/} folder when it uses the src layout. Roots are computed once
+ * and then maintained incrementally from the entries each install publishes;
+ * listeners are told whenever the set of roots changes.
+ *
+ * <p>The index also knows which distributions are installed, from their
+ * {@code .dist-info}/{@code .egg-info} folders and sdist project folders
+ * and from the names installs record, so checking for one never touches
+ * the disk.
+ */
+public class PythonPathIndex {
+
+    private static final Set<String> PROJECT_MARKERS = Set.of("setup.py", "pyproject.toml", "PKG-INFO", "setup.cfg");
+
+    private final Path root;
+    /** {@code <name>-<version>}, the naming of metadata and sdist project folders */
+    private static final Pattern VERSIONED = Pattern.compile("(.+?)-(\\d[^-]*)");
+
+    private final Map<String, String> sdistRoots = new TreeMap<>();
+    /** normalized distribution name → top-level entries it is known by; guarded by sdistRoots for writes */
+    private final Map<String, Set<String>> distributions = new ConcurrentHashMap<>();
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+    private volatile List<String> roots = List.of();
+
+    public PythonPathIndex(Path root) {
+        this.root = root.toAbsolutePath().normalize();
+        rebuild();
+    }
+
+    /** Absolute import roots, most specific first. */
+    public List<String> roots() {
+        return roots;
+    }
+
+    /** Registers a callback run after the set of roots has changed. */
+    public void addListener(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    /** True if the distribution is installed; names match as PyPI normalizes them. */
+    public boolean isInstalled(String distribution) {
+        return distributions.containsKey(normalizeDistribution(distribution));
+    }
+
+    /** Top-level metadata and sdist folders of an installed distribution, empty if there are none. */
+    public Set<String> entriesOf(String distribution) {
+        Set<String> entries = distributions.get(normalizeDistribution(distribution));
+        return entries != null ? Set.copyOf(entries) : Set.of();
+    }
+
+    /** Records a distribution an install just finished, including one whose archive carries no metadata folder. */
+    public void installed(String distribution) {
+        synchronized (sdistRoots) {
+            distributions.computeIfAbsent(normalizeDistribution(distribution), k -> ConcurrentHashMap.newKeySet());
+        }
+    }
+
+    /** Records top-level entries that an install just published into deps/python. */
+    public void added(Collection<String> topLevelNames) {
+        if (record(topLevelNames)) publish();
+    }
+
+    /**
+     * Records top-level entries an upgrade published over installed ones.
+     * Listeners are told even if the roots stay the same, since the code
+     * under them changed.
+     */
+    public void replaced(Collection<String> topLevelNames) {
+        record(topLevelNames);
+        publish(true);
+    }
+
+    private boolean record(Collection<String> topLevelNames) {
+        boolean changed = false;
+        synchronized (sdistRoots) {
+            for (String name : topLevelNames) {
+                String siteRoot = siteRootOf(root.resolve(name));
+                if (siteRoot != null && !siteRoot.equals(sdistRoots.put(name, siteRoot))) changed = true;
+                recordDistribution(name, siteRoot != null);
+            }
+        }
+        return changed;
+    }
+
+    /** Records top-level entries removed from deps/python. */
+    public void removed(Collection<String> topLevelNames) {
+        boolean changed = false;
+        synchronized (sdistRoots) {
+            for (String name : topLevelNames) {
+                changed |= sdistRoots.remove(name) != null;
+                distributions.values().removeIf(entries -> entries.remove(name) && entries.isEmpty());
+            }
+        }
+        if (changed) publish();
+    }
+
+    /** Rescans the top level of deps/python. */
+    public void rebuild() {
+        synchronized (sdistRoots) {
+            sdistRoots.clear();
+            distributions.clear();
+            if (Files.isDirectory(root)) {
+                try (Stream<Path> entries = Files.list(root)) {
+                    entries.forEach(entry -> {
+                        String name = entry.getFileName().toString();
+                        String siteRoot = siteRootOf(entry);
+                        if (siteRoot != null) sdistRoots.put(name, siteRoot);
+                        recordDistribution(name, siteRoot != null);
+                    });
+                } catch (IOException e) {
+                    System.err.println("Warning: could not scan " + root + ": " + e.getMessage());
+                }
+            }
+        }
+        publish();
+    }
+
+    private void publish() {
+        publish(false);
+    }
+
+    private void publish(boolean notify) {
+        List<String> next = new ArrayList<>();
+        synchronized (sdistRoots) {
+            next.addAll(sdistRoots.values());
+        }
+        next.add(normalize(root));
+        List<String> previous = roots;
+        roots = List.copyOf(next);
+        if (notify || !roots.equals(previous)) listeners.forEach(Runnable::run);
+    }
+
+    /** Notes the distribution a metadata folder or sdist project folder belongs to. */
+    private void recordDistribution(String entry, boolean sdist) {
+        String versioned = entry.endsWith(".dist-info") || entry.endsWith(".egg-info")
+                ? entry.substring(0, entry.lastIndexOf('.'))
+                : sdist ? entry : null;
+        if (versioned == null) return;
+        Matcher m = VERSIONED.matcher(versioned);
+        if (!m.matches()) return;
+        distributions.computeIfAbsent(normalizeDistribution(m.group(1)), k -> ConcurrentHashMap.newKeySet()).add(entry);
+    }
+
+    /** PEP 503 normalization: case-insensitive, runs of {@code -_.} are equivalent. */
+    static String normalizeDistribution(String name) {
+        return name.toLowerCase(Locale.ROOT).replaceAll("[-_.]+", "-");
+    }
+
+    /** The import root contributed by an unpacked sdist, or null for anything else. */
+    private static String siteRootOf(Path entry) {
+        String name = entry.getFileName().toString();
+        if (!Files.isDirectory(entry) || name.startsWith(".") || name.endsWith(".dist-info")
+                || name.endsWith(".egg-info") || name.equals("__pycache__")) {
+            return null;
+        }
+        boolean project = PROJECT_MARKERS.stream().anyMatch(marker -> Files.isRegularFile(entry.resolve(marker)));
+        if (!project) return null;
+        Path src = entry.resolve("src");
+        return normalize(Files.isDirectory(src) ? src : entry);
+    }
+
+    private static String normalize(Path path) {
+        return path.toAbsolutePath().normalize().toString().replace("\\", "/");
+    }
+}
@@ -0,0 +1,183 @@
+package org.apiwiz.scriptingengine.utils;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apiwiz.scriptingengine.exception.PackageNotFoundException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+
+/**
+ * HTTP access to package registries shared by the dependency downloaders.
+ *
+ * <p>All requests go through one {@link HttpClient} (HTTP/2 where offered,
+ * pooled keep-alive connections otherwise). Metadata documents are never
+ * materialized: a {@link MetadataExtractor} streams the response and keeps
+ * only the fields an install needs. That small summary is cached on disk
+ * together with the response's ETag/Last-Modified, and later lookups
+ * revalidate it with a conditional request.
+ */
+public class RegistryClient {
+
+    /** Pulls the needed fields out of a streamed metadata document. */
+    @FunctionalInterface
+    public interface MetadataExtractor {
+        JSONObject extract(JsonParser parser) throws IOException;
+    }
+
+    private static final JsonFactory JSON = new JsonFactory();
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    private final HttpClient http;
+    private final Path cacheDir;
+    private final DependencyMetrics metrics;
+
+    public RegistryClient(Path cacheDir) {
+        this(cacheDir, new SimpleMeterRegistry());
+    }
+
+    public RegistryClient(Path cacheDir, MeterRegistry meterRegistry) {
+        this.cacheDir = cacheDir;
+        this.metrics = new DependencyMetrics(meterRegistry);
+        this.http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    /**
+     * Fetches a metadata document and returns the fields picked by the extractor,
+     * served from the on-disk cache when the registry answers 304 Not Modified
+     * or cannot be reached.
+     *
+     * @param name package the document describes, used in errors
+     */
+    public JSONObject fetchMetadata(String name, String url, String accept, MetadataExtractor extractor)
+            throws IOException, InterruptedException {
+        Path cacheFile = cacheDir.resolve(sha256(accept + " " + url) + ".json");
+        JSONObject cached = readCache(cacheFile);
+
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(TIMEOUT)
+                .header("Accept", accept);
+        if (cached != null) {
+            if (!cached.optString("etag").isEmpty()) request.header("If-None-Match", cached.getString("etag"));
+            if (!cached.optString("lastModified").isEmpty()) request.header("If-Modified-Since", cached.getString("lastModified"));
+        }
+
+        long start = System.nanoTime();
+        HttpResponse<InputStream> response;
+        try {
+            response = http.send(request.build(), HttpResponse.BodyHandlers.ofInputStream());
+        } catch (IOException e) {
+            if (cached != null) {
+                System.err.println("Warning: registry unreachable, using cached metadata for " + url);
+                metrics.request("metadata", "cached", System.nanoTime() - start);
+                return cached.getJSONObject("data");
+            }
+            metrics.request("metadata", "error", System.nanoTime() - start);
+            throw e;
+        }
+
+        String outcome = "error";
+        try (InputStream body = response.body()) {
+            if (response.statusCode() == 304 && cached != null) {
+                outcome = "not_modified";
+                return cached.getJSONObject("data");
+            }
+            if (response.statusCode() == 404) {
+                outcome = "not_found";
+                throw new PackageNotFoundException(name, url);
+            }
+            if (response.statusCode() != 200) {
+                throw new IOException("Registry returned HTTP " + response.statusCode() + " for " + url);
+            }
+
+            JSONObject data;
+            try (JsonParser parser = JSON.createParser(body)) {
+                data = extractor.extract(parser);
+            }
+            writeCache(cacheFile, new JSONObject()
+                    .put("url", url)
+                    .put("etag", response.headers().firstValue("ETag").orElse(""))
+                    .put("lastModified", response.headers().firstValue("Last-Modified").orElse(""))
+                    .put("data", data));
+            outcome = "ok";
+            return data;
+        } finally {
+            metrics.request("metadata", outcome, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Opens a download as a stream so it can be consumed while it arrives.
+     * The caller must close the returned stream.
+     */
+    public InputStream open(String url) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url)).timeout(TIMEOUT).build();
+        long start = System.nanoTime();
+        HttpResponse<InputStream> response;
+        try {
+            response = http.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        } catch (IOException e) {
+            metrics.request("download", "error", System.nanoTime() - start);
+            throw e;
+        }
+        if (response.statusCode() != 200) {
+            response.body().close();
+            metrics.request("download", response.statusCode() == 404 ? "not_found" : "error", System.nanoTime() - start);
+            throw new IOException("Download of " + url + " failed with HTTP " + response.statusCode());
+        }
+        // time to first byte; the body itself is timed as part of extraction
+        metrics.request("download", "ok", System.nanoTime() - start);
+        return metrics.counting(response.body());
+    }
+
+    /** Meters shared by the downloaders using this client. */
+    public DependencyMetrics metrics() {
+        return metrics;
+    }
+
+    private static JSONObject readCache(Path cacheFile) {
+        if (!Files.isRegularFile(cacheFile)) return null;
+        try {
+            return new JSONObject(Files.readString(cacheFile));
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private void writeCache(Path cacheFile, JSONObject entry) {
+        try {
+            Files.createDirectories(cacheDir);
+            Path tmp = Files.createTempFile(cacheDir, "meta-", ".tmp");
+            Files.writeString(tmp, entry.toString());
+            Files.move(tmp, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Warning: could not cache registry metadata: " + e.getMessage());
+        }
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package org.apiwiz.scriptingengine.utils;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Coalesces concurrent calls for the same key: the first caller does the
+ * work, later callers block until it finishes and share its outcome. The
+ * {@link Result} tells the caller that did the work from those that waited.
+ */
+public class SingleFlight<K> {
+
+    @FunctionalInterface
+    public interface Work<T> {
+        T call() throws IOException, InterruptedException;
+    }
+
+    /**
+     * @param value  what the work returned
+     * @param leader true for the caller that did the work, false for callers that shared it
+     */
+    public record Result<T>(T value, boolean leader) {
+    }
+
+    private final ConcurrentMap<K, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    @SuppressWarnings("unchecked")
+    public <T> Result<T> run(K key, Work<T> work) throws IOException, InterruptedException {
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> leader = inFlight.putIfAbsent(key, mine);
+        if (leader != null) {
+            try {
+                return new Result<>((T) leader.get(), false);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException io) throw new IOException(io.getMessage(), io);
+                if (cause instanceof RuntimeException re) throw re;
+                throw new IOException("Shared operation for " + key + " failed: " + cause.getMessage(), cause);
+            }
+        }
+
+        try {
+            T result = work.call();
+            mine.complete(result);
+            return new Result<>(result, true);
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+}
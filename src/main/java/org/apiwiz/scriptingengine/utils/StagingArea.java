@@ -0,0 +1,80 @@
+package org.apiwiz.scriptingengine.utils;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Scratch directory next to an install root. Packages are downloaded and
+ * extracted into a private staging folder and only renamed into the live
+ * tree once complete, so readers never observe half-written modules.
+ * Leftovers of interrupted installs are removed when the area is created.
+ */
+public class StagingArea {
+
+    private final Path dir;
+
+    public StagingArea(Path root) {
+        this.dir = root.resolve(".staging");
+        try {
+            deleteRecursively(dir);
+        } catch (IOException e) {
+            System.err.println("Warning: could not clean staging area " + dir + ": " + e.getMessage());
+        }
+    }
+
+    /** Creates an empty, uniquely named staging folder. */
+    public Path newDirectory() throws IOException {
+        return Files.createDirectories(dir.resolve(UUID.randomUUID().toString()));
+    }
+
+    /**
+     * Renames a staged folder or file to {@code target}, replacing whatever
+     * was there before. Each rename is atomic, but the replacement takes two:
+     * the old entry is moved aside first, so between them {@code target}
+     * briefly does not exist and a concurrent lookup of it fails. The old
+     * entry is deleted once the staged copy is in place.
+     */
+    public void publish(Path staged, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        Path previous = null;
+        if (Files.exists(target)) {
+            previous = dir.resolve(UUID.randomUUID() + ".old");
+            Files.move(target, previous, StandardCopyOption.ATOMIC_MOVE);
+        }
+        Files.move(staged, target, StandardCopyOption.ATOMIC_MOVE);
+        if (previous != null) deleteRecursively(previous);
+    }
+
+    /**
+     * Renames a staged folder or file to {@code target} unless something is
+     * already installed there; the staged copy is discarded in that case.
+     *
+     * @return true if the staged copy was moved into place
+     */
+    public boolean publishIfAbsent(Path staged, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        if (!Files.exists(target, LinkOption.NOFOLLOW_LINKS)) {
+            try {
+                Files.move(staged, target, StandardCopyOption.ATOMIC_MOVE);
+                return true;
+            } catch (FileSystemException e) {
+                // lost a race against another install of the same path
+                if (!Files.exists(target, LinkOption.NOFOLLOW_LINKS)) throw e;
+            }
+        }
+        deleteRecursively(staged);
+        return false;
+    }
+
+    public static void deleteRecursively(Path path) throws IOException {
+        if (!Files.exists(path, LinkOption.NOFOLLOW_LINKS)) return;
+        try (Stream<Path> walk = Files.walk(path)) {
+            for (Path p : walk.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(p);
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package org.apiwiz.scriptingengine;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apiwiz.scriptingengine.dto.ScriptRequest;
+import org.apiwiz.scriptingengine.dto.UpgradeRequest;
+import org.apiwiz.scriptingengine.support.StubPyPIIndex;
+import org.apiwiz.scriptingengine.utils.PyPIDependencyDownloader;
+import org.apiwiz.scriptingengine.utils.StagingArea;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class DependencyControllerIntegrationTest {
+    /** unique per run, since deps/python outlives the test */
+    private static final String MODULE = "upgfixture" + Long.toString(System.nanoTime(), 36);
+    private static final StubPyPIIndex index = startIndex();
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @DynamicPropertySource
+    static void pypi(DynamicPropertyRegistry registry) {
+        registry.add("scripting.pypi.index-url", index::url);
+    }
+
+    @AfterAll
+    static void cleanUp() throws IOException {
+        index.close();
+        Path root = Path.of(PyPIDependencyDownloader.DOWNLOAD_DIR);
+        for (String entry : List.of(MODULE, MODULE + "-1.0.dist-info", MODULE + "-2.0.dist-info")) {
+            StagingArea.deleteRecursively(root.resolve(entry));
+        }
+    }
+
+    @Test
+    void testUpgradeReplacesAnInstalledPythonPackage() throws Exception {
+        index.publish(MODULE, "1.0", Map.of(MODULE + "/__init__.py", "VERSION = 1\n"));
+        expectVersion("1");
+
+        // a newer release is not picked up by a plain install
+        index.publish(MODULE, "2.0", Map.of(MODULE + "/__init__.py", "VERSION = 2\n"));
+        expectVersion("1");
+
+        mockMvc.perform(post("/api/dependencies/python/upgrade")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new UpgradeRequest(List.of(MODULE)))))
+                .andExpect(status().isNoContent());
+        expectVersion("2");
+    }
+
+    @Test
+    void testUpgradeRequiresModules() throws Exception {
+        mockMvc.perform(post("/api/dependencies/python/upgrade")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"modules\":[]}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    private void expectVersion(String version) throws Exception {
+        mockMvc.perform(post("/api/scripts/execute")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(
+                                new ScriptRequest("python", "import " + MODULE + "\n" + MODULE + ".VERSION"))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.output").value(version));
+    }
+
+    private static StubPyPIIndex startIndex() {
+        try {
+            return new StubPyPIIndex();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
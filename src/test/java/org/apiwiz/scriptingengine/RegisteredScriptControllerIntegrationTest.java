@@ -0,0 +1,147 @@
+package org.apiwiz.scriptingengine;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apiwiz.scriptingengine.config.RegistryProperties;
+import org.apiwiz.scriptingengine.dto.InvokeRequest;
+import org.apiwiz.scriptingengine.dto.RegisterScriptRequest;
+import org.apiwiz.scriptingengine.service.ScriptRegistry;
+import org.apiwiz.scriptingengine.service.ScriptService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.containsString;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class RegisteredScriptControllerIntegrationTest {
+    private final static String path = "/api/scripts";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ScriptService scriptService;
+
+    @Test
+    void testPythonScriptIsInvokedWithArgsBoundAsGlobals() throws Exception {
+        String id = register(new RegisterScriptRequest("python", "{'total': price * quantity, 'sku': sku}"));
+
+        invoke(id, "{\"args\": {\"price\": 2.5, \"quantity\": 4, \"sku\": \"A-1\"}}")
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.result.total").value(10.0))
+                .andExpect(jsonPath("$.result.sku").value("A-1"));
+
+        // bindings do not leak into the next invocation on the same pooled context
+        invoke(id, "{\"args\": {\"price\": 1, \"quantity\": 3}}")
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.output", containsString("sku")));
+    }
+
+    @Test
+    void testExportedFunctionIsCalledWithArgs() throws Exception {
+        String js = register(new RegisterScriptRequest("javascript",
+                "export function score(input) { return input.values.reduce((a, b) => a + b, 0); }"));
+        invoke(js, "{\"function\": \"score\", \"args\": {\"values\": [1, 2, 3]}}")
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.result").value(6));
+
+        String py = register(new RegisterScriptRequest("python", "def score(values):\n    return max(values)"));
+        invoke(py, "{\"function\": \"score\", \"args\": [4, 9, 2]}")
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.result").value(9));
+        invoke(py, "{\"function\": \"missing\"}")
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testPatchedBuiltinsDoNotLeakIntoTheNextInvocation() throws Exception {
+        String js = register(new RegisterScriptRequest("javascript", """
+                export function patch() { Array.prototype.includes = () => true; JSON.stringify = () => 'x'; return 1; }
+                export function check() { return [[1].includes(2), JSON.stringify(1)]; }"""));
+        invoke(js, "{\"function\": \"patch\"}").andExpect(status().isOk());
+        invoke(js, "{\"function\": \"check\"}")
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.result[0]").value(false))
+                .andExpect(jsonPath("$.result[1]").value("1"));
+
+        String py = register(new RegisterScriptRequest("python", """
+                import builtins, sys
+                def patch():
+                    builtins.len = lambda value: 0
+                    sys.path.insert(0, '/tmp')
+                    return 1
+                def check():
+                    return [len('ab'), '/tmp' in sys.path]"""));
+        invoke(py, "{\"function\": \"patch\"}").andExpect(status().isOk());
+        invoke(py, "{\"function\": \"check\"}")
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.result[0]").value(2))
+                .andExpect(jsonPath("$.result[1]").value(false));
+    }
+
+    @Test
+    void testRegistrationRejectsSyntaxErrorsAndUnknownIdsAreNotFound() throws Exception {
+        mockMvc.perform(post(path)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new RegisterScriptRequest("python", "def broken(:"))))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.success").value(false));
+
+        String id = register(new RegisterScriptRequest("python", "1"));
+        mockMvc.perform(get(path + "/" + id))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.language").value("python"));
+        mockMvc.perform(delete(path + "/" + id)).andExpect(status().isNoContent());
+        invoke(id, "{}").andExpect(status().isNotFound());
+    }
+
+    @Test
+    void testRegistrationsSurviveRestartAndEviction(@TempDir Path directory) {
+        ScriptRegistry before = new ScriptRegistry(scriptService, new RegistryProperties(10, directory), objectMapper);
+        String id = before.register("python", "n * 2").id();
+
+        ScriptRegistry restarted = new ScriptRegistry(scriptService, new RegistryProperties(10, directory), objectMapper);
+        restarted.run(null);
+        InvokeRequest request = new InvokeRequest(objectMapper.valueToTree(Map.of("n", 21)), null, null);
+        assertEquals("42", restarted.invoke(id, request).output());
+
+        // evicted from memory by a newer registration, recompiled from disk on use
+        ScriptRegistry small = new ScriptRegistry(scriptService, new RegistryProperties(1, directory), objectMapper);
+        small.register("python", "0");
+        assertEquals("42", small.invoke(id, request).output());
+    }
+
+    private String register(RegisterScriptRequest request) throws Exception {
+        String body = mockMvc.perform(post(path)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isCreated())
+                .andExpect(header().exists("Location"))
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body).get("id").asText();
+    }
+
+    private ResultActions invoke(String id, String body) throws Exception {
+        return mockMvc.perform(post(path + "/" + id + "/invoke")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(body));
+    }
+}
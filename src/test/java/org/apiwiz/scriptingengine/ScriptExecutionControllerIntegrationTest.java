@@ -1,15 +1,27 @@
 package org.apiwiz.scriptingengine;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.apiwiz.scriptingengine.dto.ScriptRequest;
+import org.apiwiz.scriptingengine.engine.SourceCache;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 
 import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -24,6 +36,12 @@ class ScriptExecutionControllerIntegrationTest {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private SourceCache sourceCache;
+
     @Test
     void testExecutePythonScript() throws Exception {
         ScriptRequest request = new ScriptRequest("python", "x = 42\nx");
@@ -62,4 +80,213 @@ class ScriptExecutionControllerIntegrationTest {
                 .andExpect(jsonPath("$.error").value("Bad Request"))
                 .andExpect(jsonPath("$.message", containsString("Unsupported scripting language")));
     }
+
+    @Test
+    void testExecuteBatchReturnsPerItemResults() throws Exception {
+        List<ScriptRequest> requests = List.of(
+                new ScriptRequest("python", "x = 6 * 7\nx"),
+                new ScriptRequest("python", "raise ValueError('boom')"),
+                new ScriptRequest("ruby", "puts 'Hello from Ruby'"),
+                new ScriptRequest("python", "len('done')"));
+
+        mockMvc.perform(post("/api/scripts/execute-batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(requests)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(4))
+                .andExpect(jsonPath("$[0].success").value(true))
+                .andExpect(jsonPath("$[0].output").value("42"))
+                .andExpect(jsonPath("$[1].success").value(false))
+                .andExpect(jsonPath("$[1].output", containsString("boom")))
+                .andExpect(jsonPath("$[2].success").value(false))
+                .andExpect(jsonPath("$[2].output", containsString("Unsupported scripting language")))
+                .andExpect(jsonPath("$[3].output").value("4"));
+    }
+
+    @Test
+    void testExecuteStreamPushesOutputThenResult() throws Exception {
+        ScriptRequest request = new ScriptRequest("python", "for i in range(3):\n    print('line', i)\n7 * 6");
+
+        MvcResult result = mockMvc.perform(post("/api/scripts/execute-stream")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = "";
+        long deadline = System.currentTimeMillis() + 30_000;
+        // the event name and its data are written separately; wait for the data's last field
+        while (!body.contains("\"droppedBytes\"") && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+            body = result.getResponse().getContentAsString();
+        }
+
+        assertTrue(body.indexOf("line 0") < body.indexOf("line 2"), body);
+        assertTrue(body.contains("event:stdout"), body);
+        assertTrue(body.indexOf("line 2") < body.indexOf("event:result"), body);
+        assertTrue(body.contains("\"output\":\"42\""), body);
+        assertTrue(body.contains("\"result\":42"), body);
+        assertTrue(body.contains("\"success\":true"), body);
+        assertFalse(body.contains("event:truncated"), body);
+    }
+
+    @Test
+    void testExecuteReportsPhaseTimingsAndMetrics() throws Exception {
+        ScriptRequest request = new ScriptRequest("python", "sum(range(10))");
+
+        mockMvc.perform(post(path)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Server-Timing", containsString("eval;dur=")))
+                .andExpect(jsonPath("$.timings").doesNotExist());
+
+        mockMvc.perform(post(path + "?timings=true")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.output").value("45"))
+                .andExpect(jsonPath("$.timings.queue").isNumber())
+                .andExpect(jsonPath("$.timings.acquire").isNumber())
+                .andExpect(jsonPath("$.timings.eval").isNumber());
+
+        Timer total = meterRegistry.find("scripting.execution")
+                .tags("language", "python", "outcome", "success").timer();
+        assertNotNull(total);
+        assertTrue(total.count() >= 2);
+        assertNotNull(meterRegistry.find("scripting.execution.phase").tags("phase", "eval").timer());
+    }
+
+    @Test
+    void testRunawayScriptTimesOutAndPoolRecovers() throws Exception {
+        ScriptRequest request = new ScriptRequest("python", "while True:\n    pass", 300L);
+
+        mockMvc.perform(post(path)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isUnprocessableEntity())
+                .andExpect(jsonPath("$.success").value(false))
+                .andExpect(jsonPath("$.error").value("timeout"))
+                .andExpect(jsonPath("$.output", containsString("300 ms")));
+
+        mockMvc.perform(post(path)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new ScriptRequest("python", "21 * 2"))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.output").value("42"));
+    }
+
+    @Test
+    void testResultIsReturnedAsStructuredJson() throws Exception {
+        ScriptRequest request = new ScriptRequest("python",
+                "[1, 2.5, 'x', None, {'a': True, 'n': [2 ** 70]}]");
+
+        mockMvc.perform(post(path)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.result[0]").value(1))
+                .andExpect(jsonPath("$.result[1]").value(2.5))
+                .andExpect(jsonPath("$.result[2]").value("x"))
+                .andExpect(jsonPath("$.result[3]").isEmpty())
+                .andExpect(jsonPath("$.result[4].a").value(true))
+                .andExpect(content().string(containsString("\"n\":[1180591620717411303424]")))
+                .andExpect(jsonPath("$.output").value("[1,2.5,\"x\",null,{\"a\":true,\"n\":[1180591620717411303424]}]"));
+    }
+
+    @Test
+    void testCacheableRequestIsServedFromTheResultCache() throws Exception {
+        ScriptRequest request = new ScriptRequest("python", "import random\nrandom.random()", null, true);
+        String first = mockMvc.perform(post(path)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        mockMvc.perform(post(path)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Server-Timing", containsString("cache;dur=")))
+                .andExpect(content().json(first));
+
+        // without the flag the script runs again
+        mockMvc.perform(post(path)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new ScriptRequest("python", "import random\nrandom.random()"))))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Server-Timing", containsString("eval;dur=")));
+    }
+
+    @Test
+    void testOversizedResultIsRejectedAndPoolRecovers() throws Exception {
+        ScriptRequest request = new ScriptRequest("python", "x = []\nfor _ in range(100):\n    x = [x]\nx");
+
+        mockMvc.perform(post(path)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isUnprocessableEntity())
+                .andExpect(jsonPath("$.success").value(false))
+                .andExpect(jsonPath("$.error").value("result_limit"));
+
+        mockMvc.perform(post(path)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new ScriptRequest("python", "21 * 2"))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.result").value(42));
+    }
+
+    @Test
+    void testScriptsCannotReadHostFilesOrWrite() throws Exception {
+        ScriptRequest request = new ScriptRequest("python", """
+                import os
+                outcomes = []
+                for attempt in (lambda: open('/etc/hostname').read(), lambda: open('escape.txt', 'w')):
+                    try:
+                        attempt()
+                        outcomes.append('allowed')
+                    except OSError as e:
+                        outcomes.append(type(e).__name__)
+                outcomes""");
+
+        mockMvc.perform(post(path)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.result[0]").value("FileNotFoundError"))
+                .andExpect(jsonPath("$.result[1]").value("PermissionError"));
+    }
+
+    @Test
+    void testExecuteFileRunsSmallAndSpooledUploadsThroughTheSourceCache() throws Exception {
+        MockMultipartFile small = new MockMultipartFile("file", "small.py", "text/x-python",
+                "label = 'café'\nlen(label)".getBytes(StandardCharsets.UTF_8));
+        mockMvc.perform(multipart("/api/scripts/execute-file").file(small).param("language", "python"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.output").value("4"));
+
+        // above the container's file-size-threshold, so spooled to disk by the container
+        String padding = "# " + "x".repeat(1_500_000) + "\n";
+        MockMultipartFile large = new MockMultipartFile("file", "large.py", "text/x-python",
+                (padding + "6 * 7").getBytes(StandardCharsets.UTF_8));
+        mockMvc.perform(multipart("/api/scripts/execute-file").file(large).param("language", "python"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.output").value("42"));
+
+        // the same upload again is served from the source cache
+        long hits = sourceCache.stats().hits();
+        mockMvc.perform(multipart("/api/scripts/execute-file").file(small).param("language", "python"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.output").value("4"));
+        assertTrue(sourceCache.stats().hits() > hits);
+    }
+
+    @Test
+    void testExecuteFileRejectsOversizedUpload() throws Exception {
+        MockMultipartFile huge = new MockMultipartFile("file", "huge.py", "text/x-python",
+                new byte[11 * 1024 * 1024]);
+        mockMvc.perform(multipart("/api/scripts/execute-file").file(huge).param("language", "python"))
+                .andExpect(status().isPayloadTooLarge())
+                .andExpect(jsonPath("$.status").value(413));
+    }
 }
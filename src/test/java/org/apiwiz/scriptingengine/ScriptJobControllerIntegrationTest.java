@@ -0,0 +1,106 @@
+package org.apiwiz.scriptingengine;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apiwiz.scriptingengine.dto.ScriptRequest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class ScriptJobControllerIntegrationTest {
+    private final static String path = "/api/scripts/jobs";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void testSubmitAndPollPythonJob() throws Exception {
+        String id = submit(new ScriptRequest("python", "x = 6 * 7\nx"));
+
+        assertEquals("SUCCEEDED", awaitFinished(id));
+        mockMvc.perform(get(path + "/" + id + "/result"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.success").value(true))
+                .andExpect(jsonPath("$.output").value("42"));
+    }
+
+    @Test
+    void testCancelInterruptsRunningScript() throws Exception {
+        String id = submit(new ScriptRequest("python", "while True:\n    pass"));
+        while (!"RUNNING".equals(jobStatus(id))) Thread.sleep(20);
+        Thread.sleep(200);
+
+        mockMvc.perform(delete(path + "/" + id))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("CANCELLED"));
+        mockMvc.perform(get(path + "/" + id + "/result"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.success").value(false));
+
+        // the cancelled context is retired; the pool keeps serving scripts
+        String next = submit(new ScriptRequest("python", "1 + 1"));
+        assertEquals("SUCCEEDED", awaitFinished(next));
+    }
+
+    @Test
+    void testTimedOutJobReportsTheLimit() throws Exception {
+        String id = submit(new ScriptRequest("python", "while True:\n    pass", 300L));
+
+        assertEquals("FAILED", awaitFinished(id));
+        mockMvc.perform(get(path + "/" + id))
+                .andExpect(jsonPath("$.limit").value("timeout"));
+        mockMvc.perform(get(path + "/" + id + "/result"))
+                .andExpect(status().isUnprocessableEntity())
+                .andExpect(jsonPath("$.success").value(false))
+                .andExpect(jsonPath("$.error").value("timeout"));
+    }
+
+    @Test
+    void testUnknownJobReturnsNotFound() throws Exception {
+        mockMvc.perform(get(path + "/does-not-exist"))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.status").value(404));
+    }
+
+    private String submit(ScriptRequest request) throws Exception {
+        String body = mockMvc.perform(post(path)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isAccepted())
+                .andExpect(header().exists("Location"))
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body).get("id").asText();
+    }
+
+    private String jobStatus(String id) throws Exception {
+        String body = mockMvc.perform(get(path + "/" + id))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        JsonNode job = objectMapper.readTree(body);
+        return job.get("status").asText();
+    }
+
+    private String awaitFinished(String id) throws Exception {
+        long deadline = System.currentTimeMillis() + 60_000;
+        String status = jobStatus(id);
+        while ((status.equals("QUEUED") || status.equals("RUNNING")) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+            status = jobStatus(id);
+        }
+        return status;
+    }
+}
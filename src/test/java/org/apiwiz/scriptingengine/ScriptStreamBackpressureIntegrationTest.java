@@ -0,0 +1,50 @@
+package org.apiwiz.scriptingengine;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apiwiz.scriptingengine.dto.ScriptRequest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+@SpringBootTest(properties = {"scripting.stream.buffer-chunks=1", "scripting.stream.offer-timeout=0ms"})
+@AutoConfigureMockMvc
+class ScriptStreamBackpressureIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void testDroppedOutputIsReportedBeforeTheResult() throws Exception {
+        ScriptRequest request = new ScriptRequest("python", "for i in range(20000):\n    print(i)\n42");
+
+        MvcResult result = mockMvc.perform(post("/api/scripts/execute-stream")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = "";
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (!body.contains("\"durationMillis\"") && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+            body = result.getResponse().getContentAsString();
+        }
+
+        int truncated = body.indexOf("event:truncated");
+        assertTrue(truncated > 0, body.substring(Math.max(0, body.length() - 500)));
+        assertTrue(truncated < body.indexOf("event:result"));
+        assertTrue(body.indexOf("\"droppedBytes\"") > truncated);
+        assertTrue(body.contains("\"result\":42"));
+    }
+}
@@ -1,13 +1,40 @@
 package org.apiwiz.scriptingengine;
 
+import org.apiwiz.scriptingengine.engine.ContextPool;
+import org.apiwiz.scriptingengine.engine.ContextPools;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
+@AutoConfigureMockMvc
 class ScriptingEngineApplicationTests {
 
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ContextPools contextPools;
+
     @Test
     void contextLoads() {
     }
 
+    @Test
+    void readyOnceWarmupHasFilledThePools() throws Exception {
+        mockMvc.perform(get("/actuator/health/readiness"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("UP"));
+
+        for (ContextPool.Stats stats : contextPools.stats()) {
+            assertTrue(stats.idle() > 0, stats.language() + " pool was not prefilled");
+        }
+    }
 }
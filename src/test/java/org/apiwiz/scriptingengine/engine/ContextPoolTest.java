@@ -0,0 +1,127 @@
+package org.apiwiz.scriptingengine.engine;
+
+import org.apiwiz.scriptingengine.config.ContextPoolProperties;
+import org.apiwiz.scriptingengine.exception.ScriptExecutionException;
+import org.apiwiz.scriptingengine.models.ScriptLanguage;
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Engine;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContextPoolTest {
+
+    private Engine engine;
+    private ContextPool pool;
+
+    @BeforeEach
+    void setUp() {
+        engine = Engine.newBuilder("js").option("engine.WarnInterpreterOnly", "false").build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (pool != null) pool.close();
+        engine.close();
+    }
+
+    @Test
+    void boundsCheckedOutContextsAndTimesOutWaiters() {
+        pool = pool(new ContextPoolProperties(2, 2, 100, Duration.ofMillis(100)));
+
+        PooledContext first = pool.acquire();
+        PooledContext second = pool.acquire();
+        ScriptExecutionException timeout = assertThrows(ScriptExecutionException.class, pool::acquire);
+        assertTrue(timeout.getMessage().contains("Timed out waiting for a js context after 100 ms"), timeout.getMessage());
+        assertEquals(2, pool.stats().active());
+
+        // a returned context frees a slot and is handed out again
+        first.close();
+        try (PooledContext third = pool.acquire()) {
+            assertSame(first.context(), third.context());
+        }
+        second.close();
+        ContextPool.Stats stats = pool.stats();
+        assertEquals(0, stats.active());
+        assertEquals(2, stats.idle());
+        assertEquals(2, stats.created());
+        assertEquals(3, stats.acquisitions());
+    }
+
+    @Test
+    void retiresContextsAfterMaxUses() {
+        pool = pool(new ContextPoolProperties(1, 1, 2, Duration.ofSeconds(1)));
+
+        Context context;
+        try (PooledContext pooled = pool.acquire()) {
+            context = pooled.context();
+        }
+        try (PooledContext pooled = pool.acquire()) {
+            assertSame(context, pooled.context());
+            assertEquals(2, pooled.getUses());
+        }
+        try (PooledContext pooled = pool.acquire()) {
+            assertNotSame(context, pooled.context());
+            assertEquals(1, pooled.getUses());
+        }
+        assertEquals(1, pool.stats().retired());
+    }
+
+    @Test
+    void resetsGlobalsLeftByTheLastScriptAndRetiresBrokenContexts() {
+        pool = pool(new ContextPoolProperties(1, 1, 100, Duration.ofSeconds(1)));
+
+        Context context;
+        try (PooledContext pooled = pool.acquire()) {
+            context = pooled.context();
+            context.eval("js", "globalThis.leaked = 42;");
+        }
+        try (PooledContext pooled = pool.acquire()) {
+            assertSame(context, pooled.context());
+            assertEquals("undefined", pooled.context().eval("js", "typeof leaked").asString());
+            // a global that cannot be deleted retires the context
+            pooled.context().eval("js", "var pinned = 1;");
+        }
+        try (PooledContext pooled = pool.acquire()) {
+            assertNotSame(context, pooled.context());
+            context = pooled.context();
+            pooled.markBroken();
+        }
+        try (PooledContext pooled = pool.acquire()) {
+            assertNotSame(context, pooled.context());
+        }
+        assertEquals(2, pool.stats().retired());
+    }
+
+    @Test
+    void keepsAtMostMaxIdleContexts() {
+        pool = pool(new ContextPoolProperties(3, 1, 100, Duration.ofSeconds(1)));
+
+        PooledContext a = pool.acquire();
+        PooledContext b = pool.acquire();
+        a.close();
+        b.close();
+        assertEquals(1, pool.stats().idle());
+        assertEquals(1, pool.stats().retired());
+    }
+
+    private ContextPool pool(ContextPoolProperties properties) {
+        return new ContextPool(ScriptLanguage.JAVASCRIPT,
+                (out, err) -> Context.newBuilder("js").engine(engine).out(out).err(err).build(),
+                context -> context.eval("js", """
+                        (() => {
+                          const baseline = new Set(Reflect.ownKeys(globalThis));
+                          return () => {
+                            for (const key of Reflect.ownKeys(globalThis)) {
+                              if (!baseline.has(key) && !delete globalThis[key]) throw new Error('cannot delete ' + String(key));
+                            }
+                          };
+                        })()
+                        """),
+                properties);
+    }
+}
@@ -0,0 +1,139 @@
+package org.apiwiz.scriptingengine.engine;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DependencyFileSystemTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void servesIndexedFilesAndHidesEverythingElse() throws IOException {
+        Path root = dir.resolve("deps/js");
+        write(root.resolve("node_modules/foo/package.json"), "{\"main\":\"index.mjs\"}");
+        write(root.resolve("node_modules/foo/index.mjs"), "export default 1;");
+        write(dir.resolve("secret.txt"), "hidden");
+        DependencyFileSystem fs = new DependencyFileSystem(root);
+
+        Path entry = root.resolve("node_modules/foo/index.mjs");
+        fs.checkAccess(entry, Set.of(AccessMode.READ));
+        assertEquals("export default 1;", read(fs, entry));
+        assertEquals(Boolean.TRUE, fs.readAttributes(root.resolve("node_modules/foo"), "isDirectory").get("isDirectory"));
+        assertEquals(List.of(root.resolve("node_modules/foo")), list(fs, root.resolve("node_modules")));
+
+        // parents of the root are traversable, but only towards the root
+        fs.checkAccess(dir, Set.of(AccessMode.READ));
+        assertEquals(List.of(dir.resolve("deps")), list(fs, dir));
+        assertThrows(NoSuchFileException.class, () -> fs.checkAccess(dir.resolve("secret.txt"), Set.of(AccessMode.READ)));
+        assertThrows(NoSuchFileException.class, () -> fs.newByteChannel(dir.resolve("secret.txt"), Set.of(StandardOpenOption.READ)));
+        assertThrows(NoSuchFileException.class, () -> fs.checkAccess(root.resolve("node_modules/foo/index.js"), Set.of()));
+    }
+
+    @Test
+    void publishingRefreshesTheParentsModificationTime() throws IOException {
+        Path root = dir.resolve("deps/python");
+        write(root.resolve("old/__init__.py"), "");
+        DependencyFileSystem fs = new DependencyFileSystem(root);
+        Files.setLastModifiedTime(root, FileTime.fromMillis(1_000_000));
+        assertEquals(FileTime.fromMillis(1_000_000), fs.readAttributes(root, "lastModifiedTime").get("lastModifiedTime"));
+
+        write(root.resolve("fresh/__init__.py"), "");
+        Files.setLastModifiedTime(root, FileTime.fromMillis(2_000_000));
+        fs.published(root.resolve("fresh"));
+
+        assertEquals(FileTime.fromMillis(2_000_000), fs.readAttributes(root, "lastModifiedTime").get("lastModifiedTime"));
+        assertEquals(Set.of(root.resolve("fresh"), root.resolve("old")), Set.copyOf(list(fs, root)));
+    }
+
+    @Test
+    void deniesWrites() throws IOException {
+        Path root = dir.resolve("deps/python");
+        write(root.resolve("mod.py"), "x = 1");
+        DependencyFileSystem fs = new DependencyFileSystem(root);
+
+        assertThrows(AccessDeniedException.class, () -> fs.checkAccess(root.resolve("mod.py"), Set.of(AccessMode.WRITE)));
+        assertThrows(AccessDeniedException.class,
+                () -> fs.newByteChannel(root.resolve("mod.py"), Set.of(StandardOpenOption.WRITE)));
+        assertThrows(AccessDeniedException.class,
+                () -> fs.newByteChannel(root.resolve("new.py"), Set.of(StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)));
+        assertThrows(AccessDeniedException.class, () -> fs.createDirectory(root.resolve("__pycache__")));
+        assertThrows(AccessDeniedException.class, () -> fs.delete(root.resolve("mod.py")));
+        assertEquals("x = 1", Files.readString(root.resolve("mod.py")));
+    }
+
+    @Test
+    void publishedSubtreesAreReindexed() throws IOException {
+        Path root = dir.resolve("deps/js");
+        DependencyFileSystem fs = new DependencyFileSystem(root);
+        Path pkg = root.resolve("node_modules/@scope/bar");
+        assertThrows(NoSuchFileException.class, () -> fs.checkAccess(pkg, Set.of()));
+
+        write(pkg.resolve("index.mjs"), "export default 'v1';");
+        write(pkg.resolve("old.mjs"), "");
+        fs.published(pkg);
+        assertEquals("export default 'v1';", read(fs, pkg.resolve("index.mjs")));
+        assertEquals(List.of(root.resolve("node_modules/@scope")), list(fs, root.resolve("node_modules")));
+
+        // a reinstall replaces the folder: new content, removed files disappear
+        deleteRecursively(pkg);
+        write(pkg.resolve("index.mjs"), "export default 'v2';");
+        fs.published(pkg);
+        assertEquals("export default 'v2';", read(fs, pkg.resolve("index.mjs")));
+        assertThrows(NoSuchFileException.class, () -> fs.checkAccess(pkg.resolve("old.mjs"), Set.of()));
+    }
+
+    @Test
+    void largeFilesAreServedInFull() throws IOException {
+        Path root = dir.resolve("deps/js");
+        String big = "x".repeat(300_000) + "end";
+        write(root.resolve("node_modules/big/index.mjs"), big);
+        DependencyFileSystem fs = new DependencyFileSystem(root);
+
+        assertEquals(big, read(fs, root.resolve("node_modules/big/index.mjs")));
+        assertEquals(big, read(fs, root.resolve("node_modules/big/index.mjs")));
+    }
+
+    private static String read(DependencyFileSystem fs, Path file) throws IOException {
+        try (SeekableByteChannel channel = fs.newByteChannel(file, Set.of(StandardOpenOption.READ))) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+            ByteBuffer chunk = ByteBuffer.allocate(8192);
+            while (channel.read(chunk) > 0) {
+                buffer.put(chunk.flip());
+                chunk.clear();
+            }
+            return new String(buffer.array(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static List<Path> list(DependencyFileSystem fs, Path dir) throws IOException {
+        List<Path> entries = new ArrayList<>();
+        try (DirectoryStream<Path> stream = fs.newDirectoryStream(dir, p -> true)) {
+            stream.forEach(entries::add);
+        }
+        return entries;
+    }
+
+    private static void write(Path file, String content) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content);
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        try (var paths = Files.walk(dir)) {
+            for (Path p : paths.sorted(java.util.Comparator.reverseOrder()).toList()) Files.delete(p);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package org.apiwiz.scriptingengine.engine;
+
+import org.apiwiz.scriptingengine.config.SourceCacheProperties;
+import org.apiwiz.scriptingengine.models.ScriptLanguage;
+import org.graalvm.polyglot.Source;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SourceCacheTest {
+
+    @Test
+    void returnsTheSameSourceForARepeatedScript() {
+        SourceCache cache = new SourceCache(new SourceCacheProperties(4));
+
+        Source first = cache.get(ScriptLanguage.PYTHON, "user-script.py", null, "1 + 1");
+        assertSame(first, cache.get(ScriptLanguage.PYTHON, "user-script.py", null, "1 + 1"));
+        assertEquals("1 + 1", first.getCharacters().toString());
+
+        // language, name, MIME type and text are all part of the key
+        assertNotSame(first, cache.get(ScriptLanguage.PYTHON, "user-script.py", null, "1 + 2"));
+        assertNotSame(first, cache.get(ScriptLanguage.PYTHON, "other.py", null, "1 + 1"));
+        assertNotSame(first, cache.get(ScriptLanguage.JAVASCRIPT, "user-script.py", null, "1 + 1"));
+        Source module = cache.get(ScriptLanguage.JAVASCRIPT, "user-script.py", "application/javascript+module", "1 + 1");
+        assertEquals("application/javascript+module", module.getMimeType());
+
+        assertEquals(new SourceCache.Stats(4, 4, 1, 5, 1), cache.stats());
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedScript() {
+        SourceCache cache = new SourceCache(new SourceCacheProperties(2));
+
+        cache.get(ScriptLanguage.PYTHON, "s.py", null, "'a'");
+        cache.get(ScriptLanguage.PYTHON, "s.py", null, "'b'");
+        cache.get(ScriptLanguage.PYTHON, "s.py", null, "'a'");
+        cache.get(ScriptLanguage.PYTHON, "s.py", null, "'c'");    // evicts b, used least recently
+        assertEquals(new SourceCache.Stats(2, 2, 1, 3, 1), cache.stats());
+
+        cache.get(ScriptLanguage.PYTHON, "s.py", null, "'a'");    // hit
+        cache.get(ScriptLanguage.PYTHON, "s.py", null, "'b'");    // miss, evicts c
+        assertEquals(new SourceCache.Stats(2, 2, 2, 4, 2), cache.stats());
+
+        cache.clear();
+        cache.get(ScriptLanguage.PYTHON, "s.py", null, "'a'");
+        assertEquals(new SourceCache.Stats(1, 2, 2, 5, 2), cache.stats());
+    }
+}
@@ -0,0 +1,44 @@
+package org.apiwiz.scriptingengine.executor;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import org.apiwiz.scriptingengine.models.ScriptLanguage;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResultMarshallerTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void scalarOutputIsReadFromTheMarshalledToken() throws IOException {
+        assertEquals("42", ResultMarshaller.outputText(json(42), ScriptLanguage.PYTHON));
+        assertEquals("0.5", ResultMarshaller.outputText(json(0.5), ScriptLanguage.JAVASCRIPT));
+        assertEquals("text", ResultMarshaller.outputText(json("text"), ScriptLanguage.JAVASCRIPT));
+        assertEquals("True", ResultMarshaller.outputText(json(true), ScriptLanguage.PYTHON));
+        assertEquals("false", ResultMarshaller.outputText(json(false), ScriptLanguage.JAVASCRIPT));
+        assertEquals("None", ResultMarshaller.outputText(json(null), ScriptLanguage.PYTHON));
+        assertEquals("null", ResultMarshaller.outputText(json(null), ScriptLanguage.JAVASCRIPT));
+    }
+
+    @Test
+    void structuredResultsAreRenderedAsCompactJson() throws IOException {
+        TokenBuffer list = json(List.of(1, 2));
+        assertEquals("[1,2]", ResultMarshaller.outputText(list, ScriptLanguage.PYTHON));
+        assertEquals("{\"a\":[true,null]}",
+                ResultMarshaller.outputText(json(Map.of("a", Arrays.asList(true, null))), ScriptLanguage.JAVASCRIPT));
+        assertEquals("[1,2]", mapper.writeValueAsString(list), "the buffer can still be written");
+    }
+
+    private TokenBuffer json(Object value) throws IOException {
+        TokenBuffer buffer = new TokenBuffer(mapper, false);
+        mapper.writeValue(buffer, value);
+        return buffer;
+    }
+}
@@ -0,0 +1,92 @@
+package org.apiwiz.scriptingengine.service;
+
+import org.apiwiz.scriptingengine.config.AdmissionProperties;
+import org.apiwiz.scriptingengine.exception.ExecutionRejectedException;
+import org.apiwiz.scriptingengine.models.ScriptLanguage;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdmissionControlTest {
+
+    @Test
+    void rejectsWhenQueueIsFullAndWhenQueuedTooLong() throws Exception {
+        AdmissionControl admission = admission(
+                new AdmissionProperties.Limits(1, 1, Duration.ofMillis(300)),
+                new AdmissionProperties.Adaptive(false, 1, Duration.ofSeconds(1), 0.9));
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<String> holder = CompletableFuture.supplyAsync(() -> admission.run(ScriptLanguage.PYTHON, () -> {
+            running.countDown();
+            await(release);
+            return "first";
+        }));
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> admission.run(ScriptLanguage.PYTHON, () -> "second"));
+        while (stats(admission, ScriptLanguage.PYTHON).waiting() == 0) Thread.sleep(5);
+
+        // the queue holds one waiter: the next request is turned away immediately
+        ExecutionRejectedException full = assertThrows(ExecutionRejectedException.class,
+                () -> admission.run(ScriptLanguage.PYTHON, () -> "third"));
+        assertTrue(full.getMessage().contains("queue is full"));
+        assertTrue(full.getRetryAfter().toSeconds() >= 1);
+
+        // the waiter gives up after the queue timeout
+        Exception timedOut = assertThrows(Exception.class, queued::join);
+        assertInstanceOf(ExecutionRejectedException.class, timedOut.getCause());
+
+        // other languages have their own limiter
+        assertEquals("js", admission.run(ScriptLanguage.JAVASCRIPT, () -> "js"));
+
+        release.countDown();
+        assertEquals("first", holder.get(5, TimeUnit.SECONDS));
+        assertEquals("after", admission.run(ScriptLanguage.PYTHON, () -> "after"));
+        assertEquals(2, stats(admission, ScriptLanguage.PYTHON).rejected());
+    }
+
+    @Test
+    void adaptiveLimitBacksOffOnSlowExecutionsAndRecovers() {
+        AdmissionControl admission = admission(
+                new AdmissionProperties.Limits(4, 8, Duration.ofSeconds(1)),
+                new AdmissionProperties.Adaptive(true, 1, Duration.ofMillis(20), 0.5));
+
+        admission.run(ScriptLanguage.PYTHON, () -> sleep(40));
+        assertEquals(2, stats(admission, ScriptLanguage.PYTHON).limit());
+
+        for (int i = 0; i < 10; i++) admission.run(ScriptLanguage.PYTHON, () -> "fast");
+        assertEquals(4, stats(admission, ScriptLanguage.PYTHON).limit());
+    }
+
+    private static AdmissionControl admission(AdmissionProperties.Limits limits, AdmissionProperties.Adaptive adaptive) {
+        return new AdmissionControl(new AdmissionProperties(true, limits, Map.of(), adaptive));
+    }
+
+    private static AdmissionControl.Stats stats(AdmissionControl admission, ScriptLanguage language) {
+        return admission.stats().stream().filter(s -> s.language() == language).findFirst().orElseThrow();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static String sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "slow";
+    }
+}
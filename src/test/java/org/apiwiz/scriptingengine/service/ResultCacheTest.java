@@ -0,0 +1,136 @@
+package org.apiwiz.scriptingengine.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import org.apiwiz.scriptingengine.config.ResultCacheProperties;
+import org.apiwiz.scriptingengine.dto.ScriptResponse;
+import org.apiwiz.scriptingengine.exception.ExecutionLimitExceededException;
+import org.apiwiz.scriptingengine.exception.ScriptExecutionException;
+import org.apiwiz.scriptingengine.executor.ScriptExecution;
+import org.apiwiz.scriptingengine.models.ScriptLanguage;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResultCacheTest {
+
+    private final ResultCache cache = new ResultCache(
+            new ResultCacheProperties(DataSize.ofMegabytes(1), Duration.ofMinutes(1)));
+
+    @Test
+    void concurrentIdenticalRequestsShareOneExecution() throws Exception {
+        ResultCache.Key key = ResultCache.key(ScriptLanguage.PYTHON, "21 * 2", null);
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<CompletableFuture<ScriptResponse>> callers = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 8; i++) {
+                callers.add(CompletableFuture.supplyAsync(() -> cache.get(key, new ScriptExecution(), () -> {
+                    executions.incrementAndGet();
+                    await(release);
+                    return new ScriptResponse("42", true);
+                }), executor));
+            }
+            while (executions.get() == 0) Thread.sleep(5);
+            Thread.sleep(100);
+            release.countDown();
+            for (CompletableFuture<ScriptResponse> caller : callers) {
+                assertEquals("42", caller.get(5, TimeUnit.SECONDS).output());
+            }
+        }
+        assertEquals(1, executions.get());
+
+        assertEquals("42", cache.get(key, new ScriptExecution(), () -> fail("served from the cache")).output());
+        ResultCache.Stats stats = cache.stats();
+        assertEquals(1, stats.size());
+        assertEquals(1, stats.misses());
+        assertEquals(8, stats.hits());
+        assertTrue(stats.weightBytes() > 0);
+    }
+
+    @Test
+    void failuresAreNeverCached() {
+        ResultCache.Key key = ResultCache.key(ScriptLanguage.JAVASCRIPT, "boom()", "{}");
+
+        assertThrows(ScriptExecutionException.class, () -> cache.get(key, new ScriptExecution(), () -> {
+            throw new ScriptExecutionException("boom", null);
+        }));
+        assertFalse(cache.get(key, new ScriptExecution(), () -> new ScriptResponse("failed", false)).success());
+        assertEquals("ok", cache.get(key, new ScriptExecution(), () -> new ScriptResponse("ok", true)).output());
+        assertEquals("ok", cache.get(key, new ScriptExecution(), () -> fail("served from the cache")).output());
+    }
+
+    @Test
+    void waitersGiveUpOnceTheSharedExecutionIsPastItsDeadline() throws Exception {
+        ResultCache.Key key = ResultCache.key(ScriptLanguage.PYTHON, "while True: pass", null);
+        ScriptExecution leader = new ScriptExecution();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            CompletableFuture<ScriptResponse> running = CompletableFuture.supplyAsync(() -> cache.get(key, leader, () -> {
+                leader.startDeadline(Duration.ofMillis(100));
+                started.countDown();
+                await(release);     // ignores its deadline, like a stuck cancellation
+                return new ScriptResponse("late", true);
+            }), executor);
+            await(started);
+
+            long start = System.nanoTime();
+            ExecutionLimitExceededException e = assertThrows(ExecutionLimitExceededException.class,
+                    () -> cache.get(key, new ScriptExecution(), () -> fail("shares the running execution")));
+            assertEquals(ExecutionLimitExceededException.TIMEOUT, e.getLimit());
+            assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(ResultCache.WAIT_GRACE.plusSeconds(2)) < 0);
+
+            release.countDown();
+            assertEquals("late", running.get(5, TimeUnit.SECONDS).output());
+        }
+    }
+
+    @Test
+    void structuredResultsAreWeighedByTheirContent() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        TokenBuffer small = new TokenBuffer(mapper, false);
+        mapper.writeValue(small, 42);
+        TokenBuffer large = new TokenBuffer(mapper, false);
+        mapper.writeValue(large, List.of("x".repeat(100_000), "y".repeat(100_000)));
+
+        int smallWeight = ResultCache.weight(new ScriptResponse(null, small));
+        int largeWeight = ResultCache.weight(new ScriptResponse(null, large));
+        assertTrue(smallWeight < 512, "weight " + smallWeight);
+        assertTrue(largeWeight >= 400_000, "weight " + largeWeight);
+
+        // still readable after weighing
+        assertEquals("[\"" + "x".repeat(3), mapper.writeValueAsString(large).substring(0, 5));
+    }
+
+    @Test
+    void keysSeparateLanguagesScriptsAndInputs() {
+        assertEquals(ResultCache.key(ScriptLanguage.PYTHON, "x", "{\"a\":1}"),
+                ResultCache.key(ScriptLanguage.PYTHON, "x", "{\"a\":1}"));
+        assertNotEquals(ResultCache.key(ScriptLanguage.PYTHON, "x", null),
+                ResultCache.key(ScriptLanguage.JAVASCRIPT, "x", null));
+        assertNotEquals(ResultCache.key(ScriptLanguage.PYTHON, "x", "{\"a\":1}"),
+                ResultCache.key(ScriptLanguage.PYTHON, "x", "{\"a\":2}"));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
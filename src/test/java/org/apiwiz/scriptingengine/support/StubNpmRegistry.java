@@ -0,0 +1,193 @@
+package org.apiwiz.scriptingengine.support;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Minimal npm registry served from memory: packuments at {@code /<name>}
+ * and tarballs at {@code /-/<name>-<version>.tgz}, with optional latency
+ * per request.
+ */
+public class StubNpmRegistry implements AutoCloseable {
+
+    private record Published(String name, String version, List<String> dependencies, byte[] tarball) {}
+
+    private final HttpServer server;
+    private final Map<String, Published> packages = new ConcurrentHashMap<>();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger tarballRequests = new AtomicInteger();
+    private final AtomicInteger notModified = new AtomicInteger();
+    private volatile String lastAccept;
+    private volatile Duration latency = Duration.ZERO;
+
+    public StubNpmRegistry() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    public String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+    }
+
+    public StubNpmRegistry latency(Duration latency) {
+        this.latency = latency;
+        return this;
+    }
+
+    public int requestCount() {
+        return requests.get();
+    }
+
+    public int tarballRequestCount() {
+        return tarballRequests.get();
+    }
+
+    /** Metadata requests answered with 304 because the client's ETag matched. */
+    public int notModifiedCount() {
+        return notModified.get();
+    }
+
+    public String lastAcceptHeader() {
+        return lastAccept;
+    }
+
+    /** Publishes a package whose index.js exports its own name. */
+    public StubNpmRegistry publish(String name, String version, String... dependencies) throws IOException {
+        return publish(name, version, Map.of("index.js", "module.exports = '" + name + "';\n"), dependencies);
+    }
+
+    /**
+     * Publishes a package with the given files, by path inside the package;
+     * a package.json with "main": "index.js" is added unless one is given.
+     */
+    public StubNpmRegistry publish(String name, String version, Map<String, String> files,
+                                   String... dependencies) throws IOException {
+        JSONObject deps = new JSONObject();
+        for (String dep : dependencies) deps.put(dep, "*");
+        JSONObject packageJson = new JSONObject()
+                .put("name", name)
+                .put("version", version)
+                .put("main", "index.js")
+                .put("dependencies", deps);
+        Map<String, String> contents = new LinkedHashMap<>();
+        contents.put("package/package.json", packageJson.toString(2));
+        files.forEach((path, content) -> contents.put("package/" + path, content));
+        packages.put(name, new Published(name, version, List.of(dependencies), tarball(contents)));
+        return this;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try {
+            if (!latency.isZero()) Thread.sleep(latency);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        String path = URLDecoder.decode(exchange.getRequestURI().getRawPath(), StandardCharsets.UTF_8).substring(1);
+        if (path.startsWith("-/")) {
+            tarballRequests.incrementAndGet();
+            String file = path.substring(2);
+            Published pkg = packages.values().stream()
+                    .filter(p -> file.equals(tarballName(p)))
+                    .findFirst().orElse(null);
+            if (pkg == null) respond(exchange, 404, "application/json", "{}".getBytes());
+            else respond(exchange, 200, "application/octet-stream", pkg.tarball());
+            return;
+        }
+        lastAccept = exchange.getRequestHeaders().getFirst("Accept");
+        Published pkg = packages.get(path);
+        if (pkg == null) {
+            respond(exchange, 404, "application/json", "{\"error\":\"Not found\"}".getBytes());
+            return;
+        }
+        String etag = "\"" + pkg.name() + "@" + pkg.version() + "\"";
+        exchange.getResponseHeaders().set("ETag", etag);
+        if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            notModified.incrementAndGet();
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+        respond(exchange, 200, "application/json", packument(pkg).toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private JSONObject packument(Published pkg) {
+        JSONObject deps = new JSONObject();
+        pkg.dependencies().forEach(d -> deps.put(d, "*"));
+        JSONObject version = new JSONObject()
+                .put("name", pkg.name())
+                .put("version", pkg.version())
+                .put("dependencies", deps)
+                .put("dist", new JSONObject()
+                        .put("tarball", url() + "-/" + tarballName(pkg))
+                        .put("integrity", integrity(pkg.tarball())));
+        return new JSONObject()
+                .put("name", pkg.name())
+                .put("dist-tags", new JSONObject().put("latest", pkg.version()))
+                .put("versions", new JSONObject().put(pkg.version(), version));
+    }
+
+    private static String tarballName(Published pkg) {
+        return pkg.name().replace('/', '-') + "-" + pkg.version() + ".tgz";
+    }
+
+    private static void respond(HttpExchange exchange, int status, String type, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", type);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    public static byte[] tarball(Map<String, String> files) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (TarArchiveOutputStream tar = new TarArchiveOutputStream(new GzipCompressorOutputStream(bytes))) {
+            tar.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+            for (Map.Entry<String, String> file : files.entrySet()) {
+                byte[] content = file.getValue().getBytes(StandardCharsets.UTF_8);
+                TarArchiveEntry entry = new TarArchiveEntry(file.getKey());
+                entry.setSize(content.length);
+                tar.putArchiveEntry(entry);
+                tar.write(content);
+                tar.closeArchiveEntry();
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    public static String integrity(byte[] data) {
+        try {
+            return "sha512-" + Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-512").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
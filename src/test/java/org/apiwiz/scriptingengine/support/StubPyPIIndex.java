@@ -0,0 +1,109 @@
+package org.apiwiz.scriptingengine.support;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Minimal PyPI JSON API served from memory: {@code /<name>/json} lists a
+ * single pure-Python wheel, served at {@code /files/<name>-<version>-py3-none-any.whl}.
+ * Wheels carry a {@code .dist-info} folder like real ones. Unknown
+ * distributions get a 404. Every requested path is recorded.
+ */
+public class StubPyPIIndex implements AutoCloseable {
+
+    private record Published(String name, String version, byte[] wheel) {}
+
+    private final HttpServer server;
+    private final Map<String, Published> packages = new ConcurrentHashMap<>();
+    private final List<String> requested = new CopyOnWriteArrayList<>();
+
+    public StubPyPIIndex() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    public String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+    }
+
+    /** Paths requested so far, in order. */
+    public List<String> requestedPaths() {
+        return List.copyOf(requested);
+    }
+
+    /** Publishes a wheel with the given files, by path inside the wheel, replacing any earlier version. */
+    public StubPyPIIndex publish(String name, String version, Map<String, String> files) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            for (Map.Entry<String, String> file : files.entrySet()) {
+                zip.putNextEntry(new ZipEntry(file.getKey()));
+                zip.write(file.getValue().getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+            zip.putNextEntry(new ZipEntry(name.replace('-', '_') + "-" + version + ".dist-info/METADATA"));
+            zip.write(("Metadata-Version: 2.1\nName: " + name + "\nVersion: " + version + "\n")
+                    .getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+        }
+        packages.put(name, new Published(name, version, bytes.toByteArray()));
+        return this;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        requested.add(path);
+        if (path.startsWith("/files/")) {
+            String file = path.substring("/files/".length());
+            Published pkg = packages.values().stream()
+                    .filter(p -> file.equals(wheelName(p)))
+                    .findFirst().orElse(null);
+            if (pkg == null) respond(exchange, 404, "{}".getBytes());
+            else respond(exchange, 200, pkg.wheel());
+            return;
+        }
+        Published pkg = path.endsWith("/json") ? packages.get(path.substring(1, path.length() - "/json".length())) : null;
+        if (pkg == null) {
+            respond(exchange, 404, "{\"message\":\"Not Found\"}".getBytes());
+            return;
+        }
+        JSONObject document = new JSONObject()
+                .put("info", new JSONObject().put("name", pkg.name()).put("version", pkg.version()))
+                .put("urls", new JSONArray().put(new JSONObject()
+                        .put("python_version", "py3")
+                        .put("url", url() + "files/" + wheelName(pkg))));
+        respond(exchange, 200, document.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String wheelName(Published pkg) {
+        return pkg.name() + "-" + pkg.version() + "-py3-none-any.whl";
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
@@ -0,0 +1,81 @@
+package org.apiwiz.scriptingengine.utils;
+
+import org.apiwiz.scriptingengine.support.StubNpmRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ArchiveExtractorTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void extractsOnlyEntriesUnderPrefixWithPrefixStripped() throws Exception {
+        byte[] tgz = StubNpmRegistry.tarball(Map.of(
+                "package/package.json", "{}",
+                "package/lib/index.js", "module.exports = 1;",
+                "other/ignored.txt", "x"));
+
+        long written = ArchiveExtractor.extractTarGz(new ByteArrayInputStream(tgz), tempDir, "package/");
+
+        assertEquals("module.exports = 1;", Files.readString(tempDir.resolve("lib/index.js")));
+        assertTrue(Files.exists(tempDir.resolve("package.json")));
+        assertFalse(Files.exists(tempDir.resolve("other")));
+        assertEquals(21, written);
+    }
+
+    @Test
+    void extractsZipArchives() throws Exception {
+        byte[] zip = zip(Map.of("pkg/__init__.py", "VALUE = 42\n", "pkg-1.0.dist-info/METADATA", "Name: pkg\n"));
+
+        ArchiveExtractor.extractZip(new ByteArrayInputStream(zip), tempDir);
+
+        assertEquals("VALUE = 42\n", Files.readString(tempDir.resolve("pkg/__init__.py")));
+        assertTrue(Files.exists(tempDir.resolve("pkg-1.0.dist-info/METADATA")));
+    }
+
+    @Test
+    void rejectsEntriesEscapingTheTargetDirectory() throws Exception {
+        byte[] zip = zip(Map.of("../evil.py", "import os"));
+
+        assertThrows(IOException.class,
+                () -> ArchiveExtractor.extractZip(new ByteArrayInputStream(zip), tempDir.resolve("target")));
+        assertFalse(Files.exists(tempDir.resolve("evil.py")));
+    }
+
+    @Test
+    void syncsEveryFileOfAnExtractedTree() throws Exception {
+        byte[] zip = zip(Map.of("pkg/__init__.py", "", "pkg/sub/deep/mod.py", "X = 1\n", "top.py", ""));
+        Path target = tempDir.resolve("target");
+        ArchiveExtractor.extractZip(new ByteArrayInputStream(zip), target);
+
+        ArchiveExtractor.syncTree(target);
+
+        assertEquals("X = 1\n", Files.readString(target.resolve("pkg/sub/deep/mod.py")));
+        assertThrows(IOException.class, () -> ArchiveExtractor.syncTree(tempDir.resolve("missing")));
+    }
+
+    static byte[] zip(Map<String, String> files) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            for (Map.Entry<String, String> file : files.entrySet()) {
+                zip.putNextEntry(new ZipEntry(file.getKey()));
+                zip.write(file.getValue().getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+        }
+        return bytes.toByteArray();
+    }
+}
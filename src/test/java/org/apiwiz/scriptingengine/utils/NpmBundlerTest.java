@@ -0,0 +1,102 @@
+package org.apiwiz.scriptingengine.utils;
+
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Source;
+import org.graalvm.polyglot.Value;
+import org.graalvm.polyglot.io.IOAccess;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NpmBundlerTest {
+
+    @TempDir
+    Path root;
+
+    @Test
+    void bundlesThePackageGraphAndLoadsLikeTheTree() throws Exception {
+        Path lib = write("lib", Map.of(
+                "package.json", "{\"name\": \"lib\", \"main\": \"src/main.js\"}",
+                "src/main.js", """
+                        #!/usr/bin/env node
+                        const a = require('./a');
+                        const util = require('../util');
+                        const data = require('./data.json');
+                        exports.name = 'lib';
+                        exports.sum = a.value + util.value + data.value;
+                        exports.self = require('lib/src/a.js') === a;
+                        exports.cycle = a.seenMain;
+                        exports.other = require('other');
+                        exports.dynamic = require('./dyn' + '');
+                        exports.thisIsExports = a.thisIsExports;
+                        """,
+                "src/a.js", """
+                        const main = require('./main');
+                        exports.seenMain = typeof main.name;
+                        exports.value = 1;
+                        exports.thisIsExports = this === module.exports;
+                        """,
+                "src/data.json", "{\"value\": 100}",
+                "src/dyn.js", "module.exports = 'dynamic';",
+                "util/package.json", "{\"main\": \"impl\"}",
+                "util/impl.js", "module.exports = { value: 10 };"));
+        write("other", Map.of("package.json", "{\"main\": \"index.js\"}", "index.js", "module.exports = 'other';"));
+
+        JSONObject packageJson = new JSONObject(Files.readString(lib.resolve("package.json")));
+        assertEquals(4, NpmBundler.bundle(lib, "lib", packageJson));
+        String bundle = Files.readString(lib.resolve(NpmBundler.BUNDLE_FILE));
+        assertTrue(bundle.contains("\"src/main.js\", \"src/a.js\", \"util/impl.js\", \"src/data.json\""), bundle);
+        assertFalse(bundle.contains("'dynamic'"), "computed requires are left to the loader");
+
+        Files.writeString(lib.resolve("package.json"), packageJson.put("main", NpmBundler.BUNDLE_FILE).toString());
+        try (Context context = context()) {
+            Value imported = context.eval(Source.newBuilder("js", """
+                    import lib, { sum } from 'lib';
+                    export const result = [lib.name, sum, lib.self, lib.cycle, lib.other, lib.dynamic, lib.thisIsExports].join();
+                    """, "test.mjs").mimeType("application/javascript+module").build());
+            assertEquals("lib,111,true,undefined,other,dynamic,true", imported.getMember("result").asString());
+            assertEquals(111, context.eval("js", "require('lib').sum").asInt());
+        }
+    }
+
+    @Test
+    void leavesEsModulePackagesAlone() throws Exception {
+        Path typed = write("typed", Map.of("package.json", "{\"type\": \"module\"}", "index.js", "export default 1;"));
+        Path mjs = write("mjs", Map.of("package.json", "{\"main\": \"index.mjs\"}", "index.mjs", "export default 1;"));
+        Path empty = write("empty", Map.of("package.json", "{\"main\": \"missing.js\"}"));
+
+        for (Path dir : new Path[]{typed, mjs, empty}) {
+            assertEquals(0, NpmBundler.bundle(dir, dir.getFileName().toString(),
+                    new JSONObject(Files.readString(dir.resolve("package.json")))));
+            assertFalse(Files.exists(dir.resolve(NpmBundler.BUNDLE_FILE)));
+        }
+    }
+
+    private Path write(String pkg, Map<String, String> files) throws IOException {
+        Path dir = root.resolve("node_modules").resolve(pkg);
+        for (Map.Entry<String, String> file : files.entrySet()) {
+            Path path = dir.resolve(file.getKey());
+            Files.createDirectories(path.getParent());
+            Files.writeString(path, file.getValue());
+        }
+        return dir;
+    }
+
+    private Context context() {
+        return Context.newBuilder("js")
+                .allowIO(IOAccess.ALL)
+                .allowExperimentalOptions(true)
+                .option("engine.WarnInterpreterOnly", "false")
+                .option("js.commonjs-require", "true")
+                .option("js.commonjs-require-cwd", root.toString())
+                .option("js.esm-eval-returns-exports", "true")
+                .build();
+    }
+}
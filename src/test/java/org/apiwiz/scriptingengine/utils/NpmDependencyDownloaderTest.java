@@ -0,0 +1,169 @@
+package org.apiwiz.scriptingengine.utils;
+
+import org.apiwiz.scriptingengine.support.StubNpmRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NpmDependencyDownloaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    private StubNpmRegistry registry;
+
+    @BeforeEach
+    void startRegistry() throws Exception {
+        registry = new StubNpmRegistry();
+    }
+
+    @AfterEach
+    void stopRegistry() {
+        registry.close();
+    }
+
+    @Test
+    void installsTransitiveDependenciesAndRecordsThem() throws Exception {
+        registry.publish("app", "1.0.0", "left", "right")
+                .publish("left", "2.0.0", "leaf")
+                .publish("right", "3.0.0", "leaf")
+                .publish("leaf", "0.1.0");
+
+        NpmDependencyDownloader downloader = downloader(tempDir, 4, 4);
+        List<String> installed = downloader.installDependencies(Set.of("app"));
+
+        assertEquals(List.of("app", "leaf", "left", "right"), installed);
+        assertTrue(Files.exists(tempDir.resolve("node_modules/leaf/index.mjs")));
+        NpmPackageIndex.Entry app = downloader.packageIndex().get("app").orElseThrow();
+        assertEquals("1.0.0", app.version());
+        assertEquals(List.of("left", "right"), app.dependencies());
+        assertTrue(app.integrity().startsWith("sha512-"));
+    }
+
+    @Test
+    void skipsRegistryWhenEverythingIsInstalled() throws Exception {
+        registry.publish("app", "1.0.0", "leaf").publish("leaf", "0.1.0");
+        downloader(tempDir, 4, 4).installDependencies(Set.of("app"));
+        int requests = registry.requestCount();
+
+        // a fresh downloader reads the persisted index
+        List<String> installed = downloader(tempDir, 4, 4)
+                .installDependencies(Set.of("app"));
+
+        assertTrue(installed.isEmpty());
+        assertEquals(requests, registry.requestCount());
+    }
+
+    @Test
+    void parallelInstallOfWideTreeIsFasterAndDeterministic() throws Exception {
+        String[] leaves = IntStream.range(0, 24).mapToObj(i -> "leaf-" + i).toArray(String[]::new);
+        registry.publish("wide", "1.0.0", leaves);
+        for (String leaf : leaves) registry.publish(leaf, "1.0.0");
+        registry.latency(Duration.ofMillis(40));
+
+        Path serialRoot = tempDir.resolve("serial");
+        long serialStart = System.nanoTime();
+        List<String> serial = downloader(serialRoot, 1, 1)
+                .installDependencies(Set.of("wide"));
+        long serialNanos = System.nanoTime() - serialStart;
+
+        Path parallelRoot = tempDir.resolve("parallel");
+        long parallelStart = System.nanoTime();
+        List<String> parallel = downloader(parallelRoot, 16, 16)
+                .installDependencies(Set.of("wide"));
+        long parallelNanos = System.nanoTime() - parallelStart;
+
+        assertEquals(serial, parallel);
+        assertEquals(25, parallel.size());
+        assertEquals(Files.readString(serialRoot.resolve(NpmPackageIndex.INDEX_FILE)),
+                Files.readString(parallelRoot.resolve(NpmPackageIndex.INDEX_FILE)));
+        assertTrue(parallelNanos * 3 < serialNanos,
+                "expected a clear speedup, serial=" + serialNanos / 1_000_000 + "ms parallel="
+                        + parallelNanos / 1_000_000 + "ms");
+    }
+
+    @Test
+    void concurrentRequestsShareOneInstall() throws Exception {
+        registry.publish("app", "1.0.0", "leaf").publish("leaf", "0.1.0").latency(Duration.ofMillis(100));
+        NpmDependencyDownloader downloader = downloader(tempDir, 4, 4);
+
+        CompletableFuture<List<String>> first = CompletableFuture.supplyAsync(() -> install(downloader));
+        CompletableFuture<List<String>> second = CompletableFuture.supplyAsync(() -> install(downloader));
+        first.join();
+        second.join();
+
+        assertEquals(2, registry.tarballRequestCount());
+        assertTrue(Files.exists(tempDir.resolve("node_modules/app/index.mjs")));
+        assertTrue(Files.exists(tempDir.resolve("node_modules/leaf/index.mjs")));
+    }
+
+    @Test
+    void revalidatesCachedMetadataInsteadOfRefetchingIt() throws Exception {
+        registry.publish("app", "1.0.0");
+        NpmDependencyDownloader downloader = downloader(tempDir, 1, 1);
+        downloader.installDependencies(Set.of("app"));
+        assertTrue(registry.lastAcceptHeader().startsWith("application/vnd.npm.install-v1+json"));
+
+        downloader.packageIndex().invalidate("app");
+        downloader.installDependencies(Set.of("app"));
+
+        assertEquals(1, registry.notModifiedCount());
+        assertEquals("1.0.0", downloader.packageIndex().get("app").orElseThrow().version());
+    }
+
+    @Test
+    void prelinksCommonJsPackagesIntoOneBundle() throws Exception {
+        registry.publish("multi", "1.0.0", Map.of(
+                        "index.js", "module.exports = require('./lib/a') + require('leaf');",
+                        "lib/a.js", "module.exports = 'a';"), "leaf")
+                .publish("leaf", "0.1.0")
+                .publish("esm", "1.0.0", Map.of("index.mjs", "export default 1;",
+                        "package.json", "{\"name\": \"esm\", \"main\": \"index.mjs\"}"));
+        NpmDependencyDownloader downloader = new NpmDependencyDownloader(tempDir,
+                new RegistryClient(tempDir.resolve(".registry-cache")), registry.url(), 4, 4, true);
+
+        downloader.installDependencies(Set.of("multi", "esm"));
+
+        Path multi = tempDir.resolve("node_modules/multi");
+        assertEquals(NpmBundler.BUNDLE_FILE, downloader.packageIndex().get("multi").orElseThrow().entry());
+        assertTrue(Files.readString(multi.resolve(NpmBundler.BUNDLE_FILE)).contains("\"lib/a.js\""));
+        assertTrue(Files.exists(multi.resolve("index.js")), "the original tree stays in place");
+        assertEquals(NpmBundler.BUNDLE_FILE, downloader.packageIndex().get("leaf").orElseThrow().entry());
+        assertEquals("index.mjs", downloader.packageIndex().get("esm").orElseThrow().entry());
+    }
+
+    @Test
+    void removesLeftoverStagingDirectoriesOnStartup() throws Exception {
+        Path leftover = Files.createDirectories(tempDir.resolve(".staging/interrupted/package"));
+        Files.writeString(leftover.resolve("index.js"), "half written");
+
+        downloader(tempDir, 1, 1);
+
+        assertFalse(Files.exists(tempDir.resolve(".staging")));
+    }
+
+    private NpmDependencyDownloader downloader(Path root, int concurrency, int perHostConcurrency) {
+        return new NpmDependencyDownloader(root, new RegistryClient(root.resolve(".registry-cache")),
+                registry.url(), concurrency, perHostConcurrency);
+    }
+
+    private static List<String> install(NpmDependencyDownloader downloader) {
+        try {
+            return downloader.installDependencies(Set.of("app"));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package org.apiwiz.scriptingengine.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.ThrowingSupplier;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NpmDependencyExtractorTest {
+
+    @Test
+    void findsEveryImportFormAndMapsSpecifiersToPackages() {
+        String script = """
+                import _ from 'lodash/fp';
+                import { a, b } from "@scope/pkg/sub/path";
+                import * as ns from 'namespaced';
+                import 'side-effect';
+                export { x } from 're-exported';
+                export * from '@scope/all';
+                const lazy = await import('dynamic');
+                const cjs = require('commonjs');
+                const fs = require('fs');
+                const pr = require('node:fs/promises');
+                import local from './local.js';
+                import up from '../up';
+                import abs from '/abs/path';
+                """;
+
+        assertEquals(Set.of("lodash", "@scope/pkg", "namespaced", "side-effect", "re-exported",
+                        "@scope/all", "dynamic", "commonjs"),
+                NpmDependencyExtractor.extractRequiredModules(script));
+    }
+
+    @Test
+    void ignoresCommentsStringsTemplatesAndRegexes() {
+        String script = """
+                // require('in-line-comment')
+                /* import x from 'in-block-comment' */
+                const s = "require('in-string')";
+                const t = `import y from 'in-template' ${require('in-substitution')} done`;
+                const re = /require\\('in-regex'\\)/g;
+                const ratio = a / b / c; require('after-division');
+                obj.require('method-call');
+                require(name);
+                """;
+
+        assertEquals(Set.of("in-substitution", "after-division"),
+                NpmDependencyExtractor.extractRequiredModules(script));
+    }
+
+    @Test
+    void handlesMultiMegabyteInputsInLinearTime() {
+        // the old reluctant `import\s+(?:[^;]+?)\s+from` was quadratic on an import without `from`
+        Function<Integer, String> bundle = size -> {
+            StringBuilder sb = new StringBuilder("import ");
+            for (int i = 0; sb.length() < size; i++) {
+                sb.append("a, b = c / d; x = `t${e}` + 'q' + /re/.source; require('pkg-").append(i % 97).append("') ");
+            }
+            return sb.toString();
+        };
+        String large = bundle.apply(8 << 20);
+
+        assertTrue(assertCompletesQuickly(() -> NpmDependencyExtractor.extractRequiredModules(large)).contains("pkg-96"));
+    }
+
+    /**
+     * A linear scan of a few megabytes takes well under a second, a
+     * quadratic one hours; the bound is loose enough for a loaded machine.
+     * Relative scaling is measured by ExtractorBenchmark.
+     */
+    static <T> T assertCompletesQuickly(ThrowingSupplier<T> extraction) {
+        return assertTimeoutPreemptively(Duration.ofSeconds(30), extraction);
+    }
+}
@@ -0,0 +1,97 @@
+package org.apiwiz.scriptingengine.utils;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NpmPackageIndexTest {
+
+    @TempDir
+    Path root;
+
+    @Test
+    void recordsEntriesAndPersistsThemWithTheirClosureFlag() throws IOException {
+        NpmPackageIndex index = new NpmPackageIndex(root);
+        index.record(new NpmPackageIndex.Entry("app", "1.0.0", "sha512-x", "index.mjs", List.of("dep")));
+        index.record(new NpmPackageIndex.Entry("dep", "2.0.0", "", "index.mjs", List.of()));
+        assertFalse(index.isSatisfied("app"), "recorded, but no install has finished the closure yet");
+
+        index.markSatisfied(Set.of("app", "unknown"));
+        assertTrue(index.isSatisfied("app"));
+        assertFalse(index.isSatisfied("dep"));
+        assertFalse(index.isSatisfied("unknown"), "only recorded packages are flagged");
+
+        NpmPackageIndex reloaded = new NpmPackageIndex(root);
+        assertTrue(reloaded.isSatisfied("app"));
+        assertEquals(new NpmPackageIndex.Entry("app", "1.0.0", "sha512-x", "index.mjs", List.of("dep")),
+                reloaded.get("app").orElseThrow());
+    }
+
+    @Test
+    void changedDependenciesAndInvalidationClearTheClosureFlags() throws IOException {
+        NpmPackageIndex index = new NpmPackageIndex(root);
+        index.record(new NpmPackageIndex.Entry("app", "1.0.0", "", "index.mjs", List.of("dep")));
+        index.record(new NpmPackageIndex.Entry("dep", "1.0.0", "", "index.mjs", List.of()));
+        index.markSatisfied(Set.of("app"));
+
+        // same dependencies: still satisfied
+        index.record(new NpmPackageIndex.Entry("dep", "1.0.1", "", "index.mjs", List.of()));
+        assertTrue(index.isSatisfied("app"));
+
+        // dep now needs something that is not installed
+        index.record(new NpmPackageIndex.Entry("dep", "1.1.0", "", "index.mjs", List.of("new-dep")));
+        assertFalse(index.isSatisfied("app"));
+
+        index.markSatisfied(Set.of("app"));
+        index.invalidate("dep");
+        assertFalse(index.isSatisfied("app"));
+        assertTrue(index.get("dep").isEmpty());
+    }
+
+    @Test
+    void refreshRebuildsFromNodeModulesUsingTheNodeDefaultEntry() throws IOException {
+        writePackage("app", new JSONObject().put("version", "1.0.0")
+                .put("dependencies", new JSONObject().put("dep", "^1").put("missing", "^1")));
+        writePackage("dep", new JSONObject().put("version", "1.2.0").put("main", "lib/dep.js"));
+        writePackage("@scope/util", new JSONObject().put("version", "0.1.0"));
+        Files.createDirectories(root.resolve("node_modules/not-a-package"));
+
+        NpmPackageIndex index = new NpmPackageIndex(root);
+
+        assertEquals("0.1.0", index.get("@scope/util").orElseThrow().version());
+        assertTrue(index.get("not-a-package").isEmpty());
+        assertEquals(NpmPackageIndex.DEFAULT_ENTRY, index.get("app").orElseThrow().entry());
+        assertEquals("lib/dep.js", index.get("dep").orElseThrow().entry());
+        assertEquals(List.of("dep", "missing"), index.get("app").orElseThrow().dependencies());
+
+        assertFalse(index.isSatisfied("app"), "a dependency is not installed");
+        assertTrue(index.isSatisfied("dep"));
+        assertTrue(index.isSatisfied("@scope/util"));
+        assertTrue(Files.isRegularFile(root.resolve(NpmPackageIndex.INDEX_FILE)));
+    }
+
+    @Test
+    void unreadableIndexFileIsRebuiltFromDisk() throws IOException {
+        writePackage("dep", new JSONObject().put("version", "1.0.0"));
+        Files.writeString(root.resolve(NpmPackageIndex.INDEX_FILE), "{ not json");
+
+        NpmPackageIndex index = new NpmPackageIndex(root);
+
+        assertEquals("1.0.0", index.get("dep").orElseThrow().version());
+        assertTrue(index.isSatisfied("dep"));
+    }
+
+    private void writePackage(String name, JSONObject packageJson) throws IOException {
+        Path dir = root.resolve("node_modules").resolve(name);
+        Files.createDirectories(dir);
+        Files.writeString(dir.resolve("package.json"), packageJson.toString());
+    }
+}
@@ -0,0 +1,162 @@
+package org.apiwiz.scriptingengine.utils;
+
+import org.apiwiz.scriptingengine.engine.GraalPyBytecodeCompiler;
+import org.apiwiz.scriptingengine.engine.PolyglotEngines;
+import org.apiwiz.scriptingengine.support.StubPyPIIndex;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PyPIDependencyDownloaderTest {
+
+    @TempDir
+    Path dir;
+
+    private StubPyPIIndex index;
+
+    @BeforeEach
+    void startIndex() throws Exception {
+        index = new StubPyPIIndex();
+    }
+
+    @AfterEach
+    void stopIndex() {
+        index.close();
+    }
+
+    @Test
+    void mapsImportsToDistributionsAndRemembersMissingOnes() throws Exception {
+        PyPIDependencyDownloader downloader = downloader(Map.of("mylib", "my-lib-dist"));
+
+        downloader.installDependencies(Set.of("yaml"));
+        downloader.installDependencies(Set.of("yaml"));
+        downloader.installDependencies(Set.of("mylib"));
+
+        assertEquals(List.of("/PyYAML/json", "/my-lib-dist/json"), index.requestedPaths());
+    }
+
+    @Test
+    void stdlibOnlyScriptsDoNoIo() throws Exception {
+        Set<String> imports = PythonImportExtractor.extractImports("""
+                import collections, typing, random
+                from concurrent.futures import ThreadPoolExecutor
+                import xml.etree.ElementTree as ET, zoneinfo, tomllib
+                """);
+        assertEquals(Set.of(), imports);
+
+        downloader(Map.of()).installDependencies(imports);
+
+        assertEquals(List.of(), index.requestedPaths());
+        assertFalse(Files.exists(dir.resolve("python")));
+    }
+
+    @Test
+    void installedDistributionsAreSkippedWithoutAnyRequest() throws Exception {
+        index.publish("fixturelib", "1.0", Map.of("fixturelib/__init__.py", "VERSION = 1\n"));
+        downloader(Map.of()).installDependencies(Set.of("fixturelib"));
+        int requests = index.requestedPaths().size();
+
+        downloader(Map.of()).installDependencies(Set.of("fixturelib"));
+
+        assertEquals(requests, index.requestedPaths().size(), "found installed from its .dist-info");
+        assertTrue(Files.isDirectory(dir.resolve("python/fixturelib-1.0.dist-info")));
+    }
+
+    @Test
+    void compilesInstalledSourcesToBytecodeForTheInterpreter() throws Exception {
+        PolyglotEngines engines = new PolyglotEngines();
+        GraalPyBytecodeCompiler compiler = new GraalPyBytecodeCompiler(engines);
+        try {
+            index.publish("fixturelib", "1.0", Map.of(
+                    "fixturelib/__init__.py", "from .core import answer\n",
+                    "fixturelib/core.py", "def answer():\n    return 42\n",
+                    "fixturelib/broken.py", "def (:\n"));
+            Path root = dir.resolve("python");
+            PyPIDependencyDownloader downloader = downloader(Map.of(), compiler);
+
+            downloader.installDependencies(Set.of("fixturelib"));
+
+            String tag = compiler.cacheTag();
+            Path cache = root.resolve("fixturelib/__pycache__");
+            assertTrue(Files.exists(cache.resolve("core." + tag + ".pyc")));
+            assertFalse(Files.exists(cache.resolve("broken." + tag + ".pyc")));
+
+            // after an interpreter upgrade the tree is recompiled once and old caches are dropped
+            Path stale = Files.writeString(cache.resolve("core.graalpy000-000.pyc"), "old");
+            Files.delete(cache.resolve("__init__." + tag + ".pyc"));
+            Files.writeString(root.resolve(PyPIDependencyDownloader.BYTECODE_TAG_FILE), "graalpy000-000");
+            downloader.compileInstalled();
+
+            assertFalse(Files.exists(stale));
+            assertTrue(Files.exists(cache.resolve("__init__." + tag + ".pyc")));
+            assertEquals(tag, Files.readString(root.resolve(PyPIDependencyDownloader.BYTECODE_TAG_FILE)));
+        } finally {
+            compiler.close();
+            engines.close();
+        }
+    }
+
+    @Test
+    void upgradeReplacesTheDistributionAndItsBytecode() throws Exception {
+        PolyglotEngines engines = new PolyglotEngines();
+        GraalPyBytecodeCompiler compiler = new GraalPyBytecodeCompiler(engines);
+        try {
+            index.publish("fixturelib", "1.0", Map.of(
+                    "fixturelib/__init__.py", "from .core import answer\n",
+                    "fixturelib/core.py", "def answer():\n    return 1\n",
+                    "fixturelib/legacy.py", "OLD = True\n"));
+            Path root = dir.resolve("python");
+            PyPIDependencyDownloader downloader = downloader(Map.of(), compiler);
+            downloader.installDependencies(Set.of("fixturelib"));
+
+            String tag = compiler.cacheTag();
+            Path cache = root.resolve("fixturelib/__pycache__");
+            byte[] oldBytecode = Files.readAllBytes(cache.resolve("core." + tag + ".pyc"));
+            AtomicInteger notified = new AtomicInteger();
+            downloader.pathIndex().addListener(notified::incrementAndGet);
+
+            index.publish("fixturelib", "2.0", Map.of(
+                    "fixturelib/__init__.py", "from .core import answer\n",
+                    "fixturelib/core.py", "def answer():\n    return 2\n"));
+            downloader.installDependencies(Set.of("fixturelib"));
+            assertTrue(Files.readString(root.resolve("fixturelib/core.py")).contains("return 1"), "a plain install keeps what is there");
+
+            downloader.upgradeDependencies(Set.of("fixturelib"));
+
+            assertTrue(Files.readString(root.resolve("fixturelib/core.py")).contains("return 2"));
+            assertFalse(Files.exists(root.resolve("fixturelib/legacy.py")));
+            assertFalse(Files.exists(cache.resolve("legacy." + tag + ".pyc")));
+            assertFalse(Arrays.equals(oldBytecode, Files.readAllBytes(cache.resolve("core." + tag + ".pyc"))));
+            assertFalse(Files.exists(root.resolve("fixturelib-1.0.dist-info")));
+            assertTrue(Files.isDirectory(root.resolve("fixturelib-2.0.dist-info")));
+            assertEquals(Set.of("fixturelib-2.0.dist-info"), downloader.pathIndex().entriesOf("FixtureLib"));
+            assertEquals(1, notified.get(), "pooled contexts are invalidated");
+        } finally {
+            compiler.close();
+            engines.close();
+        }
+    }
+
+    private PyPIDependencyDownloader downloader(Map<String, String> distributions) {
+        return downloader(distributions, null);
+    }
+
+    private PyPIDependencyDownloader downloader(Map<String, String> distributions, PythonBytecodeCompiler compiler) {
+        return new PyPIDependencyDownloader(dir.resolve("python"), new RegistryClient(dir.resolve("cache")),
+                index.url(), new PythonDistributions(distributions), Duration.ofMinutes(10), compiler);
+    }
+}
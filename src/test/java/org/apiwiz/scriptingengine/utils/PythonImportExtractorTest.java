@@ -0,0 +1,68 @@
+package org.apiwiz.scriptingengine.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PythonImportExtractorTest {
+
+    @Test
+    void findsAbsoluteImportsAndSkipsRelativeAndStandardOnes() {
+        String script = """
+                import numpy as np, pandas
+                import requests.adapters
+                from yaml import safe_load
+                from attr.validators import (
+                    instance_of,
+                )
+                from . import sibling
+                from .pkg import thing
+                import json, os.path
+                if True: import termcolor
+                x = 1; import rich
+                import lxml \\
+                    , toml
+                """;
+
+        assertEquals(Set.of("numpy", "pandas", "requests", "yaml", "attr", "termcolor", "rich", "lxml", "toml"),
+                PythonImportExtractor.extractImports(script));
+    }
+
+    @Test
+    void ignoresCommentsStringsAndMidStatementWords() {
+        String script = """
+                # import commented
+                doc = \"\"\"
+                import in_docstring
+                from in_docstring import x
+                \"\"\"
+                raw = r'import in_raw'
+                call(
+                    import_like=1,
+                )
+                value = 'from here'
+                """;
+
+        assertEquals(Set.of(), PythonImportExtractor.extractImports(script));
+    }
+
+    @Test
+    void handlesMultiMegabyteInputsInLinearTime() {
+        String large = generated(8 << 20);
+
+        assertTrue(NpmDependencyExtractorTest.assertCompletesQuickly(
+                () -> PythonImportExtractor.extractImports(large)).contains("mod40"));
+    }
+
+    private static String generated(int size) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; sb.length() < size; i++) {
+            if (i % 40 == 0) sb.append("import mod").append(i % 200).append(", other").append(i % 7).append('\n');
+            else sb.append("def f").append(i).append("(a, b):\n    return a * b + len('import x')  # from y\n");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,98 @@
+package org.apiwiz.scriptingengine.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PythonPathIndexTest {
+
+    @TempDir
+    Path root;
+
+    @Test
+    void reducesInstalledTreeToSiteRoots() throws Exception {
+        Files.createDirectories(root.resolve("termcolor/sub/deeper"));
+        Files.createDirectories(root.resolve("termcolor-2.4.0.dist-info"));
+        Path sdist = Files.createDirectories(root.resolve("legacy-1.0"));
+        Files.writeString(sdist.resolve("setup.py"), "");
+        Files.createDirectories(sdist.resolve("legacy"));
+        Path srcLayout = Files.createDirectories(root.resolve("modern-2.0/src/modern"));
+        Files.writeString(root.resolve("modern-2.0/pyproject.toml"), "");
+
+        PythonPathIndex index = new PythonPathIndex(root);
+
+        assertEquals(List.of(
+                path(sdist),
+                path(srcLayout.getParent()),
+                path(root)), index.roots());
+    }
+
+    @Test
+    void notifiesListenersOnlyWhenRootsChange() throws Exception {
+        PythonPathIndex index = new PythonPathIndex(root);
+        AtomicInteger changes = new AtomicInteger();
+        index.addListener(changes::incrementAndGet);
+
+        Files.createDirectories(root.resolve("wheelpkg"));
+        index.added(List.of("wheelpkg"));
+        assertEquals(0, changes.get());
+
+        Files.createDirectories(root.resolve("sdist-1.0"));
+        Files.writeString(root.resolve("sdist-1.0/PKG-INFO"), "");
+        index.added(List.of("sdist-1.0"));
+        assertEquals(1, changes.get());
+        assertEquals(2, index.roots().size());
+
+        index.removed(List.of("sdist-1.0"));
+        assertEquals(2, changes.get());
+        assertEquals(List.of(path(root)), index.roots());
+    }
+
+    @Test
+    void knowsInstalledDistributionsByTheirNormalizedName() throws Exception {
+        Files.createDirectories(root.resolve("PyYAML-6.0.1.dist-info"));
+        Files.createDirectories(root.resolve("legacy_tool-1.0"));
+        Files.writeString(root.resolve("legacy_tool-1.0/setup.py"), "");
+        Files.createDirectories(root.resolve("not-a-dist-1.0"));
+
+        PythonPathIndex index = new PythonPathIndex(root);
+
+        assertTrue(index.isInstalled("pyyaml"));
+        assertTrue(index.isInstalled("Legacy.Tool"));
+        assertFalse(index.isInstalled("not-a-dist"), "no project marker");
+        assertEquals(Set.of("PyYAML-6.0.1.dist-info"), index.entriesOf("PyYAML"));
+
+        index.removed(List.of("PyYAML-6.0.1.dist-info"));
+        assertFalse(index.isInstalled("pyyaml"));
+
+        // archives without metadata are known by the name they were installed as
+        index.installed("plain_wheel");
+        assertTrue(index.isInstalled("plain-wheel"));
+        assertEquals(Set.of(), index.entriesOf("plain-wheel"));
+    }
+
+    @Test
+    void replacedEntriesAlwaysNotifyListeners() throws Exception {
+        PythonPathIndex index = new PythonPathIndex(root);
+        AtomicInteger changes = new AtomicInteger();
+        index.addListener(changes::incrementAndGet);
+
+        Files.createDirectories(root.resolve("wheelpkg"));
+        index.replaced(List.of("wheelpkg"));
+        assertEquals(1, changes.get());
+        assertEquals(List.of(path(root)), index.roots());
+    }
+
+    private static String path(Path p) {
+        return p.toAbsolutePath().normalize().toString().replace("\\", "/");
+    }
+}
@@ -0,0 +1,65 @@
+package org.apiwiz.scriptingengine.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    @Test
+    void followersShareTheLeadersResultAndAreToldApart() throws Exception {
+        SingleFlight<String> flight = new SingleFlight<>();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            CompletableFuture<SingleFlight.Result<String>> leader = CompletableFuture.supplyAsync(() -> run(flight, () -> {
+                calls.incrementAndGet();
+                started.countDown();
+                release.await();
+                return "installed";
+            }), executor);
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            CompletableFuture<SingleFlight.Result<String>> follower = CompletableFuture.supplyAsync(() -> run(flight, () -> {
+                calls.incrementAndGet();
+                return "again";
+            }), executor);
+            Thread.sleep(100);
+            release.countDown();
+
+            assertEquals(new SingleFlight.Result<>("installed", true), leader.get(5, TimeUnit.SECONDS));
+            assertEquals(new SingleFlight.Result<>("installed", false), follower.get(5, TimeUnit.SECONDS));
+            assertEquals(1, calls.get());
+        }
+
+        // once finished, the next call does the work again
+        assertEquals(new SingleFlight.Result<>("next", true), flight.run("key", () -> "next"));
+    }
+
+    @Test
+    void failuresArePropagatedAndNotRemembered() throws Exception {
+        SingleFlight<String> flight = new SingleFlight<>();
+        assertThrows(IOException.class, () -> flight.run("key", () -> {
+            throw new IOException("boom");
+        }));
+        assertTrue(flight.run("key", () -> "ok").leader());
+    }
+
+    private static SingleFlight.Result<String> run(SingleFlight<String> flight, SingleFlight.Work<String> work) {
+        try {
+            return flight.run("key", work);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}